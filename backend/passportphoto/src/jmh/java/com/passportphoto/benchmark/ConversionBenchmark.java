@@ -0,0 +1,99 @@
+/*
+ * ConversionBenchmark.java
+ *
+ * JMH benchmarks for the image conversions and encoders in
+ * ImageConverterUtil.
+ *
+ */
+
+package com.passportphoto.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.passportphoto.util.ImageConverterUtil;
+
+/**
+ * The {@code ConversionBenchmark} measures moving an image between
+ * {@link BufferedImage}, OpenCV {@link Mat} and base64 data URLs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ConversionBenchmark {
+
+    @Param({ "VGA", "MP8", "MP20" })
+    private SyntheticImages.Resolution resolution;
+
+    private BufferedImage image;
+    private BufferedImage alphaImage;
+    private Mat mat;
+    private String jpegDataUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SyntheticImages.loadOpenCv();
+        image = SyntheticImages.portrait(resolution.getWidth(), resolution.getHeight(), true, false);
+        alphaImage = SyntheticImages.portrait(resolution.getWidth(), resolution.getHeight(), false, true);
+        mat = ImageConverterUtil.convertBufferedImageToMat(image, false);
+        jpegDataUrl = ImageConverterUtil.convertBufferedImgToBase64(image, "jpg");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mat.release();
+    }
+
+    @Benchmark
+    public Mat bufferedImageToMat() {
+        return ImageConverterUtil.convertBufferedImageToMat(image, false);
+    }
+
+    @Benchmark
+    public Mat bufferedImageToMatAlpha() {
+        return ImageConverterUtil.convertBufferedImageToMat(alphaImage, true);
+    }
+
+    @Benchmark
+    public BufferedImage matToBufferedImage() {
+        return ImageConverterUtil.convertMatToBufferedImage(mat);
+    }
+
+    @Benchmark
+    public String encodeJpegBase64() throws Exception {
+        return ImageConverterUtil.convertBufferedImgToBase64(image, "jpg");
+    }
+
+    @Benchmark
+    public String encodePngBase64() throws Exception {
+        return ImageConverterUtil.convertBufferedImgToBase64(image, "png");
+    }
+
+    @Benchmark
+    public String encodeMatDataUrl() throws Exception {
+        return ImageConverterUtil.convertMatToDataUrl(mat);
+    }
+
+    @Benchmark
+    public BufferedImage decodeJpegBase64() throws Exception {
+        return ImageConverterUtil.base64ToBufferedImage(jpegDataUrl);
+    }
+}
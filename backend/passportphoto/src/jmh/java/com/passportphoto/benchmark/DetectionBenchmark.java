@@ -0,0 +1,97 @@
+/*
+ * DetectionBenchmark.java
+ *
+ * JMH benchmarks for the Haar cascade face and eye detection used to
+ * center passport photos.
+ *
+ */
+
+package com.passportphoto.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfRect;
+import org.opencv.objdetect.CascadeClassifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.passportphoto.service.FaceModelLoader;
+import com.passportphoto.service.ModelReadiness;
+import com.passportphoto.service.store.ModelCache;
+import com.passportphoto.util.ImageConverterUtil;
+
+/**
+ * The {@code DetectionBenchmark} runs the cascades the way
+ * {@code FaceCenteringService} does: the face cascade over the whole image
+ * and the eye cascade over the face region. The synthetic
+ * input need not produce detections; the scan cost is what is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DetectionBenchmark {
+
+    @Param({ "VGA", "MP8", "MP20" })
+    private SyntheticImages.Resolution resolution;
+
+    private CascadeClassifier faceDetector;
+    private CascadeClassifier eyeDetector;
+    private Mat image;
+    private Mat faceRegion;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ModelCache modelCache = new ModelCache("");
+        ModelReadiness readiness = new ModelReadiness(2, false, 0);
+        readiness.load(ModelReadiness.OPENCV, () -> {
+            SyntheticImages.loadOpenCv();
+            return null;
+        });
+        FaceModelLoader faceLoader = new FaceModelLoader("haarcascade_frontalface_default.xml", modelCache, readiness);
+        FaceModelLoader eyeLoader = new FaceModelLoader("haarcascade_eye_tree_eyeglasses.xml", modelCache, readiness);
+        readiness.afterSingletonsInstantiated();
+        readiness.shutdown();
+        faceDetector = faceLoader.getFaceModel();
+        eyeDetector = eyeLoader.getFaceModel();
+        int width = resolution.getWidth();
+        int height = resolution.getHeight();
+        image = ImageConverterUtil.convertBufferedImageToMat(SyntheticImages.portrait(width, height, true, false),
+                false);
+        faceRegion = image.submat(height / 6, height / 6 + height * 2 / 5, width * 3 / 8, width * 5 / 8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        faceRegion.release();
+        image.release();
+    }
+
+    @Benchmark
+    public MatOfRect detectFace() {
+        MatOfRect faces = new MatOfRect();
+        faceDetector.detectMultiScale(image, faces);
+        return faces;
+    }
+
+    @Benchmark
+    public MatOfRect detectEyes() {
+        MatOfRect eyes = new MatOfRect();
+        eyeDetector.detectMultiScale(faceRegion, eyes);
+        return eyes;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * ResizeBenchmark.java
+ *
+ * JMH benchmarks for the resize strategies, ResizeUtil and the uniform
+ * background processor.
+ *
+ */
+
+package com.passportphoto.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.passportphoto.service.processor.UniformBackgroundProcessor;
+import com.passportphoto.service.strategy.AlphaResizeStrategy;
+import com.passportphoto.service.strategy.StandardResizeStrategy;
+import com.passportphoto.util.ImageConverterUtil;
+import com.passportphoto.util.ResizeUtil;
+
+/**
+ * The {@code ResizeBenchmark} measures scaling an input down to a passport
+ * size, and extending an image onto a taller canvas, which is the step
+ * that follows a fit resize. The uniform and textured inputs take the two
+ * branches of {@link UniformBackgroundProcessor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ResizeBenchmark {
+
+    /** Passport size used by most country specs */
+    private static final int TARGET_WIDTH = 413;
+    private static final int TARGET_HEIGHT = 531;
+
+    @Param({ "VGA", "MP8", "MP20" })
+    private SyntheticImages.Resolution resolution;
+
+    private BufferedImage image;
+    private Mat bgr;
+    private Mat bgra;
+    private Mat uniformBgr;
+    private int canvasHeight;
+
+    private final StandardResizeStrategy standardResize = new StandardResizeStrategy();
+    private final AlphaResizeStrategy alphaResize = new AlphaResizeStrategy();
+    private final UniformBackgroundProcessor uniformBackground = new UniformBackgroundProcessor();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticImages.loadOpenCv();
+        int width = resolution.getWidth();
+        int height = resolution.getHeight();
+        image = SyntheticImages.portrait(width, height, true, false);
+        bgr = ImageConverterUtil.convertBufferedImageToMat(image, false);
+        bgra = ImageConverterUtil.convertBufferedImageToMat(SyntheticImages.portrait(width, height, false, true), true);
+        uniformBgr = ImageConverterUtil.convertBufferedImageToMat(SyntheticImages.portrait(width, height, false, false),
+                false);
+        canvasHeight = width * TARGET_HEIGHT / TARGET_WIDTH;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bgr.release();
+        bgra.release();
+        uniformBgr.release();
+    }
+
+    @Benchmark
+    public BufferedImage resizeUtil() {
+        return ResizeUtil.resizeImage(image, TARGET_WIDTH, TARGET_HEIGHT);
+    }
+
+    @Benchmark
+    public Mat standardStrategy() {
+        return standardResize.resize(bgr, TARGET_WIDTH, TARGET_HEIGHT);
+    }
+
+    @Benchmark
+    public Mat alphaStrategy() {
+        return alphaResize.resize(bgra, TARGET_WIDTH, TARGET_HEIGHT);
+    }
+
+    @Benchmark
+    public Mat uniformBackgroundUniformBorder() {
+        return uniformBackground.process(uniformBgr, resolution.getWidth(), canvasHeight);
+    }
+
+    @Benchmark
+    public Mat uniformBackgroundTexturedBorder() {
+        return uniformBackground.process(bgr, resolution.getWidth(), canvasHeight);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * SyntheticImages.java
+ *
+ * Deterministic test images for the JMH benchmarks, so that runs on
+ * different machines and commits process identical input.
+ *
+ */
+
+package com.passportphoto.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * The {@code SyntheticImages} class draws a portrait-like scene: a vertical
+ * gradient background, a head and shoulders, and two eyes. The textured
+ * variant adds seeded per-pixel noise to the background so that the border
+ * of the image is not uniform.
+ * <p>
+ * This class is non-instantiable.
+ */
+public final class SyntheticImages {
+
+    /** Fixed seed so every run produces the same pixels */
+    private static final long SEED = 42L;
+
+    /**
+     * Input sizes the benchmarks run at. {@code PASSPORT} is a 2x2 inch
+     * photo at 600 dpi, the size of the image the background removal model
+     * runs on.
+     */
+    public enum Resolution {
+        PASSPORT(1200, 1200),
+        VGA(640, 480),
+        MP8(3264, 2448),
+        MP20(5472, 3648);
+
+        private final int width;
+        private final int height;
+
+        Resolution(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+
+    private static boolean openCvLoaded;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SyntheticImages() {
+        // Utility class - do not instantiate
+    }
+
+    /**
+     * Loads the OpenCV native library bundled with the OpenPnP artifact.
+     */
+    public static synchronized void loadOpenCv() {
+        if (!openCvLoaded) {
+            nu.pattern.OpenCV.loadLocally();
+            openCvLoaded = true;
+        }
+    }
+
+    /**
+     * Draws the portrait scene.
+     *
+     * @param width    image width
+     * @param height   image height
+     * @param textured whether to add seeded noise to the background
+     * @param alpha    whether to return an ARGB image with a transparent background
+     * @return the image
+     */
+    public static BufferedImage portrait(int width, int height, boolean textured, boolean alpha) {
+        BufferedImage image = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_3BYTE_BGR);
+
+        if (!alpha) {
+            Random random = new Random(SEED);
+            for (int y = 0; y < height; y++) {
+                int base = 200 + 40 * y / height;
+                for (int x = 0; x < width; x++) {
+                    int v = textured ? clamp(base + random.nextInt(61) - 30) : base;
+                    image.setRGB(x, y, (v << 16) | (v << 8) | v);
+                }
+            }
+        }
+
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int cx = width / 2;
+        int faceW = width / 4;
+        int faceH = height * 2 / 5;
+        int faceTop = height / 6;
+
+        g.setColor(new Color(40, 50, 80));
+        g.fillRoundRect(cx - width / 3, faceTop + faceH * 9 / 10, width * 2 / 3, height, width / 8, width / 8);
+        g.setColor(new Color(224, 172, 140));
+        g.fillOval(cx - faceW / 2, faceTop, faceW, faceH);
+
+        g.setColor(new Color(30, 30, 30));
+        int eyeW = faceW / 6;
+        int eyeH = faceH / 12;
+        int eyeY = faceTop + faceH * 2 / 5;
+        g.fillOval(cx - faceW / 4 - eyeW / 2, eyeY, eyeW, eyeH);
+        g.fillOval(cx + faceW / 4 - eyeW / 2, eyeY, eyeW, eyeH);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Builds a flat model output of the given size: 1 inside an ellipse
+     * around the subject, 0 outside, with a soft edge.
+     *
+     * @param width  matte width
+     * @param height matte height
+     * @return the matte in row-major order
+     */
+    public static float[] matte(int width, int height) {
+        float[] matte = new float[width * height];
+        double rx = width / 3.0;
+        double ry = height / 2.2;
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            double dy = (y - height * 0.55) / ry;
+            for (int x = 0; x < width; x++) {
+                double dx = (x - width / 2.0) / rx;
+                double d = Math.sqrt(dx * dx + dy * dy);
+                matte[index++] = (float) Math.max(0.0, Math.min(1.0, (1.05 - d) * 10.0));
+            }
+        }
+        return matte;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
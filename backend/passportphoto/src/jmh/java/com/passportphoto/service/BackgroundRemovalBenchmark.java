@@ -0,0 +1,93 @@
+/*
+ * BackgroundRemovalBenchmark.java
+ *
+ * JMH benchmarks for the pre- and post-processing around ONNX inference
+ * in BackgroundRemovalService.
+ *
+ */
+
+package com.passportphoto.service;
+
+import java.awt.image.BufferedImage;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.passportphoto.benchmark.SyntheticImages;
+import com.passportphoto.service.pipeline.PipelineMetrics;
+import com.passportphoto.service.store.ImageBufferStore;
+import com.passportphoto.util.Constants;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The {@code BackgroundRemovalBenchmark} measures tensor extraction, matte
+ * reshaping and alpha blending on a fixed image and model output. It lives
+ * in the service package to reach the package-private steps; the model
+ * itself is not loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class BackgroundRemovalBenchmark {
+
+    @Param({ "PASSPORT", "VGA", "MP8", "MP20" })
+    private SyntheticImages.Resolution resolution;
+
+    /** Tensor size from which {@code extractImageData} maps a temp file */
+    @Param({ "4194304", "67108864" })
+    private long tensorOffHeapThreshold;
+
+    private BackgroundRemovalService service;
+    private BufferedImage image;
+    private float[] output;
+    private float[][] matte;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Constants constants = new Constants();
+        constants.DEFAULT_BACKGROUND_COLOR = "#FFFFFF";
+        constants.MODEL_SIZE_MULTIPLIER = 32;
+        service = new BackgroundRemovalService(null, constants, null, new PipelineMetrics(registry),
+                new ImageBufferStore(4L * 1024 * 1024, tensorOffHeapThreshold, "", registry), null);
+
+        int width = resolution.getWidth();
+        int height = resolution.getHeight();
+        BufferedImage bgr = SyntheticImages.portrait(width, height, true, false);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.getGraphics().drawImage(bgr, 0, 0, null);
+        output = SyntheticImages.matte(width, height);
+        matte = service.createMatte2D(output, width, height);
+    }
+
+    @Benchmark
+    public FloatBuffer extractImageData() throws Exception {
+        return service.extractImageData(image);
+    }
+
+    @Benchmark
+    public float[][] createMatte2D() {
+        return service.createMatte2D(output, resolution.getWidth(), resolution.getHeight());
+    }
+
+    @Benchmark
+    public BufferedImage alphaBlend() throws Exception {
+        return service.alphaBlend(image, matte, null, "#FFFFFF");
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Endpoint.java
+ *
+ * The processing endpoints driven by the load test and the form fields
+ * sent with each upload.
+ *
+ */
+
+package com.passportphoto.loadtest;
+
+import java.util.Map;
+
+/**
+ * The {@code Endpoint} enum maps a short name used on the command line to
+ * the request path and the fixed form fields sent alongside the image.
+ */
+public enum Endpoint {
+
+    REMOVEBG("removebg", "/image/removebg", Map.of()),
+    RESIZE("resize", "/image/resize", Map.of("country", "jpn")),
+    AUTOMATE("automate", "/automate/passportphoto", Map.of("country", "jpn"));
+
+    private final String key;
+    private final String path;
+    private final Map<String, String> fields;
+
+    Endpoint(String key, String path, Map<String, String> fields) {
+        this.key = key;
+        this.path = path;
+        this.fields = fields;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Looks up an endpoint by its short name.
+     *
+     * @param key the short name, e.g. {@code removebg}
+     * @return the endpoint
+     */
+    public static Endpoint fromKey(String key) {
+        for (Endpoint endpoint : values()) {
+            if (endpoint.key.equalsIgnoreCase(key.trim())) {
+                return endpoint;
+            }
+        }
+        throw new IllegalArgumentException("Unknown endpoint: " + key);
+    }
+}
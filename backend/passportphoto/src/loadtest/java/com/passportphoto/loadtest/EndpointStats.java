@@ -0,0 +1,95 @@
+/*
+ * EndpointStats.java
+ *
+ * Collects latencies and outcomes of the requests sent to one endpoint
+ * during a load test.
+ *
+ */
+
+package com.passportphoto.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The {@code EndpointStats} class records every measured request. A request
+ * is {@code ok} when the server answered 2xx with a {@code success} status,
+ * {@code rejected} when it answered 2xx but reported a failure, for example
+ * because no face was found, and an {@code error} on any other status or a
+ * transport failure. Percentiles are exact, computed from all samples.
+ */
+public class EndpointStats {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private long ok;
+    private long rejected;
+    private long errors;
+    private final Map<String, Long> statusCodes = new TreeMap<>();
+
+    /** Outcome of one request */
+    public enum Outcome { OK, REJECTED, ERROR }
+
+    /**
+     * Records one request.
+     *
+     * @param latencyNanos time from sending to receiving the full response
+     * @param outcome      how the request ended
+     * @param status       the HTTP status, or a short error name if there was none
+     */
+    public synchronized void record(long latencyNanos, Outcome outcome, String status) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNanos;
+        switch (outcome) {
+            case OK -> ok++;
+            case REJECTED -> rejected++;
+            case ERROR -> errors++;
+        }
+        statusCodes.merge(status, 1L, Long::sum);
+    }
+
+    /**
+     * Summarizes the recorded requests.
+     *
+     * @param elapsedSeconds length of the measurement window
+     * @return the summary, in insertion order for readable JSON
+     */
+    public synchronized Map<String, Object> summarize(double elapsedSeconds) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", count);
+        summary.put("throughputPerSecond", round(count / elapsedSeconds));
+        summary.put("ok", ok);
+        summary.put("rejected", rejected);
+        summary.put("errors", errors);
+        summary.put("errorRate", count == 0 ? 0.0 : round((double) errors / count));
+        summary.put("rejectRate", count == 0 ? 0.0 : round((double) rejected / count));
+        summary.put("p50Ms", percentileMillis(sorted, 0.50));
+        summary.put("p95Ms", percentileMillis(sorted, 0.95));
+        summary.put("p99Ms", percentileMillis(sorted, 0.99));
+        summary.put("maxMs", count == 0 ? 0.0 : round(sorted[count - 1] / 1e6));
+        summary.put("statusCodes", new TreeMap<>(statusCodes));
+        return summary;
+    }
+
+    /**
+     * Nearest-rank percentile.
+     */
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return round(sorted[Math.max(0, rank - 1)] / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * LoadTestRunner.java
+ *
+ * Drives the processing endpoints with a synthetic portrait corpus at a
+ * fixed concurrency and reports throughput, latency percentiles and
+ * error rates per endpoint.
+ *
+ */
+
+package com.passportphoto.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.passportphoto.PhotoprocessorApplication;
+
+/**
+ * The {@code LoadTestRunner} generates a {@link PortraitCorpus}, starts the
+ * application on a random port unless {@code --target} points at a running
+ * server, and runs {@code --concurrency} closed-loop workers for
+ * {@code --warmup} plus {@code --duration} seconds. Each worker cycles
+ * through the selected endpoints and through the corpus; only requests
+ * started after the warmup are measured. The report is printed and written
+ * as JSON to {@code --report}.
+ *
+ * <p>The embedded server runs with the result cache disabled, since the
+ * corpus repeats and cache hits would hide pipeline cost; pass
+ * {@code --result-cache=true} to measure with it. The corpus should be
+ * larger than the concurrency so that concurrent workers rarely send the
+ * same image, which the server would coalesce.
+ *
+ * <p>Options: {@code --target}, {@code --concurrency=8},
+ * {@code --duration=60}, {@code --warmup=10}, {@code --corpus=32},
+ * {@code --seed=42}, {@code --endpoints=removebg,resize,automate},
+ * {@code --result-cache=false},
+ * {@code --report=target/loadtest-report.json}.
+ */
+public final class LoadTestRunner {
+
+    private static final String BOUNDARY = "----passportphoto-loadtest";
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final String baseUrl;
+    private final List<Endpoint> endpoints;
+    private final List<PortraitCorpus.Portrait> corpus;
+    private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+
+    private LoadTestRunner(String baseUrl, List<Endpoint> endpoints, List<PortraitCorpus.Portrait> corpus) {
+        this.baseUrl = baseUrl;
+        this.endpoints = endpoints;
+        this.corpus = corpus;
+        endpoints.forEach(endpoint -> stats.put(endpoint, new EndpointStats()));
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args {@code --name=value} options, see the class documentation
+     * @throws Exception if the corpus, server or report cannot be set up
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int corpusSize = Integer.parseInt(options.getOrDefault("corpus", "32"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        boolean resultCache = Boolean.parseBoolean(options.getOrDefault("result-cache", "false"));
+        Path report = Path.of(options.getOrDefault("report", "target/loadtest-report.json"));
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String key : options.getOrDefault("endpoints", "removebg,resize,automate").split(",")) {
+            endpoints.add(Endpoint.fromKey(key));
+        }
+
+        System.out.printf("Generating %d portraits (seed %d)%n", corpusSize, seed);
+        List<PortraitCorpus.Portrait> corpus = PortraitCorpus.generate(corpusSize, seed);
+
+        ConfigurableApplicationContext context = null;
+        String target = options.get("target");
+        if (target == null) {
+            context = startServer(resultCache);
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            target = "http://localhost:" + port;
+        }
+
+        try {
+            System.out.printf("Driving %s with %d workers: %ds warmup, %ds measured%n", target, concurrency,
+                    warmupSeconds, durationSeconds);
+            LoadTestRunner runner = new LoadTestRunner(target, endpoints, corpus);
+            runner.run(concurrency, warmupSeconds, durationSeconds);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("target", target);
+            result.put("concurrency", concurrency);
+            result.put("warmupSeconds", warmupSeconds);
+            result.put("durationSeconds", durationSeconds);
+            result.put("corpusSize", corpusSize);
+            result.put("seed", seed);
+            result.put("resultCache", options.get("target") == null ? resultCache : null);
+            Map<String, Object> perEndpoint = new LinkedHashMap<>();
+            runner.stats.forEach((endpoint, s) -> perEndpoint.put(endpoint.getKey(), s.summarize(durationSeconds)));
+            result.put("endpoints", perEndpoint);
+
+            print(perEndpoint);
+            if (report.getParent() != null) {
+                Files.createDirectories(report.getParent());
+            }
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(report.toFile(), result);
+            System.out.println("Report written to " + report.toAbsolutePath());
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * Runs closed-loop workers until the measurement window ends.
+     */
+    private void run(int concurrency, int warmupSeconds, int durationSeconds) throws InterruptedException {
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int w = 0; w < concurrency; w++) {
+            int worker = w;
+            workers.execute(() -> {
+                for (long i = 0; System.nanoTime() < end; i++) {
+                    Endpoint endpoint = endpoints.get((int) ((worker + i) % endpoints.size()));
+                    PortraitCorpus.Portrait portrait = corpus.get((int) ((worker + i * concurrency) % corpus.size()));
+                    send(endpoint, portrait, measureFrom);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(durationSeconds + warmupSeconds + 600L, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends one upload and records it if it started after the warmup.
+     */
+    private void send(Endpoint endpoint, PortraitCorpus.Portrait portrait, long measureFrom) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint.getPath()))
+                .timeout(Duration.ofMinutes(5))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(endpoint.getFields(), portrait)))
+                .build();
+
+        long start = System.nanoTime();
+        EndpointStats.Outcome outcome;
+        String status;
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            status = String.valueOf(response.statusCode());
+            if (response.statusCode() / 100 != 2) {
+                outcome = EndpointStats.Outcome.ERROR;
+            } else if (response.body().contains("\"status\":\"success\"")) {
+                outcome = EndpointStats.Outcome.OK;
+            } else {
+                outcome = EndpointStats.Outcome.REJECTED;
+            }
+        } catch (IOException e) {
+            status = e.getClass().getSimpleName();
+            outcome = EndpointStats.Outcome.ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (start >= measureFrom) {
+            stats.get(endpoint).record(System.nanoTime() - start, outcome, status);
+        }
+    }
+
+    private static byte[] multipart(Map<String, String> fields, PortraitCorpus.Portrait portrait) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(portrait.bytes().length + 512);
+        StringBuilder head = new StringBuilder();
+        fields.forEach((name, value) -> head.append("--").append(BOUNDARY).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"").append(name).append("\"\r\n\r\n")
+                .append(value).append("\r\n"));
+        head.append("--").append(BOUNDARY).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"image\"; filename=\"").append(portrait.name())
+                .append("\"\r\n")
+                .append("Content-Type: ").append(portrait.contentType()).append("\r\n\r\n");
+        body.writeBytes(head.toString().getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(portrait.bytes());
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    /**
+     * Starts the application on a random port. Without
+     * {@code OPENCVDLLPATH} the OpenCV library bundled for this platform is
+     * extracted and used.
+     */
+    private static ConfigurableApplicationContext startServer(boolean resultCache) throws IOException {
+        List<String> args = new ArrayList<>();
+        args.add("--server.port=0");
+        String openCvPath = System.getenv("OPENCVDLLPATH");
+        args.add("--opencv.dll.path=" + (openCvPath == null || openCvPath.isBlank() ? extractOpenCv() : openCvPath));
+        if (!resultCache) {
+            args.add("--cache.result.max-bytes=0");
+            args.add("--cache.result.disk.dir=");
+        }
+        return SpringApplication.run(PhotoprocessorApplication.class, args.toArray(new String[0]));
+    }
+
+    private static String extractOpenCv() throws IOException {
+        String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        String arch = System.getProperty("os.arch").toLowerCase(Locale.ROOT);
+        String archDir = arch.equals("aarch64") || arch.equals("arm64") ? "ARMv8" : "x86_64";
+        String resource;
+        if (os.contains("mac")) {
+            resource = "/nu/pattern/opencv/osx/" + archDir + "/libopencv_java490.dylib";
+        } else if (os.contains("win")) {
+            resource = "/nu/pattern/opencv/windows/x86_64/opencv_java490.dll";
+        } else {
+            resource = "/nu/pattern/opencv/linux/" + archDir + "/libopencv_java490.so";
+        }
+
+        Path library = Files.createTempFile("opencv", resource.substring(resource.lastIndexOf('.')));
+        library.toFile().deleteOnExit();
+        try (InputStream in = LoadTestRunner.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("No bundled OpenCV library for " + os + "/" + arch + "; set OPENCVDLLPATH");
+            }
+            Files.copy(in, library, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return library.toString();
+    }
+
+    private static void print(Map<String, Object> perEndpoint) {
+        System.out.printf("%n%-10s %9s %9s %8s %8s %10s %10s %10s%n", "endpoint", "requests", "req/s", "errors",
+                "rejected", "p50 ms", "p95 ms", "p99 ms");
+        perEndpoint.forEach((key, value) -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> s = (Map<String, Object>) value;
+            System.out.printf("%-10s %9s %9s %8s %8s %10s %10s %10s%n", key, s.get("requests"),
+                    s.get("throughputPerSecond"), s.get("errors"), s.get("rejected"), s.get("p50Ms"),
+                    s.get("p95Ms"), s.get("p99Ms"));
+        });
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * PortraitCorpus.java
+ *
+ * Generates a deterministic corpus of synthetic portraits for the load
+ * test, so runs need neither network access nor checked-in photos.
+ *
+ */
+
+package com.passportphoto.loadtest;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RadialGradientPaint;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * The {@code PortraitCorpus} class draws face-like portraits: a shaded head
+ * with hair, brows, eyes, nose and mouth on shoulders, over a flat,
+ * gradient, noisy, striped or transparent background. Size, skin tone,
+ * face placement and background vary per image but depend only on the
+ * seed, so the same seed always yields byte-identical uploads. Transparent
+ * portraits are encoded as PNG, all others as JPEG.
+ * <p>
+ * This class is non-instantiable.
+ */
+public final class PortraitCorpus {
+
+    /** Portrait sizes, from a webcam still to a phone photo */
+    private static final int[][] SIZES = { { 640, 800 }, { 1080, 1350 }, { 1600, 2000 }, { 2448, 3264 } };
+
+    private static final Color[] SKIN_TONES = {
+            new Color(241, 194, 167), new Color(224, 172, 140), new Color(198, 134, 96),
+            new Color(141, 85, 54), new Color(92, 58, 40) };
+
+    /** Background styles a portrait can be drawn on */
+    public enum Background { FLAT, GRADIENT, NOISE, STRIPES, TRANSPARENT }
+
+    /**
+     * Simple structure to hold one encoded portrait and how it was drawn.
+     */
+    public record Portrait(String name, String contentType, byte[] bytes, int width, int height,
+            Background background) {
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private PortraitCorpus() {
+        // Utility class - do not instantiate
+    }
+
+    /**
+     * Generates the corpus. Backgrounds cycle so every style is represented
+     * once the corpus has at least five images.
+     *
+     * @param count number of portraits
+     * @param seed  seed for sizes, colors, placement and noise
+     * @return the encoded portraits
+     * @throws IOException if encoding fails
+     */
+    public static List<Portrait> generate(int count, long seed) throws IOException {
+        Random random = new Random(seed);
+        Background[] backgrounds = Background.values();
+        List<Portrait> corpus = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int[] size = SIZES[random.nextInt(SIZES.length)];
+            Background background = backgrounds[i % backgrounds.length];
+            BufferedImage image = draw(size[0], size[1], background, random);
+
+            boolean png = background == Background.TRANSPARENT;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, png ? "png" : "jpg", out);
+            corpus.add(new Portrait(String.format("portrait-%03d.%s", i, png ? "png" : "jpg"),
+                    png ? "image/png" : "image/jpeg", out.toByteArray(), size[0], size[1], background));
+        }
+        return corpus;
+    }
+
+    private static BufferedImage draw(int width, int height, Background background, Random random) {
+        boolean alpha = background == Background.TRANSPARENT;
+        BufferedImage image = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        drawBackground(g, image, background, random);
+
+        double scale = 0.85 + random.nextDouble() * 0.3;
+        int faceW = (int) (width * 0.36 * scale);
+        int faceH = (int) (faceW * 1.3);
+        int cx = width / 2 + (int) ((random.nextDouble() - 0.5) * width * 0.08);
+        int top = (int) (height * 0.2) + (int) ((random.nextDouble() - 0.5) * height * 0.06);
+        Color skin = SKIN_TONES[random.nextInt(SKIN_TONES.length)];
+        Color hair = new Color(20 + random.nextInt(60), 15 + random.nextInt(40), 10 + random.nextInt(30));
+
+        // Shoulders and neck
+        g.setColor(new Color(30 + random.nextInt(90), 40 + random.nextInt(90), 60 + random.nextInt(120)));
+        g.fillRoundRect(cx - faceW * 3 / 2, top + faceH * 11 / 10, faceW * 3, height, faceW, faceW);
+        g.setColor(skin.darker());
+        g.fillRect(cx - faceW / 5, top + faceH * 8 / 10, faceW * 2 / 5, faceH * 2 / 5);
+
+        // Hair behind the head, then the head lit from the front
+        g.setColor(hair);
+        g.fillOval(cx - faceW * 11 / 20, top - faceH / 10, faceW * 11 / 10, faceH * 7 / 10);
+        g.setPaint(new RadialGradientPaint(cx, top + faceH * 0.45f, faceW * 0.7f, new float[] { 0f, 1f },
+                new Color[] { brighter(skin, 25), skin.darker() }));
+        g.fill(new Ellipse2D.Double(cx - faceW / 2.0, top, faceW, faceH));
+
+        // Brows and eyes
+        int eyeY = top + faceH * 2 / 5;
+        int eyeDx = faceW / 5;
+        int eyeW = faceW / 5;
+        int eyeH = faceH / 14;
+        g.setColor(hair);
+        g.fillRoundRect(cx - eyeDx - eyeW * 6 / 10, eyeY - eyeH * 2, eyeW * 6 / 5, eyeH / 2, eyeH / 2, eyeH / 2);
+        g.fillRoundRect(cx + eyeDx - eyeW * 6 / 10, eyeY - eyeH * 2, eyeW * 6 / 5, eyeH / 2, eyeH / 2, eyeH / 2);
+        for (int side = -1; side <= 1; side += 2) {
+            int ex = cx + side * eyeDx;
+            g.setColor(skin.darker());
+            g.fillOval(ex - eyeW * 6 / 10, eyeY - eyeH * 7 / 10, eyeW * 6 / 5, eyeH * 7 / 5);
+            g.setColor(new Color(235, 235, 230));
+            g.fillOval(ex - eyeW / 2, eyeY - eyeH / 2, eyeW, eyeH);
+            g.setColor(new Color(40, 30, 25));
+            g.fillOval(ex - eyeH / 2, eyeY - eyeH / 2, eyeH, eyeH);
+            g.setColor(hair.darker());
+            g.fillArc(ex - eyeW / 2, eyeY - eyeH / 2, eyeW, eyeH, 20, 140);
+        }
+
+        // Nose shadow and mouth
+        g.setPaint(new GradientPaint(cx - faceW / 12f, 0, skin, cx + faceW / 12f, 0, skin.darker()));
+        g.fillRoundRect(cx - faceW / 14, eyeY + eyeH, faceW / 7, faceH / 5, faceW / 14, faceW / 14);
+        g.setColor(new Color(150, 60, 60));
+        g.fillOval(cx - faceW / 6, top + faceH * 3 / 4, faceW / 3, faceH / 16);
+        g.dispose();
+        return image;
+    }
+
+    private static void drawBackground(Graphics2D g, BufferedImage image, Background background, Random random) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Color base = new Color(150 + random.nextInt(106), 150 + random.nextInt(106), 150 + random.nextInt(106));
+        switch (background) {
+            case FLAT -> {
+                g.setColor(base);
+                g.fillRect(0, 0, width, height);
+            }
+            case GRADIENT -> {
+                g.setPaint(new GradientPaint(0, 0, base, 0, height, base.darker()));
+                g.fillRect(0, 0, width, height);
+            }
+            case NOISE -> {
+                int[] row = new int[width];
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        int n = random.nextInt(81) - 40;
+                        row[x] = (clamp(base.getRed() + n) << 16) | (clamp(base.getGreen() + n) << 8)
+                                | clamp(base.getBlue() + n);
+                    }
+                    image.setRGB(0, y, width, 1, row, 0, width);
+                }
+            }
+            case STRIPES -> {
+                int stripe = Math.max(8, width / 24);
+                for (int x = 0; x < width; x += stripe) {
+                    g.setColor((x / stripe) % 2 == 0 ? base : base.darker());
+                    g.fillRect(x, 0, stripe, height);
+                }
+            }
+            case TRANSPARENT -> {
+                // Left fully transparent
+            }
+        }
+    }
+
+    private static Color brighter(Color color, int amount) {
+        return new Color(clamp(color.getRed() + amount), clamp(color.getGreen() + amount),
+                clamp(color.getBlue() + amount));
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 import com.passportphoto.config.ConfigEnv;
+import com.passportphoto.service.ModelReadiness;
 
 import jakarta.annotation.PostConstruct;
 
@@ -24,23 +25,31 @@ public class PhotoprocessorApplication {
 
     private final ConfigEnv configEnv;
 
+    private final ModelReadiness readiness;
+
     /**
      * Constructor injection for loading environment config.
      */
     @Autowired
-    public PhotoprocessorApplication(ConfigEnv configEnv) {
+    public PhotoprocessorApplication(ConfigEnv configEnv, ModelReadiness readiness) {
         this.configEnv = configEnv;
+        this.readiness = readiness;
     }
 
     /**
      * Initializes the application by loading the OpenCV native library from the configured path.
+     * Most endpoints need it and it loads quickly, so startup waits for it; the models
+     * depending on it are loaded in the background.
      */
     @PostConstruct
     public void init() {
-        System.out.println("Trying to load OpenCV DLL from: ");
-        System.load(configEnv.getDdlpath());
-        // System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
-        System.out.println("OpenCV DLL loaded successfully!");
+        readiness.load(ModelReadiness.OPENCV, () -> {
+            System.out.println("Trying to load OpenCV DLL from: ");
+            System.load(configEnv.getDdlpath());
+            // System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+            System.out.println("OpenCV DLL loaded successfully!");
+            return null;
+        }).join();
     }
 
     /**
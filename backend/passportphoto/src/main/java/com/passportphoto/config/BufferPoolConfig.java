@@ -0,0 +1,55 @@
+/*
+ * BufferPoolConfig.java
+ *
+ * Applies the buffer pool bounds from configuration and publishes its meters.
+ *
+ */
+
+package com.passportphoto.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.passportphoto.util.BufferPool;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The {@code BufferPoolConfig} sizes the static {@link BufferPool} from
+ * {@code buffer.pool.max-bytes} and {@code buffer.pool.per-thread}, and
+ * registers the {@code buffer.pool.*} meters. The hit ratio is hits over
+ * all borrows.
+ */
+@Component
+public class BufferPoolConfig {
+
+    /**
+     * Configures the pool and registers its meters.
+     *
+     * @param maxBytes  total bytes of idle buffers the pool may hold
+     * @param perThread buffers of one shape each worker thread keeps for itself
+     * @param registry  the registry the meters are published to
+     */
+    public BufferPoolConfig(@Value("${buffer.pool.max-bytes}") long maxBytes,
+            @Value("${buffer.pool.per-thread}") int perThread,
+            MeterRegistry registry) {
+        BufferPool.configure(maxBytes, perThread);
+
+        Gauge.builder("buffer.pool.bytes", BufferPool::pooledBytes)
+                .description("Bytes of idle Mats and rasters held by the buffer pool")
+                .register(registry);
+        FunctionCounter.builder("buffer.pool.borrows", this, c -> BufferPool.hits())
+                .tag("result", "hit")
+                .description("Buffers borrowed from the pool, by whether one was reused")
+                .register(registry);
+        FunctionCounter.builder("buffer.pool.borrows", this, c -> BufferPool.misses())
+                .tag("result", "miss")
+                .description("Buffers borrowed from the pool, by whether one was reused")
+                .register(registry);
+        FunctionCounter.builder("buffer.pool.dropped", this, c -> BufferPool.drops())
+                .description("Returned buffers freed because the pool was full")
+                .register(registry);
+    }
+}
@@ -14,6 +14,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import com.passportphoto.service.FaceModelLoader;
+import com.passportphoto.service.ModelReadiness;
+import com.passportphoto.service.store.ModelCache;
 
 /**
  * Spring configuration class for application environment setup.
@@ -39,26 +41,30 @@ public class ConfigEnv {
      * Bean for loading the face detection model.
      *
      * @param path the path to the face model file
+     * @param modelCache the cache the model is extracted to
+     * @param readiness the tracker loading the model in the background
      * @return a FaceModelLoader instance for face detection
-     * @throws Exception if the model file cannot be loaded
      */
     @Bean
     @Qualifier("faceModel")
-    public FaceModelLoader faceModelLoader(@Value("${model.face.path}") String path) throws Exception {
-        return new FaceModelLoader(path);
+    public FaceModelLoader faceModelLoader(@Value("${model.face.path}") String path, ModelCache modelCache,
+            ModelReadiness readiness) {
+        return new FaceModelLoader(path, modelCache, readiness);
     }
 
     /**
      * Bean for loading the eye detection model.
      *
      * @param path the path to the eye model file
+     * @param modelCache the cache the model is extracted to
+     * @param readiness the tracker loading the model in the background
      * @return a FaceModelLoader instance for eye detection
-     * @throws Exception if the model file cannot be loaded
      */
     @Bean
     @Qualifier("eyeModel")
-    public FaceModelLoader eyeModelLoader(@Value("${model.eye.path}") String path) throws Exception {
-        return new FaceModelLoader(path);
+    public FaceModelLoader eyeModelLoader(@Value("${model.eye.path}") String path, ModelCache modelCache,
+            ModelReadiness readiness) {
+        return new FaceModelLoader(path, modelCache, readiness);
     }
 }
 
@@ -0,0 +1,47 @@
+/*
+ * ModelHealthIndicator.java
+ *
+ * Reports whether the models have finished loading, for the readiness probe.
+ *
+ */
+
+package com.passportphoto.config;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import com.passportphoto.service.ModelReadiness;
+
+/**
+ * The {@code ModelHealthIndicator} is the {@code model} health component:
+ * {@code UP} once every model is loaded, {@code OUT_OF_SERVICE} while any
+ * is loading and {@code DOWN} if one failed, with the state of each model
+ * as details. It is included in the {@code readiness} health group, so
+ * {@code /actuator/health/readiness} only passes once the pod can serve
+ * every endpoint.
+ */
+@Component
+public class ModelHealthIndicator implements HealthIndicator {
+
+    private final ModelReadiness readiness;
+
+    /**
+     * Constructs the indicator.
+     *
+     * @param readiness the tracker of model loading
+     */
+    public ModelHealthIndicator(ModelReadiness readiness) {
+        this.readiness = readiness;
+    }
+
+    @Override
+    public Health health() {
+        Status status = readiness.isReady() ? Status.UP
+                : readiness.states().values().stream().anyMatch(state -> state.startsWith("FAILED"))
+                        ? Status.DOWN
+                        : Status.OUT_OF_SERVICE;
+        return Health.status(status).withDetails(readiness.states()).build();
+    }
+}
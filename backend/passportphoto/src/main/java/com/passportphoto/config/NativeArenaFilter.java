@@ -0,0 +1,38 @@
+/*
+ * NativeArenaFilter.java
+ *
+ * Servlet filter scoping native memory to the HTTP request.
+ *
+ */
+
+package com.passportphoto.config;
+
+import java.io.IOException;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.passportphoto.util.NativeArena;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * The {@code NativeArenaFilter} opens a {@link NativeArena} around each
+ * request, so every Mat and ONNX value tracked on the request thread is
+ * released once the response has been produced. Work handed to pipeline
+ * stages runs in the stages' own arenas.
+ */
+@Component
+public class NativeArenaFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try (NativeArena arena = NativeArena.open()) {
+            chain.doFilter(request, response);
+        }
+    }
+}
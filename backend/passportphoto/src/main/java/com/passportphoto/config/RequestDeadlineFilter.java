@@ -0,0 +1,109 @@
+/*
+ * RequestDeadlineFilter.java
+ *
+ * Servlet filter starting the deadline of each HTTP request.
+ *
+ */
+
+package com.passportphoto.config;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.passportphoto.service.pipeline.Deadline;
+import com.passportphoto.service.pipeline.RequestDeadlines;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * The {@code RequestDeadlineFilter} attaches a {@link Deadline} to the
+ * request thread, from where pipeline stages and compute tasks pick it up.
+ * A synchronous request finishes its deadline when the handler returns. An
+ * asynchronous one finishes it when the response completes, and cancels it
+ * when the container reports a timeout or an error.
+ *
+ * <p>A client that disconnects is not detected. The servlet API only
+ * reports a closed connection when something is written to it, and nothing
+ * is written before the result is ready: flushing early would commit a 200
+ * status before the pipeline knows the outcome. Work for a client that went
+ * away therefore runs until the deadline expires, so
+ * {@code request.deadline-ms} bounds the wasted work.
+ *
+ * <p>Paths listed in {@code request.deadline-exempt-paths} get no deadline.
+ * These are synchronous endpoints whose run time grows with the request,
+ * like the batch endpoint returning every image in one response. A fixed
+ * limit would fail large batches that finish correctly.
+ */
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    private final RequestDeadlines deadlines;
+    private final List<String> exemptPaths;
+
+    /**
+     * Constructs the filter.
+     *
+     * @param deadlines   starts the deadline of each request
+     * @param exemptPaths request paths, without the context path, that run without a deadline
+     */
+    public RequestDeadlineFilter(RequestDeadlines deadlines,
+            @Value("${request.deadline-exempt-paths}") List<String> exemptPaths) {
+        this.deadlines = deadlines;
+        this.exemptPaths = exemptPaths;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return exemptPaths.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Deadline deadline = deadlines.start();
+        try (Deadline.Scope scope = Deadline.attach(deadline)) {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new DeadlineListener(deadline));
+            } else {
+                deadline.finish();
+            }
+        }
+    }
+
+    /**
+     * Ends the deadline of an asynchronous request with the request.
+     */
+    private record DeadlineListener(Deadline deadline) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            deadline.finish();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            deadline.cancel(Deadline.Reason.EXPIRED);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            deadline.cancel(Deadline.Reason.FAILED);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Still the same request; the listener stays registered
+        }
+    }
+}
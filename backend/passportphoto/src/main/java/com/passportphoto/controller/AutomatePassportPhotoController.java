@@ -11,19 +11,36 @@ package com.passportphoto.controller;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.passportphoto.dto.AutomatedImageResponse;
+import com.passportphoto.exceptions.ImageException;
 import com.passportphoto.exceptions.ImageInvalidFormatException;
+import com.passportphoto.exceptions.ModelNotReadyException;
+import com.passportphoto.exceptions.PipelineBusyException;
+import com.passportphoto.exceptions.RequestAbandonedException;
+import com.passportphoto.exceptions.ServiceOverloadedException;
 import com.passportphoto.service.AutomatePassportPhotoService;
+import com.passportphoto.service.cache.ResultCache;
+import com.passportphoto.service.job.ZipBatchService;
+import com.passportphoto.service.store.ImageStore;
+import com.passportphoto.util.EtagUtil;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 
 /**
@@ -38,38 +55,90 @@ public class AutomatePassportPhotoController {
     /** Service that processes the uploaded image into a passport photo */
     private final AutomatePassportPhotoService automatePassportPhotoService;
 
+    /** Service that streams ZIP archives through the automated pipeline */
+    private final ZipBatchService zipBatchService;
+
+    /** Store resolving image IDs sent in place of a file */
+    private final ImageStore imageStore;
+
     /**
      * Constructs the controller with the automate photo service.
      *
      * @param automatePassportPhotoService service used for automation logic
+     * @param zipBatchService              service used for ZIP bulk processing
+     * @param imageStore                   the store resolving image IDs
      */
-    public AutomatePassportPhotoController(AutomatePassportPhotoService automatePassportPhotoService) {
+    public AutomatePassportPhotoController(AutomatePassportPhotoService automatePassportPhotoService,
+            ZipBatchService zipBatchService, ImageStore imageStore) {
         this.automatePassportPhotoService = automatePassportPhotoService;
+        this.zipBatchService = zipBatchService;
+        this.imageStore = imageStore;
     }
 
     /**
      * Automates passport photo generation based on the uploaded image and selected template/country.
      *
-     * @param file     the image file to be processed
+     * @param file     the image file to be processed (optional if imageId is given)
+     * @param imageId  the ID of a stored upload (optional)
      * @param country  the selected country code (optional)
      * @param template the template name (optional)
-     * @return a ResponseEntity containing the result of the image processing
+     * @param ifNoneMatch entity tag of a result the client already holds (optional)
+     * @return a ResponseEntity containing the result of the image processing,
+     *         or 304 if the client already holds it
      */
     @PostMapping("/passportphoto")
-    public ResponseEntity<AutomatedImageResponse> automatePassportPhoto(
+    public CompletableFuture<ResponseEntity<AutomatedImageResponse>> automatePassportPhoto(
         @RequestParam(value = "image", required = false) MultipartFile file,
+        @RequestParam(value = "imageId", required = false) String imageId,
         @RequestParam(value = "country", required = false) String country,
-        @RequestParam(value = "template", required = false) String template
-    ) { try {
-            String processedBase64 = automatePassportPhotoService.automatePassportPhoto(file,country,template);
-            return ResponseEntity.ok(new AutomatedImageResponse("success","Automated Generated Image",processedBase64));
+        @RequestParam(value = "template", required = false) String template,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        MultipartFile image = imageStore.resolve(file, imageId);
+        try {
+            String key = automatePassportPhotoService.resultKey(image, country, template);
+            String etag = ResultCache.etag(key);
+            if (EtagUtil.matches(ifNoneMatch, etag)) {
+                return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).<AutomatedImageResponse>build());
+            }
+
+            return automatePassportPhotoService.automatePassportPhotoAsync(image,key,country,template)
+                .thenApply(processedBase64 -> ResponseEntity.ok().eTag(etag).body(new AutomatedImageResponse("success","Automated Generated Image",processedBase64)))
+                .exceptionally(e -> {
+                    // A shed leader fails the requests coalesced onto it the same way
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (isRetryable(cause)) {
+                        throw (ImageException) cause;
+                    }
+                    return ResponseEntity.ok(new AutomatedImageResponse("failed","Automated Generated Image",null));
+                });
 
         }catch (Exception e){
-            return ResponseEntity.ok(new AutomatedImageResponse("failed","Automated Generated Image",null));
+            if (isRetryable(e)) {
+                throw (ImageException) e;
+            }
+            return CompletableFuture.completedFuture(ResponseEntity.ok(new AutomatedImageResponse("failed","Automated Generated Image",null)));
         }
             
     }
 
+    /**
+     * Tells whether a failure says the service could not take the request
+     * now rather than that the image failed, so it must reach the
+     * {@code GlobalExceptionHandler} and its status and Retry-After instead
+     * of becoming a "failed" result.
+     *
+     * @param e the failure
+     * @return true if the client should retry later
+     */
+    private static boolean isRetryable(Throwable e) {
+        return e instanceof ServiceOverloadedException
+            || e instanceof ModelNotReadyException
+            || e instanceof PipelineBusyException
+            || e instanceof RequestAbandonedException;
+    }
+
     /**
      * Automates passport photo generation in batch mode.
      *
@@ -91,9 +160,35 @@ public class AutomatePassportPhotoController {
             return ResponseEntity.ok(response);
         } catch (ImageInvalidFormatException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Collections.singletonMap("error", new String[]{e.getMessage()}));
+        } catch (RequestAbandonedException e) {
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(Collections.singletonMap("error", new String[]{e.getMessage()}));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Collections.singletonMap("error", new String[]{"Image processing failed"}));
         }
     }
 
+    /**
+     * Automates passport photo generation for every image inside a ZIP archive.
+     * The archive is sent as the raw request body, so it is not subject to the
+     * multipart size limits, and the results are streamed back as a ZIP with a
+     * {@code manifest.json} listing the outcome of each entry.
+     *
+     * @param request  the request whose body is the ZIP archive
+     * @param country  the selected country code (optional)
+     * @param template the template name (optional)
+     * @return a streamed ZIP of processed images
+     */
+    @PostMapping(value = "/batch/zip", consumes = { "application/zip", MediaType.APPLICATION_OCTET_STREAM_VALUE })
+    public ResponseEntity<StreamingResponseBody> automatePassportPhotoZip(
+        HttpServletRequest request,
+        @RequestParam(value = "country", required = false) String country,
+        @RequestParam(value = "template", required = false) String template
+    ) {
+        StreamingResponseBody body = out -> zipBatchService.process(request.getInputStream(), out, country, template);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"passport-photos.zip\"")
+                .body(body);
+    }
+
 }
@@ -18,6 +18,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.passportphoto.dto.ImageBackgroundRemovalResponse;
 import com.passportphoto.service.BackgroundRemovalService;
+import com.passportphoto.service.store.ImageStore;
 
 /**
  * The {@code BackgroundRemovalController} provides an endpoint to remove
@@ -31,19 +32,25 @@ public class BackgroundRemovalController {
     /** Service that handles background processing and replacement */
     private final BackgroundRemovalService backgroundRemovalService;
 
+    /** Store resolving image IDs sent in place of a file */
+    private final ImageStore imageStore;
+
     /**
      * Constructs the controller with the required background removal service.
      *
      * @param backgroundRemovalService service to process background transformations
+     * @param imageStore               the store resolving image IDs
      */
-    public BackgroundRemovalController(BackgroundRemovalService backgroundRemovalService) {
+    public BackgroundRemovalController(BackgroundRemovalService backgroundRemovalService, ImageStore imageStore) {
         this.backgroundRemovalService = backgroundRemovalService;
+        this.imageStore = imageStore;
     }
 
     /**
      * Removes or replaces the background of the uploaded image.
      *
-     * @param file             the image file to process
+     * @param file             the image file to process (optional if imageId is given)
+     * @param imageId          the ID of a stored upload (optional)
      * @param colorString      optional hex color for solid background
      * @param backgroundString optional code for preset background
      * @return a base64-encoded processed image or an error message
@@ -51,9 +58,11 @@ public class BackgroundRemovalController {
     @PostMapping("/removebg")
     public ResponseEntity<ImageBackgroundRemovalResponse> removalbg(
             @RequestParam(value = "image", required = false) MultipartFile file,
+            @RequestParam(value = "imageId", required = false) String imageId,
             @RequestParam(value = "colorString", required = false) String colorString,
             @RequestParam(value = "backgroundString", required = false) String backgroundString) throws Exception {
-        String processedBase64 = backgroundRemovalService.processImage(file, colorString, backgroundString);
+        String processedBase64 = backgroundRemovalService.processImage(imageStore.resolve(file, imageId), colorString,
+                backgroundString);
         return ResponseEntity
                 .ok(new ImageBackgroundRemovalResponse("success", "Image Removed Background", processedBase64));
     }
@@ -0,0 +1,107 @@
+/*
+ * BatchJobController.java
+ *
+ * This controller exposes the asynchronous batch job API for automated
+ * passport photo generation: submission, progress polling, result retrieval
+ * and per-image completion events.
+ *
+ */
+
+package com.passportphoto.controller;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.passportphoto.dto.AutomatedImageResponse;
+import com.passportphoto.dto.BatchJobResponse;
+import com.passportphoto.service.job.BatchJobService;
+
+/**
+ * The {@code BatchJobController} lets clients submit a batch, receive a job id
+ * straight away, and then poll progress, fetch finished images one by one or
+ * subscribe to server-sent events instead of holding the request open.
+ */
+@RestController
+@RequestMapping("/automate/batch/jobs")
+@CrossOrigin(origins = "http://localhost:5173")
+public class BatchJobController {
+
+    /** Service that runs and tracks batch jobs */
+    private final BatchJobService batchJobService;
+
+    /**
+     * Constructs the controller with the batch job service.
+     *
+     * @param batchJobService service used to run batch jobs
+     */
+    public BatchJobController(BatchJobService batchJobService) {
+        this.batchJobService = batchJobService;
+    }
+
+    /**
+     * Submits a batch of images for background processing.
+     *
+     * @param fileList list of image files to be processed
+     * @param country  the selected country code (optional)
+     * @param template the template name (optional)
+     * @return the id of the created job
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, String>> submitJob(
+        @RequestParam(value = "image", required = false) List<MultipartFile> fileList,
+        @RequestParam(value = "country", required = false) String country,
+        @RequestParam(value = "template", required = false) String template
+    ) throws Exception {
+        String jobId = batchJobService.submit(fileList, country, template);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Collections.singletonMap("jobId", jobId));
+    }
+
+    /**
+     * Returns the progress of a batch job.
+     *
+     * @param jobId the job identifier
+     * @return the job progress
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<BatchJobResponse> getJob(@PathVariable("jobId") String jobId) {
+        return ResponseEntity.ok(batchJobService.getProgress(jobId));
+    }
+
+    /**
+     * Returns a single processed image of a batch job.
+     *
+     * @param jobId the job identifier
+     * @param index the image index within the batch
+     * @return the base64-encoded processed image
+     */
+    @GetMapping("/{jobId}/images/{index}")
+    public ResponseEntity<AutomatedImageResponse> getImage(@PathVariable("jobId") String jobId,
+            @PathVariable("index") int index) {
+        String image = batchJobService.getImage(jobId, index);
+        return ResponseEntity.ok(new AutomatedImageResponse("success", "Automated Generated Image", image));
+    }
+
+    /**
+     * Subscribes to per-image completion events of a batch job.
+     *
+     * @param jobId the job identifier
+     * @return an SSE stream of {@code image} and {@code complete} events
+     */
+    @GetMapping("/{jobId}/events")
+    public SseEmitter subscribe(@PathVariable("jobId") String jobId) {
+        return batchJobService.subscribe(jobId);
+    }
+}
@@ -10,6 +10,7 @@ package com.passportphoto.controller;
 import com.passportphoto.dto.ImageCropRequest;
 import com.passportphoto.dto.ImageCropResponse;
 import com.passportphoto.service.ImageCroppingService;
+import com.passportphoto.service.store.ImageStore;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -32,27 +33,36 @@ public class ImageCroppingController {
     /** Service that handles image conversion and cropping logic */
     private final ImageCroppingService imageCroppingService;
 
+    /** Store resolving image IDs sent in place of a file */
+    private final ImageStore imageStore;
+
     /**
      * Constructs the controller with the given image processing service.
      *
      * @param imageCroppingService the service used for cropping and encoding images
+     * @param imageStore           the store resolving image IDs
      */
-    public ImageCroppingController(ImageCroppingService imageCroppingService) {
+    public ImageCroppingController(ImageCroppingService imageCroppingService, ImageStore imageStore) {
         this.imageCroppingService = imageCroppingService;
+        this.imageStore = imageStore;
     }
 
     /**
      * Crops the uploaded image based on provided crop parameters.
      *
-     * @param imageFile   the uploaded image
+     * @param imageFile   the uploaded image (optional if imageId is given)
+     * @param imageId     the ID of a stored upload (optional)
      * @param cropRequest the crop dimensions
-     * @return a base64-encoded cropped image
+     * @return a base64-encoded cropped image and the source region it covers
      */
     @PostMapping("/crop")
-    public ResponseEntity<ImageCropResponse> cropImage(@RequestParam("image") MultipartFile imageFile,
+    public ResponseEntity<ImageCropResponse> cropImage(@RequestParam(value = "image", required = false) MultipartFile imageFile,
+            @RequestParam(value = "imageId", required = false) String imageId,
             @ModelAttribute ImageCropRequest cropRequest) throws Exception {
 
-        String base64ImageStr = imageCroppingService.cropFileToImage(imageFile, cropRequest);
-        return ResponseEntity.ok(new ImageCropResponse("success", "Image cropped successfully", base64ImageStr));
+        ImageCroppingService.Crop crop = imageCroppingService.cropFileToImage(imageStore.resolve(imageFile, imageId),
+                cropRequest);
+        return ResponseEntity.ok(new ImageCropResponse("success", "Image cropped successfully", crop.dataUrl(),
+                crop.x(), crop.y(), crop.width(), crop.height()));
     }
 }
\ No newline at end of file
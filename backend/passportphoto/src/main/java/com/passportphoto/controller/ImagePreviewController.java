@@ -0,0 +1,65 @@
+/*
+ * ImagePreviewController.java
+ *
+ * This controller serves reduced-resolution previews of stored uploads
+ * for the Passport Picture Project editor.
+ *
+ */
+
+package com.passportphoto.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.passportphoto.dto.ImagePreviewResponse;
+import com.passportphoto.service.PreviewService;
+
+/**
+ * The {@code ImagePreviewController} returns the preview level of a stored
+ * upload that best fits the size the client displays. The returned
+ * {@code imageId} can be used for interactive operations on the preview;
+ * coordinates are mapped to the original by dividing by {@code scale}.
+ */
+@RestController
+@RequestMapping("/image")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ImagePreviewController {
+
+    /** Service that builds and caches preview pyramids */
+    private final PreviewService previewService;
+
+    /**
+     * Constructs the controller with the preview service.
+     *
+     * @param previewService the service providing preview levels
+     */
+    public ImagePreviewController(PreviewService previewService) {
+        this.previewService = previewService;
+    }
+
+    /**
+     * Returns a preview of a stored upload.
+     *
+     * @param imageId the ID returned by the upload endpoint
+     * @param size    the long side the client will display
+     * @return the preview level as a base64 image with its ID and scale
+     */
+    @GetMapping("/preview/{imageId}")
+    public ResponseEntity<ImagePreviewResponse> getPreview(@PathVariable String imageId,
+            @RequestParam(value = "size", defaultValue = "512") int size) throws Exception {
+        PreviewService.Preview preview = previewService.getPreview(imageId, size);
+        // Image IDs are content hashes, so a preview for an ID never changes
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.HOURS))
+                .body(new ImagePreviewResponse("success", "Image preview", preview.dataUrl(), preview.imageId(),
+                        preview.width(), preview.height(), preview.scale()));
+    }
+}
@@ -8,22 +8,22 @@
 
 package com.passportphoto.controller;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.passportphoto.dto.ImageResizeResponse;
 import com.passportphoto.service.ImageResizingService;
+import com.passportphoto.service.spec.PassportSpecRegistry;
+import com.passportphoto.service.store.ImageStore;
+import com.passportphoto.util.EtagUtil;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The {@code ImageResizingController} provides endpoints for resizing passport photos
@@ -38,86 +38,61 @@ public class ImageResizingController {
     /** Service that performs the actual image resizing logic */
     private final ImageResizingService imageResizingService;
 
+    /** Store resolving image IDs sent in place of a file */
+    private final ImageStore imageStore;
+
+    /** Registry serving the precomputed country and template lists */
+    private final PassportSpecRegistry specRegistry;
+
+    /** How long clients may reuse a metadata list before revalidating */
+    private final long metadataMaxAgeSeconds;
+
     /**
      * Constructs the controller with the required resizing service.
      *
-     * @param imageResizingService the service that handles image resizing
+     * @param imageResizingService  the service that handles image resizing
+     * @param imageStore            the store resolving image IDs
+     * @param specRegistry          the registry of country and template specs
+     * @param metadataMaxAgeSeconds the max-age of metadata responses
      */
-    public ImageResizingController(ImageResizingService imageResizingService) {
+    public ImageResizingController(ImageResizingService imageResizingService, ImageStore imageStore,
+            PassportSpecRegistry specRegistry,
+            @Value("${spec.metadata.max-age-seconds}") long metadataMaxAgeSeconds) {
         this.imageResizingService = imageResizingService;
+        this.imageStore = imageStore;
+        this.specRegistry = specRegistry;
+        this.metadataMaxAgeSeconds = metadataMaxAgeSeconds;
     }
 
     /**
      * Returns a list of countries and their corresponding passport photo dimensions.
      *
+     * @param ifNoneMatch the entity tag of the client's cached copy (optional)
      * @return list of countries with display names and dimension strings
      */
     @GetMapping("/countries")
-    public ResponseEntity<List<Map<String, String>>> getCountryList() {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            Map<String, int[]> rawMap = mapper.readValue(
-                new ClassPathResource("dimensions/countries.json").getInputStream(),
-                new TypeReference<Map<String, int[]>>() {}
-            );
-
-            List<Map<String, String>> countryList = new ArrayList<>();
-
-            for (Map.Entry<String, int[]> entry : rawMap.entrySet()) {
-                String code = entry.getKey();
-                int[] dims = entry.getValue();
-
-                Map<String, String> item = new HashMap<>();
-                item.put("code", code);
-                item.put("name", getCountryNameFromCode(code));
-                item.put("dimensions", dims[0] + "x" + dims[1]);
-                countryList.add(item);
-            }
-
-            return ResponseEntity.ok(countryList);
-
-        } catch (IOException e) {
-            return ResponseEntity.status(500).body(Collections.emptyList());
-        }
+    public ResponseEntity<byte[]> getCountryList(
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return metadataResponse(specRegistry.getCountryList(), ifNoneMatch);
     }
 
     /**
      * Returns a list of template labels and their dimension sizes.
      *
+     * @param ifNoneMatch the entity tag of the client's cached copy (optional)
      * @return list of templates with size labels
      */
     @GetMapping("/templates")
-    public ResponseEntity<List<Map<String, String>>> getTemplateList() {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            Map<String, int[]> rawMap = mapper.readValue(
-                new ClassPathResource("dimensions/templates.json").getInputStream(),
-                new TypeReference<Map<String, int[]>>() {}
-            );
-
-            List<Map<String, String>> templateList = new ArrayList<>();
-
-            for (Map.Entry<String, int[]> entry : rawMap.entrySet()) {
-                String label = entry.getKey();
-                int[] dims = entry.getValue();
-
-                Map<String, String> item = new HashMap<>();
-                item.put("label", label);
-                item.put("size", dims[0] + "x" + dims[1]);
-                templateList.add(item);
-            }
-
-            return ResponseEntity.ok(templateList);
-
-        } catch (IOException e) {
-            return ResponseEntity.status(500).body(Collections.emptyList());
-        }
+    public ResponseEntity<byte[]> getTemplateList(
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return metadataResponse(specRegistry.getTemplateList(), ifNoneMatch);
     }
 
     /**
      * Resizes an uploaded image based on selected country, template, or custom dimensions.
      *
-     * @param file          the uploaded image file
+     * @param file          the uploaded image file (optional if imageId is given)
+     * @param imageId       the ID of a stored upload (optional)
      * @param country       the selected country code (optional)
      * @param template      the selected template label (optional)
      * @param customWidth   the custom width (optional)
@@ -127,12 +102,14 @@ public class ImageResizingController {
     @PostMapping("/resize")
     public ResponseEntity<ImageResizeResponse> resizeImage(
         @RequestParam(value = "image", required = false) MultipartFile file,
+        @RequestParam(value = "imageId", required = false) String imageId,
         @RequestParam(value = "country", required = false) String country,
         @RequestParam(value = "template", required = false) String template,
         @RequestParam(value = "customWidth", required = false) Integer customWidth, 
         @RequestParam(value = "customHeight", required = false) Integer customHeight) {
+        MultipartFile image = imageStore.resolve(file, imageId);
         try {
-            String dataUrl = imageResizingService.resizeImage(file, country, template, customWidth, customHeight);
+            String dataUrl = imageResizingService.resizeImage(image, country, template, customWidth, customHeight);
             return ResponseEntity.ok(new ImageResizeResponse("success", "Image resized successfully", dataUrl));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(new ImageResizeResponse("error", "Image resize failed: " + e.getMessage(), null));
@@ -140,18 +117,17 @@ public class ImageResizingController {
     }
 
     /**
-     * Maps a country code to a human-readable name.
-     *
-     * @param code the 3-letter country code
-     * @return the full country name
+     * Serves a precomputed metadata list, or 304 if the client's copy is current.
      */
-    private String getCountryNameFromCode(String code) {
-        return switch (code.toLowerCase()) {
-            case "jpn" -> "Japan";
-            case "sgp" -> "Singapore";
-            case "chn" -> "China";
-            case "mas" -> "Malaysia";
-            default -> code.toUpperCase();
-        };
+    private ResponseEntity<byte[]> metadataResponse(PassportSpecRegistry.Metadata metadata, String ifNoneMatch) {
+        CacheControl cacheControl = CacheControl.maxAge(metadataMaxAgeSeconds, TimeUnit.SECONDS).cachePublic();
+        if (EtagUtil.matchesExisting(ifNoneMatch, metadata.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(metadata.etag()).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+            .eTag(metadata.etag())
+            .cacheControl(cacheControl)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(metadata.json());
     }
 }
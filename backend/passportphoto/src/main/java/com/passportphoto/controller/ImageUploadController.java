@@ -19,6 +19,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.passportphoto.dto.ImageUploadResponse;
 import com.passportphoto.service.ImageUploadService;
+import com.passportphoto.service.store.ImageStore;
+import com.passportphoto.util.StoredMultipartFile;
 
 /**
  * The {@code ImageUploadController} class provides a REST endpoint for
@@ -33,26 +35,35 @@ public class ImageUploadController {
     /** Service class that handles image upload logic */
     private final ImageUploadService imageUploadService;
 
+    /** Store holding uploads for follow-up operations */
+    private final ImageStore imageStore;
+
     /**
      * Constructs the {@code ImageUploadController} with the required service.
      *
      * @param imageUploadService the service to process uploaded images
+     * @param imageStore         the store uploads are kept in
      */
-    public ImageUploadController(ImageUploadService imageUploadService) {
+    public ImageUploadController(ImageUploadService imageUploadService, ImageStore imageStore) {
         this.imageUploadService = imageUploadService;
+        this.imageStore = imageStore;
     }
 
     /**
-     * Uploads an image file and returns a response with the base64-encoded image.
+     * Uploads an image file, stores it server-side and returns its ID, so
+     * that operation endpoints can take {@code imageId} instead of the file.
      *
      * @param imageFile the image file to upload
-     * @return a response entity containing the upload status and image
+     * @param echo      whether to return the base64-encoded image as well
+     * @return a response entity containing the upload status, image and image ID
      */
     @PostMapping("/upload")
-    public ResponseEntity<ImageUploadResponse> uploadImage(@RequestParam("image") MultipartFile imageFile) throws Exception {
-        
-        String base64Image = imageUploadService.uploadImage(imageFile);
-        return ResponseEntity.ok(new ImageUploadResponse("success", "Image uploaded successfully", base64Image));
+    public ResponseEntity<ImageUploadResponse> uploadImage(@RequestParam("image") MultipartFile imageFile,
+            @RequestParam(value = "echo", defaultValue = "true") boolean echo) throws Exception {
+        StoredMultipartFile stored = imageStore.put(imageFile);
+        String base64Image = echo ? imageUploadService.uploadImage(stored) : null;
+        return ResponseEntity.ok(new ImageUploadResponse("success", "Image uploaded successfully", base64Image,
+                stored.getId()));
 
     }
 }
\ No newline at end of file
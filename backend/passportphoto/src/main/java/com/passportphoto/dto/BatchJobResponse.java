@@ -0,0 +1,110 @@
+/*
+ * BatchJobResponse.java
+ *
+ * This class represents the response DTO describing the progress of an
+ * asynchronous batch job in the Passport Picture Project.
+ *
+ */
+
+package com.passportphoto.dto;
+
+import java.util.List;
+
+/**
+ * The {@code BatchJobResponse} class is a Data Transfer Object (DTO)
+ * that reports the identifier, overall status and per-image progress
+ * of a submitted batch job.
+ */
+public class BatchJobResponse {
+
+    /** Identifier used to poll the job and fetch its results */
+    private final String jobId;
+
+    /** Overall job status ("RUNNING" or "COMPLETED") */
+    private final String status;
+
+    /** Number of images submitted */
+    private final int total;
+
+    /** Number of images processed successfully */
+    private final int completed;
+
+    /** Number of images that failed */
+    private final int failed;
+
+    /** Status of each image in submission order */
+    private final List<String> images;
+
+    /**
+     * Constructs a {@code BatchJobResponse} snapshot.
+     *
+     * @param jobId     the job identifier
+     * @param status    the overall job status
+     * @param total     number of images submitted
+     * @param completed number of images processed successfully
+     * @param failed    number of images that failed
+     * @param images    status of each image
+     */
+    public BatchJobResponse(String jobId, String status, int total, int completed, int failed, List<String> images) {
+        this.jobId = jobId;
+        this.status = status;
+        this.total = total;
+        this.completed = completed;
+        this.failed = failed;
+        this.images = images;
+    }
+
+    /**
+     * Gets the job identifier.
+     *
+     * @return the job id
+     */
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Gets the overall job status.
+     *
+     * @return the status string
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the number of images submitted.
+     *
+     * @return the total image count
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the number of images processed successfully.
+     *
+     * @return the completed image count
+     */
+    public int getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Gets the number of images that failed.
+     *
+     * @return the failed image count
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the status of each image in submission order.
+     *
+     * @return list of image statuses
+     */
+    public List<String> getImages() {
+        return images;
+    }
+}
@@ -27,6 +27,15 @@ public class ImageCropRequest {
     /** The height of the crop area */
     private double cropHeight;
 
+    /** Optional width the crop is scaled to */
+    private Integer targetWidth;
+
+    /** Optional height the crop is scaled to */
+    private Integer targetHeight;
+
+    /** Whether a JPEG crop is widened to whole MCUs and keeps the source quantization */
+    private boolean alignToBlocks;
+
     /**
      * Gets the x-coordinate of the crop.
      *
@@ -98,4 +107,58 @@ public class ImageCropRequest {
     public void setCropHeight(double cropHeight) { 
         this.cropHeight = cropHeight; 
     }
+
+    /**
+     * Gets the width the crop is scaled to.
+     *
+     * @return the target width, or null to keep the crop size
+     */
+    public Integer getTargetWidth() { 
+        return targetWidth; 
+    }
+
+    /**
+     * Sets the width the crop is scaled to.
+     *
+     * @param targetWidth the target width to set
+     */
+    public void setTargetWidth(Integer targetWidth) { 
+        this.targetWidth = targetWidth; 
+    }
+
+    /**
+     * Gets the height the crop is scaled to.
+     *
+     * @return the target height, or null to keep the crop size
+     */
+    public Integer getTargetHeight() { 
+        return targetHeight; 
+    }
+
+    /**
+     * Sets the height the crop is scaled to.
+     *
+     * @param targetHeight the target height to set
+     */
+    public void setTargetHeight(Integer targetHeight) { 
+        this.targetHeight = targetHeight; 
+    }
+
+    /**
+     * Gets whether a JPEG crop is widened to whole MCUs and keeps the source quantization.
+     *
+     * @return true for a block-aligned JPEG crop
+     */
+    public boolean isAlignToBlocks() { 
+        return alignToBlocks; 
+    }
+
+    /**
+     * Sets whether a JPEG crop is widened to whole MCUs and keeps the source quantization.
+     *
+     * @param alignToBlocks the flag to set
+     */
+    public void setAlignToBlocks(boolean alignToBlocks) { 
+        this.alignToBlocks = alignToBlocks; 
+    }
 }
@@ -10,12 +10,68 @@ package com.passportphoto.dto;
 import com.passportphoto.dto.ImageResponse;
 /**
  * The {@code ImageCropResponse} class is a Data Transfer Object (DTO)
- * that contains the result of an image upload, including a status,
- * descriptive message, and the uploaded image in base64 format.
+ * that contains the result of an image crop, including a status,
+ * descriptive message, the cropped image in base64 format, and the region
+ * of the source image it covers, which is wider than the requested one for
+ * a block-aligned JPEG crop.
  */
 
  public class ImageCropResponse extends ImageResponse {
-    public ImageCropResponse(String status, String message, String image) {
+
+    /** X-coordinate in the source of the region the crop covers */
+    private final int cropX;
+
+    /** Y-coordinate in the source of the region the crop covers */
+    private final int cropY;
+
+    /** Width in the source of the region the crop covers */
+    private final int cropWidth;
+
+    /** Height in the source of the region the crop covers */
+    private final int cropHeight;
+
+    public ImageCropResponse(String status, String message, String image, int cropX, int cropY, int cropWidth,
+            int cropHeight) {
         super(status, message, image);
+        this.cropX = cropX;
+        this.cropY = cropY;
+        this.cropWidth = cropWidth;
+        this.cropHeight = cropHeight;
+    }
+
+    /**
+     * Gets the x-coordinate of the region the crop covers.
+     *
+     * @return the x-coordinate in source pixels
+     */
+    public int getCropX() {
+        return cropX;
+    }
+
+    /**
+     * Gets the y-coordinate of the region the crop covers.
+     *
+     * @return the y-coordinate in source pixels
+     */
+    public int getCropY() {
+        return cropY;
+    }
+
+    /**
+     * Gets the width of the region the crop covers.
+     *
+     * @return the width in source pixels
+     */
+    public int getCropWidth() {
+        return cropWidth;
+    }
+
+    /**
+     * Gets the height of the region the crop covers.
+     *
+     * @return the height in source pixels
+     */
+    public int getCropHeight() {
+        return cropHeight;
     }
 }
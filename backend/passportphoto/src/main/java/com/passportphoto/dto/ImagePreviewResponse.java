@@ -0,0 +1,76 @@
+/*
+ * ImagePreviewResponse.java
+ * 
+ * This class represents the response DTO for the image preview operation
+ * in the Passport Picture Project.
+ * 
+ */
+
+package com.passportphoto.dto;
+
+/**
+ * The {@code ImagePreviewResponse} class is a Data Transfer Object (DTO)
+ * that contains a preview level of a stored image, including the ID under
+ * which the level itself is stored, its size, and its scale relative to the
+ * original image.
+ */
+
+ public class ImagePreviewResponse extends ImageResponse {
+
+    /** ID of the stored preview level, accepted by operation endpoints */
+    private final String imageId;
+
+    /** Width of the preview level */
+    private final int width;
+
+    /** Height of the preview level */
+    private final int height;
+
+    /** Preview size divided by original size */
+    private final double scale;
+
+    public ImagePreviewResponse(String status, String message, String image, String imageId, int width, int height,
+            double scale) {
+        super(status, message, image);
+        this.imageId = imageId;
+        this.width = width;
+        this.height = height;
+        this.scale = scale;
+    }
+
+    /**
+     * Gets the ID of the stored preview level.
+     *
+     * @return the image ID
+     */
+    public String getImageId() {
+        return imageId;
+    }
+
+    /**
+     * Gets the width of the preview level.
+     *
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the preview level.
+     *
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the scale of the preview relative to the original.
+     *
+     * @return the preview size divided by the original size
+     */
+    public double getScale() {
+        return scale;
+    }
+}
@@ -11,11 +11,30 @@ import com.passportphoto.dto.ImageResponse;
 /**
  * The {@code ImageUploadResponse} class is a Data Transfer Object (DTO)
  * that contains the result of an image upload, including a status,
- * descriptive message, and the uploaded image in base64 format.
+ * descriptive message, the uploaded image in base64 format, and the ID
+ * under which the image is stored for follow-up operations.
  */
 
  public class ImageUploadResponse extends ImageResponse {
+
+    /** ID of the stored image, accepted by operation endpoints in place of a file */
+    private final String imageId;
+
     public ImageUploadResponse(String status, String message, String image) {
+        this(status, message, image, null);
+    }
+
+    public ImageUploadResponse(String status, String message, String image, String imageId) {
         super(status, message, image);
+        this.imageId = imageId;
+    }
+
+    /**
+     * Gets the ID of the stored image.
+     *
+     * @return the image ID
+     */
+    public String getImageId() {
+        return imageId;
     }
 }
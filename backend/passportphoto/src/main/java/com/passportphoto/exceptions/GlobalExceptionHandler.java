@@ -3,6 +3,7 @@ package com.passportphoto.exceptions;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -61,6 +62,74 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(e.getMessage(), HttpStatus.PAYLOAD_TOO_LARGE);
     }
 
+    /**
+     * Handles requests shed by admission control.
+     * Returns HTTP 429 (Too Many Requests) with a Retry-After header.
+     */
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<Object> handleServiceOverloadedException(ServiceOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    /**
+     * Handles a pipeline stage rejecting work because its queue is full.
+     * Returns HTTP 503 (Service Unavailable).
+     */
+    @ExceptionHandler(PipelineBusyException.class)
+    public ResponseEntity<Object> handlePipelineBusyException(PipelineBusyException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Handles requests dropped because their deadline expired or the request failed.
+     * Returns HTTP 504 (Gateway Timeout).
+     */
+    @ExceptionHandler(RequestAbandonedException.class)
+    public ResponseEntity<Object> handleRequestAbandonedException(RequestAbandonedException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.GATEWAY_TIMEOUT);
+    }
+
+    /**
+     * Handles requests that need a model still loading in the background.
+     * Returns HTTP 503 (Service Unavailable) with a Retry-After header.
+     */
+    @ExceptionHandler(ModelNotReadyException.class)
+    public ResponseEntity<Object> handleModelNotReadyException(ModelNotReadyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    /**
+     * Handles lookups of unknown or expired batch jobs.
+     * Returns HTTP 404 (Not Found).
+     */
+    @ExceptionHandler(JobNotFoundException.class)
+    public ResponseEntity<Object> handleJobNotFoundException(JobNotFoundException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Handles requests for batch results that are still pending or failed.
+     * Returns HTTP 409 (Conflict) with the current image status.
+     */
+    @ExceptionHandler(ImageNotReadyException.class)
+    public ResponseEntity<Map<String, String>> handleImageNotReadyException(ImageNotReadyException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("status", e.getStatus(), "error", e.getMessage()));
+    }
+
+    /**
+     * Handles references to stored images that are unknown or evicted.
+     * Returns HTTP 404 (Not Found).
+     */
+    @ExceptionHandler(ImageNotFoundException.class)
+    public ResponseEntity<Object> handleImageNotFoundException(ImageNotFoundException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
     /**
      * Handles AI model processing failures.
      * Returns HTTP 500 (Internal Server Error) with an error message.
@@ -0,0 +1,19 @@
+package com.passportphoto.exceptions;
+
+/**
+ * Exception thrown when an image ID does not refer to a stored upload,
+ * either because it never existed or because it has been evicted.
+ */
+
+public class ImageNotFoundException extends RuntimeException {
+
+    /**
+     * Constructs a new ImageNotFoundException with the specified message.
+     * @param Message The error message describing the missing image.
+     */
+    public ImageNotFoundException(String Message){
+        super(Message);
+    }
+    
+    
+}
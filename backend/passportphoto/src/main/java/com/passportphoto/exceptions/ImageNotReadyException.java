@@ -0,0 +1,28 @@
+package com.passportphoto.exceptions;
+
+/**
+ * Exception thrown when a result of a batch job is requested before the
+ * image has been processed successfully.
+ */
+
+public class ImageNotReadyException extends RuntimeException {
+
+    /** Processing state of the requested image */
+    private final String status;
+
+    /**
+     * Constructs a new ImageNotReadyException with the specified message.
+     * @param Message The error message naming the image.
+     * @param status The current state of the image, e.g. PENDING or FAILED.
+     */
+    public ImageNotReadyException(String Message, String status){
+        super(Message);
+        this.status = status;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+    
+    
+}
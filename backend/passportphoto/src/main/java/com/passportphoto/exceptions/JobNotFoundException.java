@@ -0,0 +1,19 @@
+package com.passportphoto.exceptions;
+
+/**
+ * Exception thrown when a batch job or one of its results cannot be found,
+ * either because it never existed or because it has already expired.
+ */
+
+public class JobNotFoundException extends RuntimeException {
+
+    /**
+     * Constructs a new JobNotFoundException with the specified message.
+     * @param Message The error message describing the missing job or result.
+     */
+    public JobNotFoundException(String Message){
+        super(Message);
+    }
+    
+    
+}
@@ -0,0 +1,29 @@
+package com.passportphoto.exceptions;
+
+/**
+ * Exception thrown when a request needs a model that is still loading in
+ * the background or failed to load.
+ * Extends ImageException to provide a specific error type.
+ */
+
+public class ModelNotReadyException extends ImageException {
+
+    /** Seconds the client should wait before retrying */
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructs a new ModelNotReadyException with the specified message.
+     * @param Message The error message naming the model.
+     * @param retryAfterSeconds The delay suggested to the client.
+     */
+    public ModelNotReadyException(String Message, long retryAfterSeconds){
+        super(Message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+    
+    
+}
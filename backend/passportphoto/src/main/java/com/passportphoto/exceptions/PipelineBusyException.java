@@ -0,0 +1,20 @@
+package com.passportphoto.exceptions;
+
+/**
+ * Exception thrown when a pipeline stage queue is full and the configured
+ * queue-full policy rejects new work.
+ * Extends ImageException to provide a specific error type.
+ */
+
+public class PipelineBusyException extends ImageException {
+
+    /**
+     * Constructs a new PipelineBusyException with the specified message.
+     * @param Message The error message naming the saturated stage.
+     */
+    public PipelineBusyException(String Message){
+        super(Message);
+    }
+    
+    
+}
@@ -0,0 +1,20 @@
+package com.passportphoto.exceptions;
+
+/**
+ * Exception thrown when the work for a request is dropped because its
+ * deadline expired or the container reported the request as failed.
+ * Extends ImageException to provide a specific error type.
+ */
+
+public class RequestAbandonedException extends ImageException {
+
+    /**
+     * Constructs a new RequestAbandonedException with the specified message.
+     * @param Message The error message naming the stage that dropped the work.
+     */
+    public RequestAbandonedException(String Message){
+        super(Message);
+    }
+
+
+}
@@ -0,0 +1,29 @@
+package com.passportphoto.exceptions;
+
+/**
+ * Exception thrown when the server sheds a request because too many
+ * inferences are running or queued, or their pixels exceed the memory budget.
+ * Extends ImageException to provide a specific error type.
+ */
+
+public class ServiceOverloadedException extends ImageException {
+
+    /** Seconds the client should wait before retrying */
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructs a new ServiceOverloadedException with the specified message.
+     * @param Message The error message describing why the request was shed.
+     * @param retryAfterSeconds The delay suggested to the client.
+     */
+    public ServiceOverloadedException(String Message, long retryAfterSeconds){
+        super(Message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+    
+    
+}
@@ -8,49 +8,84 @@
 
 package com.passportphoto.service;
 
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import javax.imageio.ImageIO;
 
-import com.passportphoto.service.FaceCenteringService;
+import com.passportphoto.service.cache.ResultCache;
+import com.passportphoto.service.cache.SingleFlight;
+import com.passportphoto.service.pipeline.AdmissionControlService;
+import com.passportphoto.service.pipeline.InferenceBatcher;
+import com.passportphoto.service.pipeline.PipelineStage;
+import com.passportphoto.service.pipeline.StagedPipelineExecutor;
+import com.passportphoto.service.pipeline.WorkloadClass;
+import com.passportphoto.service.spec.PassportSpecRegistry;
+import com.passportphoto.util.BufferPool;
+import com.passportphoto.util.HashUtil;
 import com.passportphoto.util.ImageConverterUtil;
-import com.passportphoto.util.ResizeUtil;
 import com.passportphoto.util.ValidationUtil;
 
 import org.opencv.core.*;
-import org.springframework.mock.web.MockMultipartFile;
+import org.opencv.imgproc.Imgproc;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import ai.onnxruntime.*;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * The {@code AutomatePassportPhotoService} class handles the end-to-end
  * pipeline for processing passport photos, including resizing to
  * ONNX-compatible
  * dimensions and background removal.
+ * Each step runs on its own stage executor so that the request thread is
+ * released while decoding, detection, inference and encoding are performed.
+ * Results are cached by a hash of the upload and the sizing parameters, and
+ * identical requests arriving while one is in flight share its result.
+ * Background callers have their inference grouped with other images of the
+ * same size and run as one batch.
  */
 @Service
 public class AutomatePassportPhotoService {
 
+    /** Bumped whenever the pipeline output changes, so stale cached results are not served */
+    private static final String PIPELINE_VERSION = "automate-v1";
+
     private final BackgroundRemovalService backgroundRemovalService;
     private final ImageResizingService imageResizingService;
     private final FaceCenteringService faceCenteringService;
+    private final StagedPipelineExecutor pipeline;
+    private final AdmissionControlService admissionControl;
+    private final InferenceBatcher inferenceBatcher;
+    private final ResultCache resultCache;
+    private final PassportSpecRegistry specRegistry;
+    private final SingleFlight<String, String> flights;
 
     /**
      * Constructs the service with required dependencies.
      */
     public AutomatePassportPhotoService(BackgroundRemovalService backgroundRemovalService,
-            ImageResizingService imageResizingService, FaceCenteringService faceCenteringService) {
+            ImageResizingService imageResizingService, FaceCenteringService faceCenteringService,
+            StagedPipelineExecutor pipeline, AdmissionControlService admissionControl,
+            InferenceBatcher inferenceBatcher, ResultCache resultCache, PassportSpecRegistry specRegistry,
+            MeterRegistry registry) {
         this.backgroundRemovalService = backgroundRemovalService;
         this.imageResizingService = imageResizingService;
         this.faceCenteringService = faceCenteringService;
+        this.pipeline = pipeline;
+        this.admissionControl = admissionControl;
+        this.inferenceBatcher = inferenceBatcher;
+        this.resultCache = resultCache;
+        this.specRegistry = specRegistry;
+        this.flights = new SingleFlight<>("automate", registry);
 
     }
 
@@ -68,10 +103,16 @@ public class AutomatePassportPhotoService {
      * @throws OrtException if ONNX model inference fails
      */
     public String[] batchProcessing(List<MultipartFile> fileList, String country, String template) throws Exception {
+        List<CompletableFuture<String>> futures = new ArrayList<>(fileList.size());
+        for (MultipartFile file : fileList) {
+            imageResizingService.validateInput(file, country, template, null, null);
+            AdmissionControlService.Permit permit = admissionControl.admitBlocking(pixelCount(file));
+            futures.add(runPipeline(file, country, template, permit, true));
+        }
+
         String[] base64List = new String[fileList.size()];
-        for (int i = 0; i < fileList.size(); i++) {
-            String processedImage = automatePassportPhoto(fileList.get(i), country, template);
-            base64List[i] = processedImage;
+        for (int i = 0; i < futures.size(); i++) {
+            base64List[i] = join(futures.get(i));
         }
         return base64List;
 
@@ -82,6 +123,8 @@ public class AutomatePassportPhotoService {
      * - Resize image
      * - Round dimensions to multiple of 32
      * - Perform background removal
+     * Intended for background workers: waits for admission instead of
+     * being shed.
      *
      * @param file     the uploaded image
      * @param country  country code for standard sizing
@@ -91,14 +134,201 @@ public class AutomatePassportPhotoService {
      * @throws OrtException if ONNX model inference fails
      */
     public String automatePassportPhoto(MultipartFile file, String country, String template) throws Exception {
-        String base64Image = imageResizingService.resizeImage(file, country, template, null, null);
-        MultipartFile resizeFile = ImageConverterUtil.convertBase64ToMultipartFile(base64Image, "uploaded-img.jpg");
+        String key = resultKey(file, country, template);
+        String cached = resultCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        return join(flights.execute(key, () -> {
+            // Read in place: background uploads are buffer-backed and outlive the request
+            AdmissionControlService.Permit permit = admissionControl.admitBlocking(pixelCount(file));
+            return runPipeline(file, country, template, permit, true).thenApply(result -> cache(key, result));
+        }));
+    }
+
+    /**
+     * Admits an interactive request and runs it through the pipeline.
+     * Only reading the upload and admission happen on the calling thread.
+     *
+     * @param file     the uploaded image
+     * @param country  country code for standard sizing
+     * @param template optional template label
+     * @return a future completed with the processed image as base64 string
+     * @throws Exception if the upload cannot be read
+     * @throws com.passportphoto.exceptions.ServiceOverloadedException if the request is shed
+     */
+    public CompletableFuture<String> automatePassportPhotoAsync(MultipartFile file, String country, String template)
+            throws Exception {
+        return automatePassportPhotoAsync(file, resultKey(file, country, template), country, template);
+    }
+
+    /**
+     * Serves an interactive request from the result cache, joins an identical
+     * request already in flight, or admits it and runs it through the
+     * pipeline, caching the result.
+     *
+     * @param file     the uploaded image
+     * @param key      the result key from {@link #resultKey}
+     * @param country  country code for standard sizing
+     * @param template optional template label
+     * @return a future completed with the processed image as base64 string
+     * @throws Exception if the upload cannot be read
+     * @throws com.passportphoto.exceptions.ServiceOverloadedException if the request is shed
+     */
+    public CompletableFuture<String> automatePassportPhotoAsync(MultipartFile file, String key, String country,
+            String template) throws Exception {
+        String cached = resultCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return flights.execute(key, () -> {
+            // Copied, since the multipart upload is cleaned up when the request completes
+            InputStreamSource source = new ByteArrayResource(file.getBytes());
+            AdmissionControlService.Permit permit = admissionControl.admit(pixelCount(source));
+            return runPipeline(source, country, template, permit, false).thenApply(result -> cache(key, result));
+        });
+    }
+
+    /**
+     * Validates the request and derives the key identifying its result: a hash
+     * of the upload content together with the sizing parameters.
+     *
+     * @param file     the uploaded image
+     * @param country  country code for standard sizing
+     * @param template optional template label
+     * @return the result key, also used as the response entity tag
+     * @throws IOException if the upload cannot be read
+     */
+    public String resultKey(MultipartFile file, String country, String template) throws IOException {
+        imageResizingService.validateInput(file, country, template, null, null);
+        String contentHash;
+        try (InputStream in = file.getInputStream()) {
+            contentHash = HashUtil.sha256Hex(in);
+        }
+        String normalizedCountry = country == null || country.isEmpty() ? null : country.toLowerCase();
+        String normalizedTemplate = template == null || template.isEmpty() ? null : template;
+        // The resolved size is part of the key, so a reloaded spec does not serve stale results
+        int[] dimensions = specRegistry.getTargetDimensions(country, template, null, null);
+        return HashUtil.sha256Hex(PIPELINE_VERSION, contentHash, normalizedCountry, normalizedTemplate,
+                dimensions[0] + "x" + dimensions[1]);
+    }
+
+    private String cache(String key, String result) {
+        resultCache.put(key, result);
+        return result;
+    }
+
+    /**
+     * Runs the passport photo pipeline across the stage executors:
+     * Decode -> Resize -> Detect and Center -> Remove Background -> Encode.
+     * The admission permit is released once the pipeline finishes. Batched
+     * runs trade a short wait for their inference group against throughput,
+     * and queue at every stage as batch work, behind interactive requests.
+     */
+    private CompletableFuture<String> runPipeline(InputStreamSource source, String country, String template,
+            AdmissionControlService.Permit permit, boolean batched) {
+        int[] dimensions = specRegistry.getTargetDimensions(country, template, null, null);
+        WorkloadClass workload = batched ? WorkloadClass.BATCH : WorkloadClass.INTERACTIVE;
+
+        return pipeline.submit(PipelineStage.DECODE, workload, () -> decode(source))
+                .thenCompose(decoded -> pipeline.submit(PipelineStage.RESIZE, workload,
+                        () -> resize(decoded, dimensions[0], dimensions[1])))
+                .thenCompose(resized -> pipeline.submit(PipelineStage.DETECTION, workload, () -> center(resized)))
+                .thenCompose(centered -> batched
+                        ? removeBackgroundBatched(centered)
+                        : pipeline.submit(PipelineStage.INFERENCE, workload,
+                                () -> backgroundRemovalService.removeBackground(centered, null, null)))
+                .thenCompose(foreground -> pipeline.submit(PipelineStage.ENCODE, workload, () -> encode(foreground)))
+                .whenComplete((result, error) -> permit.close());
+    }
+
+    /**
+     * Removes the background through the inference batcher. Preparing the
+     * input and blending the output run on the resize and encode stages, so
+     * the inference stage only runs the model.
+     */
+    private CompletableFuture<BufferedImage> removeBackgroundBatched(BufferedImage centered) {
+        return pipeline.submit(PipelineStage.RESIZE, WorkloadClass.BATCH,
+                () -> backgroundRemovalService.prepareInput(centered))
+                .thenCompose(input -> inferenceBatcher.submit(input.data(), input.height(), input.width())
+                        .thenCompose(output -> pipeline.submit(PipelineStage.ENCODE, WorkloadClass.BATCH,
+                                () -> backgroundRemovalService.finishOutput(input, output, null, null))));
+    }
+
+    /**
+     * Waits for a pipeline result, rethrowing the original failure.
+     */
+    private static String join(CompletableFuture<String> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the decoded pixel count of the upload, read from its header.
+     */
+    private static long pixelCount(InputStreamSource source) throws IOException {
+        try (InputStream in = source.getInputStream()) {
+            return ImageConverterUtil.readPixelCount(in);
+        }
+    }
 
-        MultipartFile centeredImage = faceCenteringService.centerImage(resizeFile);
+    /**
+     * Decodes the upload into a BGR or BGRA Mat.
+     */
+    private Mat decode(InputStreamSource source) throws IOException {
+        BufferedImage image;
+        try (InputStream in = source.getInputStream()) {
+            image = ImageIO.read(in);
+        }
+        ValidationUtil.validateBufferedImage(image, 0, 0);
+        return ImageConverterUtil.convertBufferedImageToMat(image, image.getColorModel().hasAlpha());
+    }
 
-        String processedBase64 = backgroundRemovalService.processImage(centeredImage, null, null);
+    /**
+     * Resizes the decoded image to the target size, releasing the input.
+     */
+    private Mat resize(Mat decoded, int targetWidth, int targetHeight) {
+        try {
+            return imageResizingService.resizeMat(decoded, decoded.channels() == 4, targetWidth, targetHeight);
+        } finally {
+            decoded.release();
+        }
+    }
 
-        return processedBase64;
+    /**
+     * Centers the face and flattens the result to an opaque image for inference,
+     * releasing the input.
+     */
+    private BufferedImage center(Mat resized) throws Exception {
+        Mat centered = null;
+        try {
+            centered = faceCenteringService.centerMat(resized);
+            if (centered.channels() == 4) {
+                Imgproc.cvtColor(centered, centered, Imgproc.COLOR_BGRA2BGR);
+            }
+            return ImageConverterUtil.convertMatToBufferedImage(centered);
+        } finally {
+            BufferPool.recycle(resized);
+            BufferPool.recycle(centered);
+        }
+    }
+
+    /**
+     * Encodes the result as a JPEG data URL and returns the image to the
+     * buffer pool.
+     */
+    private String encode(BufferedImage foreground) throws IOException {
+        try {
+            return ImageConverterUtil.convertBufferedImgToBase64(foreground, "jpg");
+        } finally {
+            BufferPool.recycle(foreground);
+        }
     }
 
 }
\ No newline at end of file
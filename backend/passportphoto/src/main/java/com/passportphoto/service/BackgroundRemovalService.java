@@ -16,11 +16,14 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.FloatBuffer;
 import java.util.Base64;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
-import javax.imageio.ImageIO;
 
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -29,15 +32,25 @@ import org.opencv.core.Size;
 import com.passportphoto.exceptions.FailedProcessingException;
 import com.passportphoto.exceptions.ImageInvalidFormatException;
 import com.passportphoto.exceptions.ImageInputException;
+import com.passportphoto.service.cache.SingleFlight;
+import com.passportphoto.service.pipeline.AdmissionControlService;
+import com.passportphoto.service.pipeline.ComputeExecutor;
+import com.passportphoto.service.pipeline.Deadline;
+import com.passportphoto.service.pipeline.PipelineMetrics;
+import com.passportphoto.service.store.ImageBufferStore;
+import com.passportphoto.util.BufferPool;
 import com.passportphoto.util.Constants;
+import com.passportphoto.util.HashUtil;
 import com.passportphoto.util.ValidationUtil;
 import com.passportphoto.util.ImageConverterUtil;
+import com.passportphoto.util.NativeArena;
 import com.passportphoto.util.ResizeUtil;
 
 import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
+import io.micrometer.core.instrument.Timer;
 
 /**
  * The {@code BackgroundRemovalService} handles the pipeline for removing
@@ -48,11 +61,23 @@ public class BackgroundRemovalService {
 
 	private final ModelSessionManager modelSessionManager;
 	private final Constants constants;
+	private final AdmissionControlService admissionControl;
+	private final PipelineMetrics metrics;
+	private final SingleFlight<String, String> flights;
+	private final ImageBufferStore bufferStore;
+	private final ComputeExecutor compute;
 
 
-	public BackgroundRemovalService(ModelSessionManager modelSessionManager, Constants constants) {
+	public BackgroundRemovalService(ModelSessionManager modelSessionManager, Constants constants,
+			AdmissionControlService admissionControl, PipelineMetrics metrics, ImageBufferStore bufferStore,
+			ComputeExecutor compute) {
 		this.constants = constants;
+		this.compute = compute;
+		this.bufferStore = bufferStore;
 		this.modelSessionManager = modelSessionManager;
+		this.admissionControl = admissionControl;
+		this.metrics = metrics;
+		this.flights = new SingleFlight<>("removebg", metrics.getRegistry());
 		
 
 
@@ -71,33 +96,39 @@ public class BackgroundRemovalService {
 	 * 3. Run model (ONNX)
 	 * 4. Postprocess with blending
 	 * 5. Encode to base64
+	 * Identical requests arriving while one is in flight share its result.
 	 */
 	public String processImage(MultipartFile file, String colorString, String backgroundString) throws Exception {
+		ValidationUtil.validateMultipartFile(file);
+		String contentHash;
+		try (InputStream in = file.getInputStream()) {
+			contentHash = HashUtil.sha256Hex(in);
+		}
+		String key = HashUtil.sha256Hex("removebg", contentHash, colorString, backgroundString);
+		return flights.executeBlocking(key, () -> processUpload(file, colorString, backgroundString));
+	}
 
-		try {
-			BufferedImage image = ImageIO.read(file.getInputStream());
-			int oh = image.getHeight();
-			int ow = image.getWidth(); 
-
-			image = ResizeUtil.resizeToNearestMultiple(image, constants.getModelSizeMultiplier());
-
-			int rh = image.getHeight();
-			int rw = image.getWidth();
-			ValidationUtil.validateBufferedImage(image, rw, rh);
-
-			float[] imgData = preprocessImg(image);
+	/**
+	 * Runs one upload through the pipeline. The request is admitted first, so
+	 * it may be shed when the server is saturated; the admitted work runs on
+	 * a compute thread when the request is handled on a virtual thread.
+	 */
+	private String processUpload(MultipartFile file, String colorString, String backgroundString) throws Exception {
 
-			float[] outputArray = runModel(imgData, rh, rw);
+		try (AdmissionControlService.Permit permit = admissionControl.admit(pixelCount(file))) {
+			return compute.call(() -> {
+				Timer.Sample decode = metrics.start();
+				BufferedImage image = ImageConverterUtil.convertMultiPartToBufferedImage(file);
+				metrics.stop(decode, "decode");
 
-			BufferedImage foreground = postprocessImg(colorString, backgroundString, outputArray, image, rw, rh);
+				BufferedImage foreground = removeBackground(image, colorString, backgroundString);
 
-			foreground = ResizeUtil.resizeImage(foreground, ow, oh);
-			
-			String format = file.getContentType().split("/")[1];
-			int width = foreground.getWidth();
-			int height = foreground.getHeight();
-			String processedBase64 = ImageConverterUtil.convertBufferedImgToBase64(foreground,"jpg");
-			return processedBase64;
+				Timer.Sample encode = metrics.start();
+				String processedBase64 = ImageConverterUtil.convertBufferedImgToBase64(foreground,"jpg");
+				metrics.stop(encode, "encode");
+				BufferPool.recycle(foreground);
+				return processedBase64;
+			});
 
 		} catch (OrtException e) {
 			throw new FailedProcessingException("Image background removal failed", e);
@@ -107,40 +138,185 @@ public class BackgroundRemovalService {
 
 	}
 
+	/**
+	 * Removes the background of a decoded image and blends it over the
+	 * requested background, returning an image of the original size.
+	 */
+	public BufferedImage removeBackground(BufferedImage image, String colorString, String backgroundString)
+			throws Exception {
+		ModelInput input = prepareInput(image);
+
+		float[] outputArray = runModel(input.data(), input.height(), input.width());
+		Deadline.check("blend");
+
+		return finishOutput(input, outputArray, colorString, backgroundString);
+	}
+
+	/**
+	 * Resizes a decoded image to the model size multiple and converts it to
+	 * model input, so that inference can be run separately, e.g. batched.
+	 */
+	public ModelInput prepareInput(BufferedImage image) throws IOException {
+		ValidationUtil.validateBufferedImage(image, 0, 0);
+		int oh = image.getHeight();
+		int ow = image.getWidth(); 
+
+		image = ResizeUtil.resizeToNearestMultiple(image, constants.getModelSizeMultiplier());
+
+		int rh = image.getHeight();
+		int rw = image.getWidth();
+		ValidationUtil.validateBufferedImage(image, rw, rh);
+
+		return new ModelInput(image, preprocessImg(image), ow, oh);
+	}
+
+	/**
+	 * Blends the model output for a prepared input over the requested
+	 * background and resizes it back to the original size. The input image
+	 * and the blended image are returned to the buffer pool.
+	 */
+	public BufferedImage finishOutput(ModelInput input, float[] outputArray, String colorString,
+			String backgroundString) throws Exception {
+		BufferedImage foreground = postprocessImg(colorString, backgroundString, outputArray, input.image(),
+				input.width(), input.height());
+
+		BufferedImage output = ResizeUtil.resizeImage(foreground, input.originalWidth(), input.originalHeight());
+		BufferPool.recycle(foreground);
+		BufferPool.recycle(input.image());
+		return output;
+	}
+
 	/**
 	 * Prepares a BufferedImage for inference by converting to ARGB and extracting
-	 * RGB float data.
+	 * RGB float data. Large tensors are written to a memory-mapped buffer.
 	 */
-	public float[] preprocessImg(BufferedImage image) {
+	public FloatBuffer preprocessImg(BufferedImage image) throws IOException {
+		Timer.Sample sample = metrics.start();
 		BufferedImage img = convertToARGB(image);
-		float[] imgData = extractImageData(img);
+		FloatBuffer imgData = extractImageData(img);
+		if (img != image) {
+			BufferPool.recycle(img);
+		}
+		metrics.stop(sample, "preprocess");
 		return imgData;
 	}
 
 	/**
-	 * Runs the ONNX model and returns a flat float[] output.
+	 * Runs the ONNX model and returns a flat float[] output. A mapped input
+	 * is direct and is handed to ONNX Runtime without copying.
+	 */
+	public float[] runModel(FloatBuffer imgData, int imageHeight, int imageWidth) throws OrtException {
+
+		OrtSession session = modelSessionManager.getSession();
+		OrtEnvironment env = OrtEnvironment.getEnvironment();
+		OnnxTensor inputTensor = NativeArena.track(OnnxTensor.createTensor(
+				env,
+				imgData.duplicate().rewind(),
+				new long[] { 1, 3, imageHeight, imageWidth }), nativeInputBytes(imgData));
+
+		Timer.Sample sample = metrics.start();
+		metrics.sessionAcquired();
+		OrtSession.Result result = null;
+		try {
+			result = NativeArena.track(run(session, Collections.singletonMap("input", inputTensor)),
+					4L * imageHeight * imageWidth);
+			float[] outputArray = ((OnnxTensor) result.get(0)).getFloatBuffer().array();
+			return outputArray;
+		} finally {
+			metrics.sessionReleased();
+			metrics.stop(sample, "inference");
+			NativeArena.release(result);
+			NativeArena.release(inputTensor);
+		}
+	}
+
+	/**
+	 * Runs the ONNX model once over several same-sized inputs stacked into an
+	 * N x 3 x H x W tensor, and splits the output back per input.
 	 */
-	public float[] runModel(float[] imgData, int imageHeight, int imageWidth) throws OrtException {
+	public List<float[]> runModelBatch(List<FloatBuffer> inputs, int imageHeight, int imageWidth)
+			throws OrtException, IOException {
+		FloatBuffer stacked = bufferStore.allocateFloats(inputs.size() * 3 * imageHeight * imageWidth);
+		for (FloatBuffer input : inputs) {
+			stacked.put(input.duplicate().rewind());
+		}
+		stacked.rewind();
 
 		OrtSession session = modelSessionManager.getSession();
 		OrtEnvironment env = OrtEnvironment.getEnvironment();
-		OnnxTensor inputTensor = OnnxTensor.createTensor(
+		OnnxTensor inputTensor = NativeArena.track(OnnxTensor.createTensor(
 				env,
-				FloatBuffer.wrap(imgData),
-				new long[] { 1, 3, imageHeight, imageWidth });
+				stacked,
+				new long[] { inputs.size(), 3, imageHeight, imageWidth }), nativeInputBytes(stacked));
+
+		Timer.Sample sample = metrics.start();
+		metrics.sessionAcquired();
+		OrtSession.Result result = null;
+		try {
+			result = NativeArena.track(run(session, Collections.singletonMap("input", inputTensor)),
+					4L * inputs.size() * imageHeight * imageWidth);
+			FloatBuffer output = ((OnnxTensor) result.get(0)).getFloatBuffer();
+			int outputSize = output.remaining() / inputs.size();
+			List<float[]> outputs = new ArrayList<>(inputs.size());
+			for (int i = 0; i < inputs.size(); i++) {
+				float[] matte = new float[outputSize];
+				output.get(matte);
+				outputs.add(matte);
+			}
+			return outputs;
+		} finally {
+			metrics.sessionReleased();
+			metrics.stop(sample, "inference.batch");
+			NativeArena.release(result);
+			NativeArena.release(inputTensor);
+		}
+	}
 
-		OrtSession.Result result = session.run(Collections.singletonMap("input", inputTensor));
-		float[] outputArray = ((OnnxTensor) result.get(0)).getFloatBuffer().array();
+	/**
+	 * Runs the session under the deadline of the calling thread: a request
+	 * abandoned before the run is dropped, and one abandoned during the run
+	 * sets the terminate flag of its run options, so ONNX Runtime stops at
+	 * the next node instead of finishing the inference.
+	 */
+	private static OrtSession.Result run(OrtSession session, Map<String, OnnxTensor> inputs) throws OrtException {
+		Deadline deadline = Deadline.current();
+		if (deadline == null) {
+			return session.run(inputs);
+		}
+		Deadline.check("inference");
 
-		inputTensor.close();
-		return outputArray;
+		try (OrtSession.RunOptions options = new OrtSession.RunOptions();
+				Deadline.Registration registration = deadline.onCancel(() -> terminate(options))) {
+			return session.run(inputs, options);
+		} catch (OrtException e) {
+			if (deadline.isAbandoned()) {
+				throw deadline.abandoned("inference");
+			}
+			throw e;
+		}
+	}
+
+	private static void terminate(OrtSession.RunOptions options) {
+		try {
+			options.setTerminate(true);
+		} catch (OrtException e) {
+			// The run then finishes normally and its result is dropped downstream
+		}
+	}
+
+	/**
+	 * Returns the native bytes ONNX Runtime allocates for an input tensor:
+	 * heap buffers are copied, direct buffers are used in place.
+	 */
+	private static long nativeInputBytes(FloatBuffer data) {
+		return data.isDirect() ? 0 : 4L * data.remaining();
 	}
 
 	/**
 	 * Converts a flat ONNX model output into a 2D matte array (H x W) with alpha
 	 * values.
 	 */
-	private float[][] createMatte2D(float[] outputArray, int width, int height) {
+	float[][] createMatte2D(float[] outputArray, int width, int height) {
 		float[][] matte = new float[height][width];
 		int index = 0;
 
@@ -154,13 +330,13 @@ public class BackgroundRemovalService {
 	}
 
 	/**
-	 * Converts an image into float[] with channels-first format and RGB
+	 * Converts an image into a float buffer with channels-first format and RGB
 	 * normalization.
 	 */
-	private float[] extractImageData(BufferedImage image) {
+	FloatBuffer extractImageData(BufferedImage image) throws IOException {
 		int width = image.getWidth();
 		int height = image.getHeight();
-		float[] tensor = new float[3 * width * height];
+		FloatBuffer tensor = bufferStore.allocateFloats(3 * width * height);
 
 		int idxR = 0;
 		int idxG = width * height;
@@ -173,15 +349,24 @@ public class BackgroundRemovalService {
 				int g = (rgb >> 8) & 0xFF;
 				int b = (rgb) & 0xFF;
 
-				tensor[idxR++] = r / 255.0f;
-				tensor[idxG++] = g / 255.0f;
-				tensor[idxB++] = b / 255.0f;
+				tensor.put(idxR++, r / 255.0f);
+				tensor.put(idxG++, g / 255.0f);
+				tensor.put(idxB++, b / 255.0f);
 			}
 		}
 
 		return tensor;
 	}
 
+	/**
+	 * Returns the decoded pixel count of the upload, read from its header.
+	 */
+	private static long pixelCount(MultipartFile file) throws IOException {
+		try (InputStream in = file.getInputStream()) {
+			return ImageConverterUtil.readPixelCount(in);
+		}
+	}
+
 	/**
 	 * Applies background blending with either a solid color or a custom image
 	 * background.
@@ -207,11 +392,12 @@ public class BackgroundRemovalService {
 	 */
 	public BufferedImage alphaBlend(BufferedImage original, float[][] matte, String background, String hexColor)
 			throws Exception {
+		Timer.Sample sample = metrics.start();
 
 		int width = original.getWidth();
 		int height = original.getHeight();
 
-		BufferedImage blended = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage blended = BufferPool.borrowImage(width, height, BufferedImage.TYPE_INT_ARGB);
 
 		BufferedImage resizedBackground;
 
@@ -220,7 +406,7 @@ public class BackgroundRemovalService {
 
 			resizedBackground = ResizeUtil.resizeImageWithAspectRatio(customImage, width, height);
 		} else {
-			resizedBackground = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			resizedBackground = BufferPool.borrowImage(width, height, BufferedImage.TYPE_INT_ARGB);
 			Graphics2D g2d = resizedBackground.createGraphics();
 			Color bgColor = Color.decode(hexColor);
 			g2d.setColor(bgColor);
@@ -256,6 +442,8 @@ public class BackgroundRemovalService {
 			}
 		}
 
+		BufferPool.recycle(resizedBackground);
+		metrics.stop(sample, "blend");
 		return blended;
 	}
 
@@ -266,7 +454,7 @@ public class BackgroundRemovalService {
 		if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
 			return image;
 		}
-		BufferedImage newImage = new BufferedImage(
+		BufferedImage newImage = BufferPool.borrowImage(
 				image.getWidth(),
 				image.getHeight(),
 				BufferedImage.TYPE_INT_ARGB);
@@ -276,7 +464,18 @@ public class BackgroundRemovalService {
 		return newImage;
 	}
 
+	/**
+	 * Simple structure to hold an image prepared for inference: the image at
+	 * model size, its tensor data, and the size to restore afterwards.
+	 */
+	public record ModelInput(BufferedImage image, FloatBuffer data, int originalWidth, int originalHeight) {
 
+		public int width() {
+			return image.getWidth();
+		}
 
-
-}
\ No newline at end of file
+		public int height() {
+			return image.getHeight();
+		}
+	}
+}
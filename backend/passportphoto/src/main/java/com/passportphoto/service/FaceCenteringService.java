@@ -9,7 +9,6 @@ package com.passportphoto.service;
 import org.opencv.core.*;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.objdetect.CascadeClassifier;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -23,12 +22,17 @@ import org.springframework.stereotype.Service;
 import com.passportphoto.exceptions.InvalidEyeException;
 import com.passportphoto.exceptions.InvalidFaceException;
 import com.passportphoto.service.FaceModelLoader;
+import com.passportphoto.service.pipeline.ComputeExecutor;
+import com.passportphoto.service.pipeline.PipelineMetrics;
+import com.passportphoto.util.BufferPool;
 import com.passportphoto.util.ImageConverterUtil;
+import com.passportphoto.util.NativeArena;
 import com.passportphoto.util.ValidationUtil;
 import com.passportphoto.util.ResizeUtil;
 
 import com.passportphoto.exceptions.*;
 
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import java.io.*;
 import java.nio.file.Files;
@@ -41,16 +45,20 @@ import java.nio.file.StandardCopyOption;
 @Service
 public class FaceCenteringService {
 
-    private final CascadeClassifier faceDetector;
-    private final CascadeClassifier eyeDetector;
+    private final FaceModelLoader faceModel;
+    private final FaceModelLoader eyeModel;
+    private final PipelineMetrics metrics;
+    private final ComputeExecutor compute;
 
     /**
      * Constructs the service with required dependencies.
      */
     public FaceCenteringService(@Qualifier("faceModel") FaceModelLoader faceModel,
-            @Qualifier("eyeModel") FaceModelLoader eyeModel) {
-        this.faceDetector = faceModel.getFaceModel();
-        this.eyeDetector = eyeModel.getFaceModel();
+            @Qualifier("eyeModel") FaceModelLoader eyeModel, PipelineMetrics metrics, ComputeExecutor compute) {
+        this.faceModel = faceModel;
+        this.eyeModel = eyeModel;
+        this.metrics = metrics;
+        this.compute = compute;
 
     }
     /**
@@ -62,21 +70,60 @@ public class FaceCenteringService {
      * @throws Exception  if face or eye detection fails
      */
     public MultipartFile centerImage(MultipartFile file) throws Exception {
+        return compute.call(() -> center(file));
+    }
+
+    private MultipartFile center(MultipartFile file) throws Exception {
 
         Mat image = ImageConverterUtil.convertFileToMat(file);
 
+        Mat translatedImage = centerMat(image);
+
+        MultipartFile multipartFile = ImageConverterUtil.convertMatToMultipartFile(translatedImage);
+        image.release();
+        BufferPool.recycle(translatedImage);
+
+        return multipartFile;
+    }
+
+    /**
+     * Performs Centering of a decoded Image by Face and Eyes
+     *
+     * @param image the decoded image, left untouched
+     * @return a new Mat of the same size with the eye midpoint at its center,
+     *         owned by the current {@link NativeArena}
+     * @throws Exception  if face or eye detection fails
+     */
+    public Mat centerMat(Mat image) throws Exception {
+        Timer.Sample sample = metrics.start();
+        try {
+            return detectAndCenter(image);
+        } catch (FaceDetectionException e) {
+            metrics.countDetectionFailure(e);
+            throw e;
+        } finally {
+            metrics.stop(sample, "center");
+        }
+    }
+
+    /**
+     * Detects the face and eyes and translates the image so the eye midpoint
+     * lands at its center.
+     */
+    private Mat detectAndCenter(Mat image) {
+
         // Detect faces
-        MatOfRect faces = new MatOfRect();
-        faceDetector.detectMultiScale(image, faces);
+        MatOfRect faces = NativeArena.track(new MatOfRect());
+        faceModel.getFaceModel().detectMultiScale(image, faces);
 
         ValidationUtil.validateFace(faces);
 
         Rect faceRect = faces.toArray()[0];
 
         // Detect eyes within face
-        Mat faceROI = new Mat(image, faceRect);
-        MatOfRect eyes = new MatOfRect();
-        eyeDetector.detectMultiScale(faceROI, eyes);
+        Mat faceROI = NativeArena.track(new Mat(image, faceRect));
+        MatOfRect eyes = NativeArena.track(new MatOfRect());
+        eyeModel.getFaceModel().detectMultiScale(faceROI, eyes);
 
         ValidationUtil.validateEye(eyes);
 
@@ -112,18 +159,16 @@ public class FaceCenteringService {
         double dy = imageCenter.y - midpoint.y;
 
         // Create translation matrix
-        Mat translationMatrix = Mat.eye(2, 3, CvType.CV_64F);
+        Mat translationMatrix = NativeArena.track(Mat.eye(2, 3, CvType.CV_64F));
         translationMatrix.put(0, 2, dx); // x translation
         translationMatrix.put(1, 2, dy); // y translation
 
         // Translate image to center face
-        Mat translatedImage = new Mat();
+        Mat translatedImage = BufferPool.borrowMat(image.rows(), image.cols(), image.type());
         Imgproc.warpAffine(image, translatedImage, translationMatrix, image.size(), Imgproc.INTER_LINEAR,
                 Core.BORDER_CONSTANT, new Scalar(255, 255, 255));
 
-        MultipartFile multipartFile = ImageConverterUtil.convertMatToMultipartFile(translatedImage);
-
-        return multipartFile;
+        return translatedImage;
     }
 
 }
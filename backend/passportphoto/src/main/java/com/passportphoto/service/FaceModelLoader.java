@@ -1,13 +1,12 @@
 package com.passportphoto.service;
 
-import java.io.File;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import org.springframework.stereotype.Component;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.core.io.ClassPathResource;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.passportphoto.service.store.ModelCache;
 
 
 import org.opencv.objdetect.CascadeClassifier;
@@ -15,28 +14,35 @@ import org.opencv.objdetect.CascadeClassifier;
 @Component
 public class FaceModelLoader {
 
-    private final CascadeClassifier facialModel;
+    private final String modelPath;
+    private final ModelReadiness readiness;
+    private final CompletableFuture<CascadeClassifier> facialModel;
 
-    public FaceModelLoader(@Value("${model.path}") String modelPath) throws Exception{
-        this.facialModel = initializeFaceModel(modelPath);
+    /**
+     * Starts loading the cascade in the background once OpenCV is loaded.
+     */
+    public FaceModelLoader(@Value("${model.path}") String modelPath, ModelCache modelCache, ModelReadiness readiness) {
+        this.modelPath = modelPath;
+        this.readiness = readiness;
+        this.facialModel = readiness.load(modelPath, () -> initializeFaceModel(modelPath, modelCache),
+                ModelReadiness.OPENCV);
 
     } 
 
-    private CascadeClassifier initializeFaceModel(String filepath) throws Exception{
-        String temp = filepath.split("\\.")[0];
-        ClassPathResource faceCascade = new ClassPathResource(filepath);
-        File faceFile = File.createTempFile(temp, ".xml");
-        try (InputStream is = faceCascade.getInputStream()) {
-            Files.copy(is, faceFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-        }
-        CascadeClassifier faceDetector = new CascadeClassifier(faceFile.getAbsolutePath());
+    private CascadeClassifier initializeFaceModel(String filepath, ModelCache modelCache) throws Exception{
+        CascadeClassifier faceDetector = new CascadeClassifier(modelCache.extract(filepath).toString());
 
         return faceDetector;
 
     }
 
+    /**
+     * Returns the loaded cascade.
+     *
+     * @throws com.passportphoto.exceptions.ModelNotReadyException if it is not loaded yet
+     */
     public CascadeClassifier getFaceModel() {
-        return this.facialModel;
+        return readiness.require(modelPath, facialModel);
     }
     
 }
@@ -10,27 +10,62 @@ package com.passportphoto.service;
 
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Base64;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 
 import com.passportphoto.dto.ImageCropRequest;
+import com.passportphoto.service.pipeline.ComputeExecutor;
 
 
 import com.passportphoto.util.ImageConverterUtil;
+import com.passportphoto.util.ResizeUtil;
+import com.passportphoto.util.StoredMultipartFile;
 import com.passportphoto.util.ValidationUtil;
 
 /**
  * The {@code ImageCroppingService} provides methods for converting uploaded
  * images
  * to {@link BufferedImage}, cropping them, and converting the result to Base64.
+ * Only the requested region of the upload is decoded, subsampled when the
+ * crop is scaled down, so small crops of large photos stay cheap. Stored
+ * uploads are cropped from their cached decode.
  */
 @Service
 public class ImageCroppingService {
 
+    /** Native metadata format of the JDK JPEG plugin */
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    /** Size of a JPEG DCT block in pixels */
+    private static final int JPEG_BLOCK_SIZE = 8;
+
+    private final ComputeExecutor compute;
+
+    /**
+     * Constructs the service with required dependencies.
+     *
+     * @param compute runs decoding and encoding off virtual request threads
+     */
+    public ImageCroppingService(ComputeExecutor compute) {
+        this.compute = compute;
+    }
+
     /**
      * Crops the input image to the specified rectangle.
      *
@@ -48,29 +83,165 @@ public class ImageCroppingService {
     }
 
     /**
-     * Crops the uploaded image based on provided crop parameters.
+     * Crops the uploaded image based on provided crop parameters. Only the
+     * crop region is decoded; when a smaller target size is requested the
+     * region is subsampled while decoding and then scaled to the exact size.
+     * A block-aligned JPEG crop ignores the target size and may cover more
+     * than the requested rectangle, so the result reports the region of the
+     * source it actually contains.
      *
      * @param imageFile   the uploaded image
      * @param cropRequest the crop dimensions
-     * @return a base64-encoded cropped image
+     * @return the base64-encoded cropped image and its source region
      */
-    public String cropFileToImage(MultipartFile imageFile, ImageCropRequest cropRequest) throws Exception {
+    public Crop cropFileToImage(MultipartFile imageFile, ImageCropRequest cropRequest) throws Exception {
         ValidationUtil.validateMultipartFile(imageFile);
-        BufferedImage inputImage = ImageConverterUtil.convertMultiPartToBufferedImage(imageFile);
+        return compute.call(() -> crop(imageFile, cropRequest));
+    }
+
+    private Crop crop(MultipartFile imageFile, ImageCropRequest cropRequest) throws Exception {
 
         int cropX = (int) cropRequest.getCropX();
         int cropY = (int) cropRequest.getCropY();
         int cropWidth = (int) cropRequest.getCropWidth();
         int cropHeight = (int) cropRequest.getCropHeight();
+        String format = imageFile.getContentType().split("/")[1];
+
+        if (imageFile instanceof StoredMultipartFile && !cropRequest.isAlignToBlocks()) {
+            return cropDecoded(imageFile, format, cropRequest, cropX, cropY, cropWidth, cropHeight);
+        }
+
+        try (ImageInputStream iis = ImageIO.createImageInputStream(imageFile.getInputStream())) {
+            Iterator<ImageReader> readers = iis == null ? null : ImageIO.getImageReaders(iis);
+            if (readers == null || !readers.hasNext()) {
+                return cropDecoded(imageFile, format, cropRequest, cropX, cropY, cropWidth, cropHeight);
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, false);
+
+                // Validate crop dimensions
+                ValidationUtil.validateCropDimension(reader.getWidth(0), reader.getHeight(0), cropX, cropY,
+                        cropWidth, cropHeight);
+
+                if (cropRequest.isAlignToBlocks() && "jpeg".equalsIgnoreCase(reader.getFormatName())) {
+                    Crop aligned = cropJpegAligned(reader, cropX, cropY, cropWidth, cropHeight);
+                    if (aligned != null) {
+                        return aligned;
+                    }
+                }
+
+                Integer targetWidth = cropRequest.getTargetWidth();
+                Integer targetHeight = cropRequest.getTargetHeight();
+                boolean scaled = targetWidth != null && targetHeight != null && targetWidth > 0 && targetHeight > 0;
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(cropX, cropY, cropWidth, cropHeight));
+                if (scaled) {
+                    int period = Math.max(1, Math.min(cropWidth / targetWidth, cropHeight / targetHeight));
+                    param.setSourceSubsampling(period, period, 0, 0);
+                }
+                BufferedImage region = reader.read(0, param);
+
+                BufferedImage croppedImage = cropImage(region, 0, 0, region.getWidth(), region.getHeight());
+                if (scaled) {
+                    croppedImage = ResizeUtil.resizeImage(croppedImage, targetWidth, targetHeight);
+                }
+                return new Crop(ImageConverterUtil.convertBufferedImgToBase64(croppedImage, format),
+                        cropX, cropY, cropWidth, cropHeight);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Crops from the fully decoded image: the cached decode of a stored
+     * upload, or a full decode for formats without an ImageIO reader.
+     */
+    private Crop cropDecoded(MultipartFile imageFile, String format, ImageCropRequest cropRequest, int cropX,
+            int cropY, int cropWidth, int cropHeight) throws Exception {
+        BufferedImage inputImage = ImageConverterUtil.convertMultiPartToBufferedImage(imageFile);
 
         // Validate crop dimensions
         ValidationUtil.validateCropDimension(inputImage, cropX, cropY, cropWidth, cropHeight);
 
         BufferedImage croppedImage = cropImage(inputImage, cropX, cropY, cropWidth, cropHeight);
-        String format = imageFile.getContentType().split("/")[1];
-        String base64Image = ImageConverterUtil.convertBufferedImgToBase64(croppedImage, format);
+        Integer targetWidth = cropRequest.getTargetWidth();
+        Integer targetHeight = cropRequest.getTargetHeight();
+        if (targetWidth != null && targetHeight != null && targetWidth > 0 && targetHeight > 0) {
+            croppedImage = ResizeUtil.resizeImage(croppedImage, targetWidth, targetHeight);
+        }
+        return new Crop(ImageConverterUtil.convertBufferedImgToBase64(croppedImage, format),
+                cropX, cropY, cropWidth, cropHeight);
+    }
+
+    /**
+     * Crops a JPEG on its MCU grid: the crop is widened to whole MCUs and
+     * written with the source metadata, so every block keeps its position and
+     * quantization table. The pixels are still decoded and encoded again, so
+     * the result is close to, not identical with, the source blocks. Returns
+     * null if the metadata cannot be reused.
+     */
+    private Crop cropJpegAligned(ImageReader reader, int cropX, int cropY, int cropWidth, int cropHeight)
+            throws IOException {
+        IIOMetadata metadata = reader.getImageMetadata(0);
+        if (metadata == null || !JPEG_METADATA_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+            return null;
+        }
+
+        int[] mcu = mcuSize(metadata);
+        int left = cropX / mcu[0] * mcu[0];
+        int top = cropY / mcu[1] * mcu[1];
+        int right = Math.min(reader.getWidth(0), ceilToMultiple(cropX + cropWidth, mcu[0]));
+        int bottom = Math.min(reader.getHeight(0), ceilToMultiple(cropY + cropHeight, mcu[1]));
 
-        return base64Image;
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(left, top, right - left, bottom - top));
+        BufferedImage region = reader.read(0, param);
 
+        ImageWriter writer = ImageIO.getImageWriter(reader);
+        if (writer == null) {
+            return null;
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(region, null, metadata), null);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            writer.dispose();
+        }
+        return new Crop("data:image/jpeg;base64," + Base64.getEncoder().encodeToString(baos.toByteArray()),
+                left, top, right - left, bottom - top);
+    }
+
+    /**
+     * Returns the MCU width and height of a JPEG from its component sampling factors.
+     */
+    private static int[] mcuSize(IIOMetadata metadata) {
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA_FORMAT);
+        NodeList components = root.getElementsByTagName("componentSpec");
+        int horizontal = 1;
+        int vertical = 1;
+        for (int i = 0; i < components.getLength(); i++) {
+            Element component = (Element) components.item(i);
+            horizontal = Math.max(horizontal, Integer.parseInt(component.getAttribute("HsamplingFactor")));
+            vertical = Math.max(vertical, Integer.parseInt(component.getAttribute("VsamplingFactor")));
+        }
+        return new int[] { horizontal * JPEG_BLOCK_SIZE, vertical * JPEG_BLOCK_SIZE };
+    }
+
+    private static int ceilToMultiple(int value, int multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+
+    /**
+     * Simple structure to hold a cropped image as a data URL and the region
+     * of the source image it covers.
+     */
+    public record Crop(String dataUrl, int x, int y, int width, int height) {
     }
-}
\ No newline at end of file
+}
@@ -11,21 +11,26 @@ package com.passportphoto.service;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 
-import javax.imageio.ImageIO;
 
 import org.opencv.core.Mat;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.passportphoto.service.pipeline.ComputeExecutor;
+import com.passportphoto.service.pipeline.PipelineMetrics;
 import com.passportphoto.service.processor.BackgroundProcessor;
 import com.passportphoto.service.processor.TransparentBackgroundProcessor;
 import com.passportphoto.service.processor.UniformBackgroundProcessor;
+import com.passportphoto.service.spec.PassportSpecRegistry;
 import com.passportphoto.service.strategy.AlphaResizeStrategy;
 import com.passportphoto.service.strategy.ResizeStrategy;
 import com.passportphoto.service.strategy.StandardResizeStrategy;
-import com.passportphoto.util.DimensionHelper;
+import com.passportphoto.util.BufferPool;
 import com.passportphoto.util.ImageConverterUtil;
 
+import io.micrometer.core.instrument.Timer;
+
 /**
  * The {@code ImageResizingService} provides an end-to-end pipeline for
  * resizing and formatting an uploaded image according to the target dimensions
@@ -34,6 +39,34 @@ import com.passportphoto.util.ImageConverterUtil;
 @Service
 public class ImageResizingService {
 
+    private final PipelineMetrics metrics;
+    private final PassportSpecRegistry specRegistry;
+    private final ComputeExecutor compute;
+
+    // Stateless, so one instance of each serves every request
+    private final ResizeStrategy alphaResizeStrategy;
+    private final ResizeStrategy standardResizeStrategy;
+    private final BackgroundProcessor transparentProcessor = new TransparentBackgroundProcessor();
+    private final BackgroundProcessor uniformProcessor = new UniformBackgroundProcessor();
+
+    /**
+     * Constructs the service with required dependencies.
+     *
+     * @param metrics      records the duration of each resizing step
+     * @param specRegistry resolves country and template dimensions
+     * @param compute      runs the pipeline off virtual request threads
+     * @param pyramidRatio reduction ratio from which images are halved before
+     *                     the final resize, or 0 to resize in one step
+     */
+    public ImageResizingService(PipelineMetrics metrics, PassportSpecRegistry specRegistry,
+            ComputeExecutor compute, @Value("${resize.pyramid.min-ratio}") double pyramidRatio) {
+        this.metrics = metrics;
+        this.specRegistry = specRegistry;
+        this.compute = compute;
+        this.alphaResizeStrategy = new AlphaResizeStrategy(pyramidRatio);
+        this.standardResizeStrategy = new StandardResizeStrategy(pyramidRatio);
+    }
+
     /**
      * Resizes an uploaded image based on country, template, or custom dimensions.
      *
@@ -47,7 +80,7 @@ public class ImageResizingService {
     public String resizeImage(MultipartFile file, String country, String template, Integer customWidth, Integer customHeight) {
         validateInput(file, country, template, customWidth, customHeight);
         try {
-            return processImagePipeline(file, country, template, customWidth, customHeight);
+            return compute.call(() -> processImagePipeline(file, country, template, customWidth, customHeight));
         } catch (IOException e) {
             throw new RuntimeException("Image processing failed", e);
         }
@@ -60,37 +93,60 @@ public class ImageResizingService {
      * @return a base64 string representing the final resized image
      */
     private String processImagePipeline(MultipartFile file, String country, String template, Integer customWidth, Integer customHeight) throws IOException {
-        BufferedImage originalImage = ImageIO.read(file.getInputStream());
+        Timer.Sample decode = metrics.start();
+        BufferedImage originalImage = ImageConverterUtil.convertMultiPartToBufferedImage(file);
         boolean hasAlpha = originalImage.getColorModel().hasAlpha();
 
-        int[] dimensions = DimensionHelper.getTargetDimensions(country, template, customWidth, customHeight);
-        int targetWidth = dimensions[0];
-        int targetHeight = dimensions[1];
+        int[] dimensions = specRegistry.getTargetDimensions(country, template, customWidth, customHeight);
 
         Mat imageMat = ImageConverterUtil.convertBufferedImageToMat(originalImage, hasAlpha);
+        metrics.stop(decode, "decode");
 
-        ResizeStrategy resizeStrategy = hasAlpha ? new AlphaResizeStrategy() : new StandardResizeStrategy();
-
-        Mat resizedMat = resizeStrategy.resize(imageMat, targetWidth, targetHeight);
-
-        BackgroundProcessor bgProcessor = hasAlpha ? new TransparentBackgroundProcessor() : new UniformBackgroundProcessor();
+        Mat finalMat = resizeMat(imageMat, hasAlpha, dimensions[0], dimensions[1]);
 
-        Mat finalMat = bgProcessor.process(resizedMat, targetWidth, targetHeight);
+        Timer.Sample encode = metrics.start();
         String dataUrl = ImageConverterUtil.convertMatToDataUrl(finalMat);
+        metrics.stop(encode, "encode");
 
         imageMat.release();
-        resizedMat.release();
-        finalMat.release();
+        BufferPool.recycle(finalMat);
 
         return dataUrl;
     }
 
+    /**
+     * Resizes a decoded image to fit the target dimensions and extends its
+     * background to fill them exactly. The input is left untouched.
+     *
+     * @param imageMat     the decoded image (BGR, or BGRA if it has alpha)
+     * @param hasAlpha     whether the image has an alpha channel
+     * @param targetWidth  the desired width
+     * @param targetHeight the desired height
+     * @return a new {@link Mat} of exactly the target size
+     */
+    public Mat resizeMat(Mat imageMat, boolean hasAlpha, int targetWidth, int targetHeight) {
+        Timer.Sample sample = metrics.start();
+        ResizeStrategy resizeStrategy = hasAlpha ? alphaResizeStrategy : standardResizeStrategy;
+
+        Mat resizedMat = resizeStrategy.resize(imageMat, targetWidth, targetHeight);
+
+        BackgroundProcessor bgProcessor = hasAlpha ? transparentProcessor : uniformProcessor;
+
+        Mat finalMat = bgProcessor.process(resizedMat, targetWidth, targetHeight);
+
+        if (resizedMat != imageMat) {
+            BufferPool.recycle(resizedMat);
+        }
+        metrics.stop(sample, "resize");
+        return finalMat;
+    }
+
     /**
      * Validates user input: uploaded file presence and dimension selection.
      *
      * @throws IllegalArgumentException if validation fails
      */
-    private void validateInput(MultipartFile file, String country, String template, Integer customWidth, Integer customHeight) {
+    public void validateInput(MultipartFile file, String country, String template, Integer customWidth, Integer customHeight) {
         if (file == null || file.isEmpty()) {
             throw new IllegalArgumentException("Image file cannot be empty");
         }
@@ -16,7 +16,9 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.util.Base64;
 
+import com.passportphoto.service.pipeline.ComputeExecutor;
 import com.passportphoto.util.ImageConverterUtil;
+import com.passportphoto.util.StoredMultipartFile;
 import com.passportphoto.util.ValidationUtil;
 
 /**
@@ -27,6 +29,17 @@ import com.passportphoto.util.ValidationUtil;
 @Service
 public class ImageUploadService {
 
+    private final ComputeExecutor compute;
+
+    /**
+     * Constructs the service with required dependencies.
+     *
+     * @param compute runs decoding and encoding off virtual request threads
+     */
+    public ImageUploadService(ComputeExecutor compute) {
+        this.compute = compute;
+    }
+
     /**
      * Uploads and encodes an image file into a Base64 JPEG data URL.
      *
@@ -39,12 +52,22 @@ public class ImageUploadService {
 
         ValidationUtil.validateMultipartFile(imageFile);
 
-        Mat image = ImageConverterUtil.convertFileToMat(imageFile);
+        // Stored JPEG and PNG uploads were validated when decoded and can be echoed as sent
+        if (imageFile instanceof StoredMultipartFile
+                && ("image/jpeg".equals(imageFile.getContentType()) || "image/png".equals(imageFile.getContentType()))) {
+            return "data:" + imageFile.getContentType() + ";base64,"
+                    + Base64.getEncoder().encodeToString(imageFile.getBytes());
+        }
+
+        return compute.call(() -> {
+            Mat image = ImageConverterUtil.convertFileToMat(imageFile);
 
-        ValidationUtil.validateMatImage(image);
+            ValidationUtil.validateMatImage(image);
 
-        String base64String = ImageConverterUtil.convertMatToDataUrl(image);
+            String base64String = ImageConverterUtil.convertMatToDataUrl(image);
+            image.release();
 
-        return base64String;
+            return base64String;
+        });
     }
 }
\ No newline at end of file
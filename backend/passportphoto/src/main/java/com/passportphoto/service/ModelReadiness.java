@@ -0,0 +1,191 @@
+/*
+ * ModelReadiness.java
+ *
+ * This component loads models in the background, in parallel, and tracks
+ * whether each one is ready to serve.
+ *
+ */
+
+package com.passportphoto.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.passportphoto.exceptions.ModelNotReadyException;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The {@code ModelReadiness} runs model loaders on a small pool of daemon
+ * threads, so the application context starts without waiting for them and
+ * independent models load concurrently. A loader may depend on other
+ * entries by name, e.g. the Haar cascades on the OpenCV native library; an
+ * entry exists as soon as it is named, loaded or not.
+ *
+ * <p>Services fetch their model through {@link #require}, which throws
+ * {@link ModelNotReadyException} (HTTP 503 with Retry-After) while the model
+ * is loading or if it failed, so endpoints without models serve right away.
+ * The {@code model} health indicator reports the state of every entry and
+ * is part of the readiness probe. With {@code model.init.background=false}
+ * the context waits for all models instead, e.g. for an AppCDS training run.
+ */
+@Component
+public class ModelReadiness implements SmartInitializingSingleton {
+
+    /** Name of the OpenCV native library entry */
+    public static final String OPENCV = "opencv";
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final boolean background;
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructs the tracker from configuration.
+     *
+     * @param threads           number of models loaded at the same time
+     * @param background        whether the context may start before the models are loaded
+     * @param retryAfterSeconds delay suggested to clients while a model loads
+     */
+    public ModelReadiness(@Value("${model.init.threads}") int threads,
+            @Value("${model.init.background}") boolean background,
+            @Value("${model.init.retry-after-seconds}") long retryAfterSeconds) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "model-init-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.background = background;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Starts loading an entry once its dependencies are loaded.
+     *
+     * @param name      the entry name, e.g. the model file
+     * @param loader    loads the model
+     * @param dependsOn names of entries that must be loaded first
+     * @param <T>       the model type
+     * @return a future completed with the model, or with the loader's or a dependency's failure
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> load(String name, Callable<T> loader, String... dependsOn) {
+        CompletableFuture<?>[] dependencies = new CompletableFuture<?>[dependsOn.length];
+        for (int i = 0; i < dependsOn.length; i++) {
+            dependencies[i] = entry(dependsOn[i]).future;
+        }
+
+        Entry entry = entry(name);
+        CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+            long startedAt = System.nanoTime();
+            try {
+                T model = loader.call();
+                entry.loadMillis = (System.nanoTime() - startedAt) / 1_000_000;
+                entry.future.complete(model);
+            } catch (Throwable t) {
+                entry.future.completeExceptionally(t);
+            }
+        }, executor).exceptionally(error -> {
+            entry.future.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error);
+            return null;
+        });
+        return (CompletableFuture<T>) entry.future;
+    }
+
+    /**
+     * Returns a loaded model.
+     *
+     * @param name  the entry name, used in the error message
+     * @param model the future returned by {@link #load}
+     * @param <T>   the model type
+     * @return the model
+     * @throws ModelNotReadyException if the model is still loading or failed to load
+     */
+    public <T> T require(String name, CompletableFuture<T> model) {
+        if (!model.isDone()) {
+            throw new ModelNotReadyException("Model is still loading: " + name, retryAfterSeconds);
+        }
+        if (model.isCompletedExceptionally()) {
+            throw new ModelNotReadyException("Model failed to load: " + name, retryAfterSeconds);
+        }
+        return model.join();
+    }
+
+    /**
+     * Returns whether every entry is loaded.
+     *
+     * @return true once all models are ready
+     */
+    public boolean isReady() {
+        return entries.values().stream()
+                .allMatch(entry -> entry.future.isDone() && !entry.future.isCompletedExceptionally());
+    }
+
+    /**
+     * Returns the state of every entry, {@code LOADING}, {@code READY} with
+     * its load time, or {@code FAILED} with the cause.
+     *
+     * @return entry names mapped to their state, sorted by name
+     */
+    public Map<String, String> states() {
+        Map<String, String> states = new LinkedHashMap<>();
+        entries.keySet().stream().sorted().forEach(name -> states.put(name, entries.get(name).state()));
+        return states;
+    }
+
+    /**
+     * Waits for all models unless they are configured to load in the background.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!background) {
+            CompletableFuture.allOf(entries.values().stream()
+                    .map(entry -> entry.future)
+                    .toArray(CompletableFuture[]::new)).join();
+        }
+    }
+
+    /**
+     * Stops the loader threads when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Entry entry(String name) {
+        return entries.computeIfAbsent(name, n -> new Entry());
+    }
+
+    /**
+     * Simple structure to hold the future and load time of one model.
+     */
+    private static class Entry {
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        volatile long loadMillis;
+
+        String state() {
+            if (!future.isDone()) {
+                return "LOADING";
+            }
+            if (future.isCompletedExceptionally()) {
+                return "FAILED: " + future.exceptionNow().getMessage();
+            }
+            return "READY in " + loadMillis + " ms";
+        }
+    }
+}
@@ -8,76 +8,109 @@
 
 package com.passportphoto.service;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.stereotype.Service;
 
+import com.passportphoto.service.store.ModelCache;
 import com.passportphoto.util.Constants;
 
 import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
 
 /**
  * The {@code ModelSessionManager} class is responsible for loading the MODNet
  * ONNX model from the resources directory and initializing a shared OrtSession
  * for background removal inference.
+ *
+ * <p>The model is taken from the {@link ModelCache}, so it is extracted from
+ * the jar only once. The graph optimized by ONNX Runtime on the first boot is
+ * saved to the cache too, keyed by model and runtime version, and later boots
+ * load it instead of optimizing again. The first boot serves from a session
+ * optimized at the portable {@code EXTENDED_OPT} level, the level the graph
+ * is saved at, and later boots load the saved graph with optimization
+ * disabled, as ONNX Runtime recommends for pre-optimized models, so every
+ * boot runs the same graph. The session is created in the background
+ * through {@link ModelReadiness}.
  */
 @Service
 public class ModelSessionManager {
 
-    private final OrtSession session;
+    /** Name of the background removal model in {@link ModelReadiness} */
+    private static final String MODEL = "bgremoval";
+
+    /** Optimization level of the served graph, portable across machines so it can be cached */
+    private static final OrtSession.SessionOptions.OptLevel OPT_LEVEL = OrtSession.SessionOptions.OptLevel.EXTENDED_OPT;
+
+    private final CompletableFuture<OrtSession> session;
 
     private final Constants constants;
 
+    private final ModelCache modelCache;
+
+    private final ModelReadiness readiness;
+
     /**
-     * Constructor that initializes the ONNX session.
+     * Constructor that starts initializing the ONNX session in the background.
      *
-     * @throws Exception if the model file is not found or cannot be read
+     * @param constants  holds the model file name
+     * @param modelCache the cache the model and its optimized graph are kept in
+     * @param readiness  runs the initialization and tracks its state
      */
-    public ModelSessionManager(Constants constants) throws Exception {
+    public ModelSessionManager(Constants constants, ModelCache modelCache, ModelReadiness readiness) {
         this.constants = constants;
-        this.session = initializeSession();
+        this.modelCache = modelCache;
+        this.readiness = readiness;
+        this.session = readiness.load(MODEL, this::initializeSession);
         
     }
      
     /**
-     * Loads the ONNX model from the classpath and creates a temporary file
-     * for ONNX Runtime to consume.
+     * Creates the session from the cached optimized graph if there is one,
+     * otherwise from the model, saving the optimized graph for the next boot.
+     * Both paths serve the graph optimized at {@link #OPT_LEVEL}.
      *
      * @return an {@link OrtSession} ready for inference
      * @throws Exception if the model cannot be read or loaded
      */
     private OrtSession initializeSession() throws Exception {
-        InputStream modelStream = getClass().getClassLoader().getResourceAsStream(constants.getModelName());
-        if (modelStream == null) {
-            throw new FileNotFoundException("MODNet model not found in resources: " + constants.getModelName());
-        }
-        
-        File tempModelFile = File.createTempFile("modnet", ".onnx");
-        tempModelFile.deleteOnExit();
-
-        try (OutputStream out = new FileOutputStream(tempModelFile)) {
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = modelStream.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        Path model = modelCache.extract(constants.getModelName());
+        Path optimized = modelCache.derived(model, "ort-" + env.getVersion() + "-extended", ".onnx");
+
+        if (Files.exists(optimized)) {
+            try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+                // Already optimized; optimizing again could only diverge from the first boot
+                options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.NO_OPT);
+                return env.createSession(optimized.toString(), options);
+            } catch (OrtException e) {
+                // Written by another runtime build or truncated; optimize again below
+                Files.deleteIfExists(optimized);
             }
         }
 
-        OrtEnvironment env = OrtEnvironment.getEnvironment();
-        return env.createSession(tempModelFile.getAbsolutePath(), new OrtSession.SessionOptions());
+        Path temp = modelCache.newTempFile();
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            options.setOptimizationLevel(OPT_LEVEL);
+            options.setOptimizedModelFilePath(temp.toString());
+            OrtSession created = env.createSession(model.toString(), options);
+            modelCache.commit(temp, optimized);
+            return created;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
     }
 
     /**
      * Returns the loaded ONNX {@link OrtSession} instance.
      *
      * @return the session for inference
+     * @throws com.passportphoto.exceptions.ModelNotReadyException if the session is not initialized yet
      */
     public OrtSession getSession() {
-        return session;
+        return readiness.require(MODEL, session);
     }
 }
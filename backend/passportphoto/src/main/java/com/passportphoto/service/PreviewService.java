@@ -0,0 +1,185 @@
+/*
+ * PreviewService.java
+ *
+ * This service builds and caches a resolution pyramid of stored uploads
+ * so that editor views can work on small previews.
+ *
+ */
+
+package com.passportphoto.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.passportphoto.service.cache.SingleFlight;
+import com.passportphoto.service.pipeline.ComputeExecutor;
+import com.passportphoto.service.pipeline.PipelineMetrics;
+import com.passportphoto.service.store.ImageStore;
+import com.passportphoto.util.BoundedTtlStore;
+import com.passportphoto.util.ImageConverterUtil;
+import com.passportphoto.util.StoredMultipartFile;
+
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The {@code PreviewService} downsamples a stored upload once to each long
+ * side listed in {@code preview.levels}, using {@code INTER_AREA}, each level
+ * from the next larger one. Every level is itself put in the
+ * {@link ImageStore}, so its ID can be passed to the crop, resize and
+ * background endpoints for interactive editing; the final export is then
+ * rendered from the original ID. The pyramid's top level is the original.
+ */
+@Service
+public class PreviewService {
+
+    private final ImageStore imageStore;
+    private final PipelineMetrics metrics;
+    private final int[] levels;
+    private final BoundedTtlStore<String, List<Preview>> pyramids;
+    private final SingleFlight<String, List<Preview>> builds;
+    private final ComputeExecutor compute;
+
+    /**
+     * Constructs the service from configuration.
+     *
+     * @param imageStore store holding originals and preview levels
+     * @param metrics    metrics helper timing pyramid builds
+     * @param levels     long sides of the preview levels
+     * @param maxBytes   maximum size of cached preview data URLs
+     * @param ttlMinutes how long a pyramid is cached
+     * @param compute    runs pyramid builds off virtual request threads
+     */
+    public PreviewService(ImageStore imageStore, PipelineMetrics metrics,
+            @Value("${preview.levels}") int[] levels,
+            @Value("${preview.cache.max-bytes}") long maxBytes,
+            @Value("${preview.cache.ttl-minutes}") long ttlMinutes,
+            ComputeExecutor compute) {
+        this.imageStore = imageStore;
+        this.compute = compute;
+        this.metrics = metrics;
+        this.levels = Arrays.stream(levels).filter(level -> level > 0).sorted().toArray();
+        this.pyramids = new BoundedTtlStore<>(maxBytes, Duration.ofMinutes(ttlMinutes), PreviewService::weigh);
+        this.builds = new SingleFlight<>("preview", metrics.getRegistry());
+    }
+
+    /**
+     * Returns the smallest preview level whose long side is at least the
+     * requested size, or the original if no level is that large.
+     *
+     * @param imageId the ID of a stored upload
+     * @param size    the long side the client will display
+     * @return the preview level
+     * @throws Exception if the image is unknown or the pyramid cannot be built
+     */
+    public Preview getPreview(String imageId, int size) throws Exception {
+        List<Preview> pyramid = pyramids.get(imageId);
+        if (pyramid == null || !pyramid.stream().allMatch(level -> imageStore.contains(level.imageId()))) {
+            pyramid = builds.executeBlocking(imageId, () -> compute.call(() -> build(imageId)));
+        }
+
+        for (Preview level : pyramid) {
+            if (Math.max(level.width(), level.height()) >= size) {
+                return withDataUrl(level);
+            }
+        }
+        return withDataUrl(pyramid.get(pyramid.size() - 1));
+    }
+
+    /**
+     * Builds, stores and caches the pyramid of an image, smallest level first.
+     */
+    private List<Preview> build(String imageId) throws IOException {
+        StoredMultipartFile original = imageStore.get(imageId);
+        BufferedImage image = original.getDecodedImage();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int longSide = Math.max(width, height);
+        boolean hasAlpha = image.getColorModel().hasAlpha();
+
+        Timer.Sample sample = metrics.start();
+        List<Preview> pyramid = new ArrayList<>();
+        Mat current = ImageConverterUtil.convertBufferedImageToMat(image, hasAlpha);
+        try {
+            for (int i = levels.length - 1; i >= 0; i--) {
+                if (levels[i] >= longSide) {
+                    continue;
+                }
+                double scale = (double) levels[i] / longSide;
+                Size size = new Size(Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)));
+                Mat next = new Mat();
+                Imgproc.resize(current, next, size, 0, 0, Imgproc.INTER_AREA);
+                current.release();
+                current = next;
+                pyramid.add(storeLevel(original, current, hasAlpha, (double) current.cols() / width));
+            }
+        } finally {
+            current.release();
+        }
+        pyramid.add(new Preview(imageId, width, height, 1.0, null));
+        pyramid.sort(Comparator.comparingInt(Preview::width));
+        metrics.stop(sample, "preview");
+
+        pyramids.put(imageId, pyramid);
+        return pyramid;
+    }
+
+    /**
+     * Encodes one level, registers it in the image store and returns it.
+     */
+    private Preview storeLevel(StoredMultipartFile original, Mat level, boolean hasAlpha, double scale)
+            throws IOException {
+        BufferedImage decoded = ImageConverterUtil.convertMatToBufferedImage(level);
+        String format = hasAlpha ? "png" : "jpeg";
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(decoded, format, baos);
+        byte[] bytes = baos.toByteArray();
+
+        StoredMultipartFile stored = imageStore.put("preview-" + level.cols() + "-" + original.getOriginalFilename(),
+                "image/" + format, bytes, decoded);
+        String dataUrl = "data:image/" + format + ";base64," + Base64.getEncoder().encodeToString(bytes);
+        return new Preview(stored.getId(), level.cols(), level.rows(), scale, dataUrl);
+    }
+
+    /**
+     * Fills in the data URL of the original level, which is not cached.
+     */
+    private Preview withDataUrl(Preview level) {
+        if (level.dataUrl() != null) {
+            return level;
+        }
+        StoredMultipartFile original = imageStore.get(level.imageId());
+        String dataUrl = "data:" + original.getContentType() + ";base64,"
+                + Base64.getEncoder().encodeToString(original.getBytes());
+        return new Preview(level.imageId(), level.width(), level.height(), level.scale(), dataUrl);
+    }
+
+    private static long weigh(List<Preview> pyramid) {
+        long weight = 0;
+        for (Preview level : pyramid) {
+            weight += level.dataUrl() == null ? 0 : level.dataUrl().length() * 2L;
+        }
+        return weight;
+    }
+
+    /**
+     * Simple structure to hold one pyramid level: the stored image ID, its
+     * size, its scale relative to the original, and its data URL.
+     */
+    public record Preview(String imageId, int width, int height, double scale, String dataUrl) {
+    }
+}
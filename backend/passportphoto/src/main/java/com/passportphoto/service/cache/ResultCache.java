@@ -0,0 +1,212 @@
+/*
+ * ResultCache.java
+ *
+ * This component caches processed images by a key derived from the upload
+ * content and the pipeline parameters, in memory and optionally on disk.
+ *
+ */
+
+package com.passportphoto.service.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.passportphoto.util.BoundedTtlStore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The {@code ResultCache} keeps processed data URLs in a memory tier bounded
+ * by size and time-to-live. When {@code cache.result.disk.dir} is set, results
+ * are also written to a disk tier bounded by total bytes, which survives
+ * memory eviction and restarts; disk hits are promoted back to memory.
+ */
+@Component
+public class ResultCache {
+
+    private final BoundedTtlStore<String, String> memory;
+    private final Path diskDir;
+    private final long diskMaxBytes;
+    private final long ttlMillis;
+    private final MeterRegistry registry;
+
+    /** Guards pruning; a lock rather than a monitor, so waiting virtual threads do not pin their carrier */
+    private final ReentrantLock pruneLock = new ReentrantLock();
+
+    /**
+     * Constructs the cache from configuration.
+     *
+     * @param maxBytes     maximum size of the memory tier
+     * @param ttlMinutes   how long a result stays valid in either tier
+     * @param diskDir      directory of the disk tier, or empty to disable it
+     * @param diskMaxBytes maximum size of the disk tier
+     * @param registry     the registry cache meters are published to
+     * @throws IOException if the disk directory cannot be created
+     */
+    public ResultCache(@Value("${cache.result.max-bytes}") long maxBytes,
+            @Value("${cache.result.ttl-minutes}") long ttlMinutes,
+            @Value("${cache.result.disk.dir:}") String diskDir,
+            @Value("${cache.result.disk.max-bytes}") long diskMaxBytes,
+            MeterRegistry registry) throws IOException {
+        this.memory = new BoundedTtlStore<>(maxBytes, Duration.ofMinutes(ttlMinutes), value -> value.length() * 2L);
+        this.ttlMillis = Duration.ofMinutes(ttlMinutes).toMillis();
+        this.diskDir = diskDir.isBlank() ? null : Files.createDirectories(Path.of(diskDir));
+        this.diskMaxBytes = diskMaxBytes;
+        this.registry = registry;
+
+        Gauge.builder("result.cache.memory.bytes", memory, BoundedTtlStore::weight)
+                .description("Approximate size of the in-memory result cache")
+                .register(registry);
+    }
+
+    /**
+     * Returns the cached result for the key, looking in memory first and
+     * then on disk.
+     *
+     * @param key the result key
+     * @return the cached data URL, or {@code null} on a miss
+     */
+    public String get(String key) {
+        String value = memory.get(key);
+        if (value != null) {
+            count("memory");
+            return value;
+        }
+
+        value = readDisk(key);
+        if (value != null) {
+            memory.put(key, value);
+            count("disk");
+            return value;
+        }
+
+        count("miss");
+        return null;
+    }
+
+    /**
+     * Stores a result in both tiers.
+     *
+     * @param key   the result key
+     * @param value the processed data URL
+     */
+    public void put(String key, String value) {
+        memory.put(key, value);
+        writeDisk(key, value);
+    }
+
+    /**
+     * Formats a result key as a strong HTTP entity tag.
+     *
+     * @param key the result key
+     * @return the quoted entity tag
+     */
+    public static String etag(String key) {
+        return "\"" + key + "\"";
+    }
+
+    private String readDisk(String key) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path file = diskDir.resolve(key);
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            if (Files.getLastModifiedTime(file).toMillis() + ttlMillis <= System.currentTimeMillis()) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return Files.readString(file, StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a result to the disk tier through a temp file, so readers never
+     * see a partial entry, then trims the tier back under its size bound.
+     */
+    private void writeDisk(String key, String value) {
+        if (diskDir == null) {
+            return;
+        }
+        try {
+            Path temp = Files.createTempFile(diskDir, key, ".tmp");
+            Files.writeString(temp, value, StandardCharsets.US_ASCII);
+            Files.move(temp, diskDir.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            pruneDisk();
+        } catch (IOException e) {
+            // The disk tier is best effort; the memory tier still holds the result
+        }
+    }
+
+    /**
+     * Deletes the oldest disk entries until the tier fits its size bound.
+     */
+    private void pruneDisk() throws IOException {
+        pruneLock.lock();
+        try {
+            pruneDiskLocked();
+        } finally {
+            pruneLock.unlock();
+        }
+    }
+
+    private void pruneDiskLocked() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(diskDir)) {
+            listing.filter(path -> !path.getFileName().toString().endsWith(".tmp")).forEach(files::add);
+        }
+
+        long total = 0;
+        for (Path file : files) {
+            total += Files.size(file);
+        }
+        if (total <= diskMaxBytes) {
+            return;
+        }
+
+        files.sort(Comparator.comparing(ResultCache::lastModified));
+        for (Path file : files) {
+            if (total <= diskMaxBytes) {
+                break;
+            }
+            long size = Files.size(file);
+            Files.deleteIfExists(file);
+            total -= size;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private void count(String result) {
+        Counter.builder("result.cache.requests")
+                .tag("result", result)
+                .description("Result cache lookups by outcome")
+                .register(registry)
+                .increment();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * SingleFlight.java
+ *
+ * This class coalesces identical concurrent computations so that only one
+ * of them runs while the others share its result.
+ *
+ */
+
+package com.passportphoto.service.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.passportphoto.service.pipeline.Deadline;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The {@code SingleFlight} class tracks computations in flight by key. The
+ * first caller for a key becomes the leader and starts the computation; any
+ * caller arriving with the same key before it finishes attaches to the
+ * leader's future instead. The key is removed as soon as the computation
+ * finishes, so later callers start afresh (or hit a result cache).
+ *
+ * <p>The computation runs under a group {@link Deadline} retaining the
+ * deadline of every caller, so it is abandoned only when all of them are.
+ * An abandoned flight is removed at once, so later callers start afresh.
+ *
+ * <p>Callers are counted in {@code singleflight.requests}, tagged by flight
+ * name and role, so the coalescing ratio is followers over all requests.
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    /**
+     * Constructs a flight group and registers its counters.
+     *
+     * @param name     the flight name used as meter tag, e.g. {@code automate}
+     * @param registry the registry the counters are published to
+     */
+    public SingleFlight(String name, MeterRegistry registry) {
+        this.leaders = counter(name, "leader", registry);
+        this.followers = counter(name, "follower", registry);
+    }
+
+    /**
+     * Runs the computation for the key unless an identical one is already in
+     * flight, in which case its result is shared.
+     *
+     * @param key         identifies the computation, e.g. a content hash and parameters
+     * @param computation starts the computation and returns its future
+     * @return a future completed with the shared result; cancelling it does
+     *         not affect other callers
+     * @throws Exception if the leader fails to start the computation
+     */
+    public CompletableFuture<V> execute(K key, Callable<CompletableFuture<V>> computation) throws Exception {
+        Deadline caller = Deadline.current();
+        Flight<V> flight = new Flight<>(new CompletableFuture<>(), Deadline.group());
+        Flight<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            followers.increment();
+            existing.deadline().retain(caller);
+            return existing.result().copy();
+        }
+
+        leaders.increment();
+        CompletableFuture<V> shared = flight.result();
+        flight.deadline().retain(caller);
+        flight.deadline().onCancel(() -> inFlight.remove(key, flight));
+        CompletableFuture<V> started;
+        try (Deadline.Scope scope = Deadline.attach(flight.deadline())) {
+            started = computation.call();
+        } catch (Exception e) {
+            inFlight.remove(key, flight);
+            shared.completeExceptionally(e);
+            throw e;
+        }
+
+        started.whenComplete((result, error) -> {
+            // Removed before completing, so callers woken by the result never see a finished flight
+            inFlight.remove(key, flight);
+            if (error != null) {
+                shared.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error);
+            } else {
+                shared.complete(result);
+            }
+        });
+        return shared.copy();
+    }
+
+    /**
+     * Blocking variant of {@link #execute}: the leader runs the computation on
+     * the calling thread, followers wait for its result.
+     *
+     * @param key         identifies the computation
+     * @param computation the work to perform
+     * @return the shared result
+     * @throws Exception the failure of the computation
+     */
+    public V executeBlocking(K key, Callable<V> computation) throws Exception {
+        try {
+            return execute(key, () -> CompletableFuture.completedFuture(computation.call())).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of computations currently in flight.
+     *
+     * @return the number of distinct keys being computed
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    /**
+     * Simple structure to hold the shared result of a flight and the
+     * deadline it runs under.
+     */
+    private record Flight<V>(CompletableFuture<V> result, Deadline deadline) {
+    }
+
+    private static Counter counter(String name, String role, MeterRegistry registry) {
+        return Counter.builder("singleflight.requests")
+                .tag("flight", name)
+                .tag("role", role)
+                .description("Requests that started a computation (leader) or joined one in flight (follower)")
+                .register(registry);
+    }
+}
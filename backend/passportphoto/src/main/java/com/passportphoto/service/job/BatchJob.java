@@ -0,0 +1,122 @@
+/*
+ * BatchJob.java
+ *
+ * This class tracks the progress of an asynchronous batch passport photo job,
+ * including per-image state and the SSE subscribers listening for completions.
+ *
+ */
+
+package com.passportphoto.service.job;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The {@code BatchJob} class holds the mutable state of one submitted batch.
+ * Image results themselves live in the artifact store; the job only records
+ * whether each image is pending, done or failed. Outcomes are recorded and
+ * queued for subscribers while holding the job's monitor.
+ */
+public class BatchJob {
+
+    /** State of a single image within the job */
+    public enum ImageStatus { PENDING, DONE, FAILED }
+
+    /** State of the job as a whole */
+    public enum JobStatus { RUNNING, COMPLETED }
+
+    private final String id;
+    private final ImageStatus[] imageStatus;
+    private final String[] errors;
+    private final List<JobSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private int completed;
+    private int failed;
+    private boolean completionAnnounced;
+
+    /**
+     * Constructs a job for the given number of images.
+     *
+     * @param id    the job identifier
+     * @param total the number of images in the batch
+     */
+    public BatchJob(String id, int total) {
+        this.id = id;
+        this.imageStatus = new ImageStatus[total];
+        this.errors = new String[total];
+        Arrays.fill(imageStatus, ImageStatus.PENDING);
+    }
+
+    /**
+     * Marks an image as successfully processed.
+     *
+     * @param index the image index within the batch
+     */
+    public synchronized void markDone(int index) {
+        imageStatus[index] = ImageStatus.DONE;
+        completed++;
+    }
+
+    /**
+     * Marks an image as failed.
+     *
+     * @param index   the image index within the batch
+     * @param message the failure reason
+     */
+    public synchronized void markFailed(int index, String message) {
+        imageStatus[index] = ImageStatus.FAILED;
+        errors[index] = message;
+        failed++;
+    }
+
+    /**
+     * Claims the right to announce job completion, so that only one worker
+     * sends the final event when the last images finish together.
+     *
+     * @return true if the job is complete and was not yet announced
+     */
+    public synchronized boolean claimCompletion() {
+        if (completionAnnounced || getStatus() != JobStatus.COMPLETED) {
+            return false;
+        }
+        completionAnnounced = true;
+        return true;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getTotal() {
+        return imageStatus.length;
+    }
+
+    public synchronized int getCompleted() {
+        return completed;
+    }
+
+    public synchronized int getFailed() {
+        return failed;
+    }
+
+    public synchronized JobStatus getStatus() {
+        return completed + failed == imageStatus.length ? JobStatus.COMPLETED : JobStatus.RUNNING;
+    }
+
+    public synchronized ImageStatus getImageStatus(int index) {
+        return imageStatus[index];
+    }
+
+    public synchronized String getError(int index) {
+        return errors[index];
+    }
+
+    public synchronized ImageStatus[] getImageStatuses() {
+        return imageStatus.clone();
+    }
+
+    List<JobSubscription> getSubscriptions() {
+        return subscriptions;
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * BatchJobService.java
+ *
+ * This service runs batch passport photo jobs in the background, keeping
+ * finished images in a bounded artifact store and notifying SSE subscribers
+ * as each image completes.
+ *
+ */
+
+package com.passportphoto.service.job;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.passportphoto.dto.BatchJobResponse;
+import com.passportphoto.exceptions.ImageNotReadyException;
+import com.passportphoto.exceptions.JobNotFoundException;
+import com.passportphoto.exceptions.ServiceOverloadedException;
+import com.passportphoto.service.AutomatePassportPhotoService;
+import com.passportphoto.service.store.BufferMultipartFile;
+import com.passportphoto.service.store.ImageBuffer;
+import com.passportphoto.service.store.ImageBufferStore;
+import com.passportphoto.util.BoundedTtlStore;
+import com.passportphoto.util.ValidationUtil;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The {@code BatchJobService} accepts batches of images, returns a job id
+ * immediately and processes the images on a fixed worker pool. Each finished
+ * image is written to a store bounded by size and time-to-live so results
+ * can be fetched one by one instead of being held until the batch ends.
+ * Uploads and results are held in image buffers, so large batches spill to
+ * memory-mapped files instead of growing the heap.
+ *
+ * <p>Unfinished jobs and their results are never evicted; once
+ * {@code batch.job.max-jobs} jobs are running, new submissions are
+ * rejected with a retry delay. Only a finished job and its results move to
+ * the bounded stores, where they expire by time-to-live or are evicted
+ * least-recently-used first.
+ */
+@Service
+public class BatchJobService {
+
+    private final AutomatePassportPhotoService automatePassportPhotoService;
+    private final ExecutorService workers;
+    private final ExecutorService delivery = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("batch-events-", 0).factory());
+    private final Map<String, BatchJob> running = new ConcurrentHashMap<>();
+    private final Map<String, Artifact> runningArtifacts = new ConcurrentHashMap<>();
+    private final BoundedTtlStore<String, BatchJob> jobs;
+    private final BoundedTtlStore<String, Artifact> artifacts;
+    private final ImageBufferStore bufferStore;
+    private final long maxJobs;
+    private final long sseTimeoutMillis;
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructs the service with its worker pool and stores.
+     *
+     * @param automatePassportPhotoService pipeline used for each image
+     * @param workerCount                  number of images processed concurrently
+     * @param ttlMinutes                   how long finished jobs and results are kept
+     * @param maxJobs                      maximum number of running jobs, and of finished jobs kept
+     * @param maxArtifactBytes             maximum size of all results of finished jobs
+     * @param sseTimeoutMillis             how long an SSE subscription stays open
+     * @param retryAfterSeconds            delay suggested when a submission is rejected
+     * @param registry                     the registry the store gauges are published to
+     * @param bufferStore                  store holding uploads and results
+     */
+    public BatchJobService(AutomatePassportPhotoService automatePassportPhotoService,
+            @Value("${batch.job.workers}") int workerCount,
+            @Value("${batch.job.ttl-minutes}") long ttlMinutes,
+            @Value("${batch.job.max-jobs}") long maxJobs,
+            @Value("${batch.job.artifact-store.max-bytes}") long maxArtifactBytes,
+            @Value("${batch.job.sse-timeout-ms}") long sseTimeoutMillis,
+            @Value("${batch.job.retry-after-seconds}") long retryAfterSeconds,
+            MeterRegistry registry, ImageBufferStore bufferStore) {
+        this.automatePassportPhotoService = automatePassportPhotoService;
+        this.bufferStore = bufferStore;
+        this.workers = Executors.newFixedThreadPool(workerCount);
+        this.jobs = new BoundedTtlStore<>(maxJobs, Duration.ofMinutes(ttlMinutes), job -> 1);
+        this.artifacts = new BoundedTtlStore<>(maxArtifactBytes, Duration.ofMinutes(ttlMinutes),
+                artifact -> artifact.data().size());
+        this.maxJobs = maxJobs;
+        this.sseTimeoutMillis = sseTimeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        Gauge.builder("batch.jobs.tracked", this, service -> service.running.size() + service.jobs.size())
+                .description("Batch jobs currently tracked")
+                .register(registry);
+        Gauge.builder("batch.jobs.running", running, Map::size)
+                .description("Batch jobs not yet finished")
+                .register(registry);
+        Gauge.builder("batch.artifacts.bytes", artifacts, BoundedTtlStore::weight)
+                .description("Approximate size of stored results of finished jobs")
+                .register(registry);
+    }
+
+    /**
+     * Submits a batch for background processing. The uploads are copied into
+     * image buffers first because multipart temp files do not outlive the request.
+     *
+     * @param fileList the images to process
+     * @param country  country code for standard sizing
+     * @param template optional template label
+     * @return the id of the created job
+     * @throws ServiceOverloadedException if the maximum number of jobs is running
+     * @throws Exception if an upload is empty or cannot be read
+     */
+    public String submit(List<MultipartFile> fileList, String country, String template) throws Exception {
+        if (fileList == null || fileList.isEmpty()) {
+            throw new IllegalArgumentException("Uploaded image list is null or empty.");
+        }
+
+        for (MultipartFile file : fileList) {
+            ValidationUtil.validateMultipartFile(file);
+        }
+
+        BatchJob job = new BatchJob(UUID.randomUUID().toString(), fileList.size());
+        synchronized (running) {
+            if (running.size() >= maxJobs) {
+                throw new ServiceOverloadedException("Too many batch jobs are running", retryAfterSeconds);
+            }
+            running.put(job.getId(), job);
+        }
+
+        List<MultipartFile> inputs = new ArrayList<>(fileList.size());
+        try {
+            for (MultipartFile file : fileList) {
+                ImageBuffer buffer;
+                try (InputStream in = file.getInputStream()) {
+                    buffer = bufferStore.copyOf(in, file.getSize());
+                }
+                inputs.add(new BufferMultipartFile(file.getName(), file.getOriginalFilename(),
+                        file.getContentType(), buffer));
+            }
+        } catch (Exception e) {
+            running.remove(job.getId());
+            throw e;
+        }
+
+        for (int i = 0; i < inputs.size(); i++) {
+            int index = i;
+            MultipartFile input = inputs.get(i);
+            workers.submit(() -> processOne(job, index, input, country, template));
+        }
+        return job.getId();
+    }
+
+    /**
+     * Returns a progress snapshot of the job.
+     *
+     * @param jobId the job identifier
+     * @return the job progress
+     */
+    public BatchJobResponse getProgress(String jobId) {
+        BatchJob job = findJob(jobId);
+        List<String> images = new ArrayList<>(job.getTotal());
+        for (BatchJob.ImageStatus status : job.getImageStatuses()) {
+            images.add(status.name());
+        }
+        return new BatchJobResponse(job.getId(), job.getStatus().name(), job.getTotal(),
+                job.getCompleted(), job.getFailed(), images);
+    }
+
+    /**
+     * Returns the processed image at the given index.
+     *
+     * @param jobId the job identifier
+     * @param index the image index within the batch
+     * @return the base64 data URL of the processed image
+     * @throws ImageNotReadyException if the image is still pending or failed
+     */
+    public String getImage(String jobId, int index) {
+        BatchJob job = findJob(jobId);
+        if (index < 0 || index >= job.getTotal()) {
+            throw new IndexOutOfBoundsException("Image index out of range: " + index);
+        }
+        BatchJob.ImageStatus status = job.getImageStatus(index);
+        if (status != BatchJob.ImageStatus.DONE) {
+            throw new ImageNotReadyException("Image " + index + " is " + status, status.name());
+        }
+        Artifact artifact = runningArtifacts.get(artifactKey(jobId, index));
+        if (artifact == null) {
+            artifact = artifacts.get(artifactKey(jobId, index));
+        }
+        if (artifact == null) {
+            throw new JobNotFoundException("Image " + index + " has expired");
+        }
+        return "data:" + artifact.mediaType() + ";base64,"
+                + Base64.getEncoder().encodeToString(artifact.data().toByteArray());
+    }
+
+    /**
+     * Opens an SSE stream that emits an {@code image} event per finished image
+     * and a {@code complete} event once the whole batch is done. Images that
+     * finished before subscribing are replayed first; the replay is queued
+     * and the subscription registered under the job's monitor, so no event
+     * is missed or sent twice and the stream cannot be completed halfway
+     * through the replay. The events are written to the client afterwards,
+     * outside the monitor.
+     *
+     * @param jobId the job identifier
+     * @return the emitter bound to the job
+     */
+    public SseEmitter subscribe(String jobId) {
+        BatchJob job = findJob(jobId);
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        JobSubscription subscription = new JobSubscription(emitter, delivery);
+        Runnable unsubscribe = () -> {
+            subscription.close();
+            job.getSubscriptions().remove(subscription);
+        };
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+
+        synchronized (job) {
+            for (int i = 0; i < job.getTotal(); i++) {
+                if (job.getImageStatus(i) != BatchJob.ImageStatus.PENDING) {
+                    subscription.send(imageEvent(job, i));
+                }
+            }
+            if (job.getStatus() == BatchJob.JobStatus.COMPLETED) {
+                subscription.send(completeEvent(job));
+                subscription.complete();
+            } else {
+                job.getSubscriptions().add(subscription);
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Processes a single image of the job and publishes the outcome. The
+     * outcome is recorded and queued for subscribers under the job's
+     * monitor, so it is ordered with subscribers replaying the job; no
+     * client is written to while the monitor is held.
+     */
+    private void processOne(BatchJob job, int index, MultipartFile input, String country, String template) {
+        boolean done = false;
+        String error = null;
+        try {
+            String processed = automatePassportPhotoService.automatePassportPhoto(input, country, template);
+            String mediaType = processed.substring("data:".length(), processed.indexOf(';'));
+            byte[] bytes = Base64.getDecoder().decode(processed.substring(processed.indexOf(',') + 1));
+            runningArtifacts.put(artifactKey(job.getId(), index),
+                    new Artifact(mediaType, bufferStore.copyOf(bytes)));
+            done = true;
+        } catch (Exception e) {
+            error = e.getMessage();
+        }
+
+        synchronized (job) {
+            if (done) {
+                job.markDone(index);
+            } else {
+                job.markFailed(index, error);
+            }
+            broadcast(job, () -> imageEvent(job, index));
+            if (job.claimCompletion()) {
+                retire(job);
+                broadcast(job, () -> completeEvent(job));
+                for (JobSubscription subscription : job.getSubscriptions()) {
+                    subscription.complete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves a finished job and its results to the bounded stores, where they
+     * expire. Each is stored before it is removed from the running maps, so
+     * lookups never miss it in between.
+     */
+    private void retire(BatchJob job) {
+        for (int i = 0; i < job.getTotal(); i++) {
+            String key = artifactKey(job.getId(), i);
+            Artifact artifact = runningArtifacts.get(key);
+            if (artifact != null) {
+                artifacts.put(key, artifact);
+                runningArtifacts.remove(key);
+            }
+        }
+        jobs.put(job.getId(), job);
+        running.remove(job.getId());
+    }
+
+    /**
+     * Queues an event for every subscriber. A fresh builder is needed per
+     * subscriber since sending one consumes it.
+     */
+    private void broadcast(BatchJob job, Supplier<SseEmitter.SseEventBuilder> event) {
+        for (JobSubscription subscription : job.getSubscriptions()) {
+            subscription.send(event.get());
+        }
+    }
+
+    private SseEmitter.SseEventBuilder imageEvent(BatchJob job, int index) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("index", index);
+        data.put("status", job.getImageStatus(index).name());
+        data.put("error", job.getError(index));
+        return SseEmitter.event().name("image").data(data);
+    }
+
+    private SseEmitter.SseEventBuilder completeEvent(BatchJob job) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("completed", job.getCompleted());
+        data.put("failed", job.getFailed());
+        return SseEmitter.event().name("complete").data(data);
+    }
+
+    private BatchJob findJob(String jobId) {
+        BatchJob job = running.get(jobId);
+        if (job == null) {
+            job = jobs.get(jobId);
+        }
+        if (job == null) {
+            throw new JobNotFoundException("Job not found or expired: " + jobId);
+        }
+        return job;
+    }
+
+    private static String artifactKey(String jobId, int index) {
+        return jobId + "/" + index;
+    }
+
+    /**
+     * Stops the worker pool and event delivery when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        delivery.shutdownNow();
+    }
+
+    /**
+     * Simple structure to hold a finished image as encoded bytes.
+     */
+    private record Artifact(String mediaType, ImageBuffer data) {
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * JobSubscription.java
+ *
+ * This class queues the SSE events of one batch job subscriber and sends
+ * them in order on a delivery executor.
+ *
+ */
+
+package com.passportphoto.service.job;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * The {@code JobSubscription} class decouples recording a job's progress
+ * from writing it to a client. Events are queued while the job's monitor is
+ * held, which only takes memory, and are sent afterwards, one at a time and
+ * in queue order, by a task on the delivery executor. A slow or stalled
+ * client therefore only holds up its own stream, never a batch worker.
+ */
+class JobSubscription {
+
+    private final SseEmitter emitter;
+    private final Executor delivery;
+    private final Queue<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+
+    private boolean completing;
+    private boolean delivering;
+    private boolean closed;
+
+    /**
+     * Creates a subscription writing to the given emitter.
+     *
+     * @param emitter  the emitter of the client's SSE stream
+     * @param delivery the executor the events are sent on
+     */
+    JobSubscription(SseEmitter emitter, Executor delivery) {
+        this.emitter = emitter;
+        this.delivery = delivery;
+    }
+
+    /**
+     * Queues an event for sending.
+     *
+     * @param event the event
+     */
+    synchronized void send(SseEmitter.SseEventBuilder event) {
+        if (closed || completing) {
+            return;
+        }
+        pending.add(event);
+        schedule();
+    }
+
+    /**
+     * Completes the stream once all queued events have been sent.
+     */
+    synchronized void complete() {
+        if (closed || completing) {
+            return;
+        }
+        completing = true;
+        schedule();
+    }
+
+    /**
+     * Drops the queued events, for a stream that timed out or failed.
+     */
+    synchronized void close() {
+        closed = true;
+        pending.clear();
+    }
+
+    private void schedule() {
+        if (delivering) {
+            return;
+        }
+        delivering = true;
+        try {
+            delivery.execute(this::deliver);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            close();
+        }
+    }
+
+    /**
+     * Sends the queued events until the queue is empty, then completes the
+     * stream if that was requested.
+     */
+    private void deliver() {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            synchronized (this) {
+                event = closed ? null : pending.poll();
+                if (event == null) {
+                    delivering = false;
+                    if (closed || !completing) {
+                        return;
+                    }
+                    closed = true;
+                }
+            }
+            try {
+                if (event == null) {
+                    emitter.complete();
+                    return;
+                }
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                // Disconnected or already completed by a timeout
+                close();
+                return;
+            }
+        }
+    }
+}
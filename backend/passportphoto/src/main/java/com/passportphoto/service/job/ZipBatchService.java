@@ -0,0 +1,250 @@
+/*
+ * ZipBatchService.java
+ *
+ * This service runs bulk passport photo jobs submitted as a ZIP archive,
+ * decompressing entries as a stream and writing a ZIP of results back
+ * as each image completes.
+ *
+ */
+
+package com.passportphoto.service.job;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.passportphoto.exceptions.ImageTooLargeException;
+import com.passportphoto.service.AutomatePassportPhotoService;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The {@code ZipBatchService} reads one ZIP entry at a time, keeps at most a
+ * fixed number of images in flight, and writes every finished image into the
+ * output ZIP in completion order, followed by a {@code manifest.json}. Memory
+ * use is bounded by the parallelism rather than by the size of the batch.
+ */
+@Service
+public class ZipBatchService {
+
+    /** Name of the manifest entry written at the end of the output archive */
+    public static final String MANIFEST_NAME = "manifest.json";
+
+    private final AutomatePassportPhotoService automatePassportPhotoService;
+    private final ExecutorService workers;
+    private final int parallelism;
+    private final long maxEntryBytes;
+    private final int maxEntries;
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * Constructs the service with its worker pool and limits.
+     *
+     * @param automatePassportPhotoService pipeline used for each image
+     * @param parallelism                  number of images processed concurrently per archive
+     * @param maxEntryBytes                maximum uncompressed size of a single entry
+     * @param maxEntries                   maximum number of entries read from one archive
+     */
+    public ZipBatchService(AutomatePassportPhotoService automatePassportPhotoService,
+            @Value("${batch.zip.parallelism}") int parallelism,
+            @Value("${batch.zip.max-entry-bytes}") long maxEntryBytes,
+            @Value("${batch.zip.max-entries}") int maxEntries) {
+        this.automatePassportPhotoService = automatePassportPhotoService;
+        this.workers = Executors.newFixedThreadPool(parallelism);
+        this.parallelism = parallelism;
+        this.maxEntryBytes = maxEntryBytes;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Processes every image entry of the input archive and streams a result
+     * archive to the output. Non-image entries and failures are recorded in
+     * the manifest instead of aborting the whole batch.
+     *
+     * @param in       the ZIP archive to read
+     * @param out      the stream the result ZIP is written to
+     * @param country  country code for standard sizing
+     * @param template optional template label
+     * @throws IOException if reading the input or writing the output fails
+     */
+    public void process(InputStream in, OutputStream out, String country, String template) throws IOException {
+        List<Map<String, Object>> manifest = new ArrayList<>();
+        Set<String> usedNames = new HashSet<>();
+        ExecutorCompletionService<EntryResult> completion = new ExecutorCompletionService<>(workers);
+        int inFlight = 0;
+        int entryCount = 0;
+
+        try (ZipInputStream zin = new ZipInputStream(in); ZipOutputStream zout = new ZipOutputStream(out)) {
+            ZipEntry entry;
+            while ((entry = zin.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String name = entry.getName();
+                String contentType = URLConnection.guessContentTypeFromName(name);
+                if (contentType == null || !contentType.startsWith("image/")) {
+                    manifest.add(manifestEntry(name, null, "skipped", "Not an image"));
+                    continue;
+                }
+                if (++entryCount > maxEntries) {
+                    manifest.add(manifestEntry(name, null, "skipped", "Entry limit of " + maxEntries + " reached"));
+                    break;
+                }
+
+                byte[] bytes;
+                try {
+                    bytes = readEntry(zin);
+                } catch (ImageTooLargeException e) {
+                    manifest.add(manifestEntry(name, null, "failed", e.getMessage()));
+                    continue;
+                }
+
+                if (inFlight >= parallelism) {
+                    writeResult(take(completion), zout, manifest, usedNames);
+                    inFlight--;
+                }
+                completion.submit(() -> processEntry(name, contentType, bytes, country, template));
+                inFlight++;
+
+                Future<EntryResult> done;
+                while ((done = completion.poll()) != null) {
+                    writeResult(get(done), zout, manifest, usedNames);
+                    inFlight--;
+                }
+            }
+
+            while (inFlight > 0) {
+                writeResult(take(completion), zout, manifest, usedNames);
+                inFlight--;
+            }
+
+            zout.putNextEntry(new ZipEntry(MANIFEST_NAME));
+            zout.write(mapper.writeValueAsBytes(manifest));
+            zout.closeEntry();
+        }
+    }
+
+    /**
+     * Runs one entry through the automated pipeline and decodes the result.
+     */
+    private EntryResult processEntry(String name, String contentType, byte[] bytes, String country, String template) {
+        try {
+            MockMultipartFile file = new MockMultipartFile("image", name, contentType, bytes);
+            String dataUrl = automatePassportPhotoService.automatePassportPhoto(file, country, template);
+            String format = dataUrl.substring("data:image/".length(), dataUrl.indexOf(';'));
+            byte[] output = Base64.getDecoder().decode(dataUrl.substring(dataUrl.indexOf(',') + 1));
+            return new EntryResult(name, format, output, null);
+        } catch (Exception e) {
+            return new EntryResult(name, null, null, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    /**
+     * Writes a finished entry to the output archive and records it in the manifest.
+     */
+    private void writeResult(EntryResult result, ZipOutputStream zout, List<Map<String, Object>> manifest,
+            Set<String> usedNames) throws IOException {
+        if (result.error() != null) {
+            manifest.add(manifestEntry(result.name(), null, "failed", result.error()));
+            return;
+        }
+
+        int dot = result.name().lastIndexOf('.');
+        String base = dot > 0 ? result.name().substring(0, dot) : result.name();
+        String outputName = base + "." + result.format();
+        for (int i = 1; !usedNames.add(outputName); i++) {
+            outputName = base + "-" + i + "." + result.format();
+        }
+
+        zout.putNextEntry(new ZipEntry(outputName));
+        zout.write(result.bytes());
+        zout.closeEntry();
+        zout.flush();
+        manifest.add(manifestEntry(result.name(), outputName, "success", null));
+    }
+
+    /**
+     * Reads the current entry, refusing entries larger than the configured limit.
+     */
+    private byte[] readEntry(ZipInputStream zin) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[64 * 1024];
+        long total = 0;
+        int read;
+        while ((read = zin.read(chunk)) != -1) {
+            total += read;
+            if (total > maxEntryBytes) {
+                zin.closeEntry();
+                throw new ImageTooLargeException("Entry exceeds " + maxEntryBytes + " bytes");
+            }
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static Map<String, Object> manifestEntry(String entry, String output, String status, String error) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("entry", entry);
+        item.put("output", output);
+        item.put("status", status);
+        item.put("error", error);
+        return item;
+    }
+
+    private static EntryResult take(ExecutorCompletionService<EntryResult> completion) throws IOException {
+        try {
+            return get(completion.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for batch results", e);
+        }
+    }
+
+    private static EntryResult get(Future<EntryResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for batch results", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Batch entry processing failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stops the worker pool when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Simple structure holding the outcome of one archive entry.
+     */
+    private record EntryResult(String name, String format, byte[] bytes, String error) {
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * AdmissionControlService.java
+ *
+ * This component limits how much inference work may enter the pipeline at
+ * once, by concurrent request count and by decoded megapixels in flight.
+ *
+ */
+
+package com.passportphoto.service.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.passportphoto.exceptions.ServiceOverloadedException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The {@code AdmissionControlService} admits a request only while both the
+ * number of running inferences and the decoded megapixels in flight stay
+ * under their caps. Interactive callers wait in a bounded queue for a
+ * limited time and are then shed with a {@link ServiceOverloadedException};
+ * background workers, already bounded by their own pools, wait until admitted.
+ *
+ * <p>Batch work never holds the last {@code admission.interactive-reserved}
+ * slots, nor the matching share of the megapixel budget, and does not enter
+ * while an interactive request is waiting, so freed capacity goes to the
+ * interactive request first and a large batch cannot lock the editor out.
+ */
+@Component
+public class AdmissionControlService {
+
+    private final int maxConcurrent;
+    private final int maxWaiting;
+    private final long waitTimeoutMillis;
+    private final long maxPixels;
+    private final long retryAfterSeconds;
+    private final int maxBatchConcurrent;
+    private final long maxBatchPixels;
+    private final Counter rejected;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private int inFlight;
+    private int waiting;
+    private long pixelsInFlight;
+    private int batchInFlight;
+    private long batchPixelsInFlight;
+
+    /**
+     * Constructs the admission controller from configuration.
+     *
+     * @param maxConcurrent     maximum number of admitted requests
+     * @param maxWaiting        maximum number of interactive requests waiting for admission
+     * @param waitTimeoutMillis how long an interactive request may wait
+     * @param maxMegapixels     budget of decoded megapixels in flight
+     * @param retryAfterSeconds delay suggested to shed clients
+     * @param interactiveReserved slots batch work may not take
+     * @param registry          the registry the admission gauges are published to
+     */
+    public AdmissionControlService(@Value("${admission.max-concurrent}") int maxConcurrent,
+            @Value("${admission.max-waiting}") int maxWaiting,
+            @Value("${admission.wait-timeout-ms}") long waitTimeoutMillis,
+            @Value("${admission.max-megapixels}") long maxMegapixels,
+            @Value("${admission.retry-after-seconds}") long retryAfterSeconds,
+            @Value("${admission.interactive-reserved}") int interactiveReserved,
+            MeterRegistry registry) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaiting = maxWaiting;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.maxPixels = maxMegapixels * 1_000_000L;
+        this.retryAfterSeconds = retryAfterSeconds;
+        // At least one slot stays open to batch work, or it could never run
+        this.maxBatchConcurrent = Math.max(1, maxConcurrent - Math.max(0, interactiveReserved));
+        this.maxBatchPixels = maxPixels * maxBatchConcurrent / Math.max(1, maxConcurrent);
+        this.rejected = Counter.builder("admission.rejected")
+                .description("Requests shed by admission control")
+                .register(registry);
+
+        Gauge.builder("admission.inflight", this, AdmissionControlService::getInFlight)
+                .description("Requests admitted and not yet finished")
+                .register(registry);
+        Gauge.builder("admission.waiting", this, AdmissionControlService::getWaiting)
+                .description("Requests waiting for admission")
+                .register(registry);
+        Gauge.builder("admission.batch.inflight", this, AdmissionControlService::getBatchInFlight)
+                .description("Batch requests admitted and not yet finished")
+                .register(registry);
+        Gauge.builder("admission.megapixels", this, s -> s.getPixelsInFlight() / 1_000_000.0)
+                .description("Decoded megapixels in flight")
+                .register(registry);
+    }
+
+    /**
+     * Admits an interactive request, waiting in the bounded queue for at most
+     * the configured timeout.
+     *
+     * @param pixels the number of decoded pixels the request will hold
+     * @return the permit to release when the request finishes
+     * @throws ServiceOverloadedException if the queue is full or the wait times out
+     */
+    public Permit admit(long pixels) {
+        long cost = Math.min(Math.max(pixels, 0), maxPixels);
+        lock.lock();
+        try {
+            if (canEnter(cost)) {
+                return enter(cost, false);
+            }
+            if (waiting >= maxWaiting) {
+                throw shed("Too many requests waiting for processing");
+            }
+            waiting++;
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(waitTimeoutMillis);
+                while (!canEnter(cost)) {
+                    if (nanos <= 0) {
+                        throw shed("Timed out waiting for processing capacity");
+                    }
+                    nanos = released.awaitNanos(nanos);
+                }
+                return enter(cost, false);
+            } finally {
+                waiting--;
+                if (waiting == 0) {
+                    // Batch work held back for this request may enter now
+                    released.signalAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw shed("Interrupted while waiting for processing capacity");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Admits a background request, waiting as long as needed and behind any
+     * waiting interactive request.
+     *
+     * @param pixels the number of decoded pixels the request will hold
+     * @return the permit to release when the request finishes
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public Permit admitBlocking(long pixels) throws InterruptedException {
+        long cost = Math.min(Math.max(pixels, 0), maxBatchPixels);
+        lock.lock();
+        try {
+            while (!canEnterBatch(cost)) {
+                released.await();
+            }
+            return enter(cost, true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getBatchInFlight() {
+        lock.lock();
+        try {
+            return batchInFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getPixelsInFlight() {
+        lock.lock();
+        try {
+            return pixelsInFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canEnter(long cost) {
+        return inFlight < maxConcurrent && pixelsInFlight + cost <= maxPixels;
+    }
+
+    private boolean canEnterBatch(long cost) {
+        return waiting == 0 && batchInFlight < maxBatchConcurrent
+                && batchPixelsInFlight + cost <= maxBatchPixels && canEnter(cost);
+    }
+
+    private Permit enter(long cost, boolean batch) {
+        inFlight++;
+        pixelsInFlight += cost;
+        if (batch) {
+            batchInFlight++;
+            batchPixelsInFlight += cost;
+        }
+        return new Permit(cost, batch);
+    }
+
+    private ServiceOverloadedException shed(String message) {
+        rejected.increment();
+        return new ServiceOverloadedException(message, retryAfterSeconds);
+    }
+
+    /**
+     * A granted admission. Closing it returns its capacity exactly once.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final long cost;
+        private final boolean batch;
+        private boolean closed;
+
+        private Permit(long cost, boolean batch) {
+            this.cost = cost;
+            this.batch = batch;
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                inFlight--;
+                pixelsInFlight -= cost;
+                if (batch) {
+                    batchInFlight--;
+                    batchPixelsInFlight -= cost;
+                }
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * ComputeExecutor.java
+ *
+ * This component runs CPU-bound native work of request threads on a fixed
+ * pool of platform threads.
+ *
+ */
+
+package com.passportphoto.service.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.passportphoto.exceptions.PipelineBusyException;
+import com.passportphoto.util.BufferPool;
+import com.passportphoto.util.NativeArena;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The {@code ComputeExecutor} lets request handling run on virtual threads
+ * ({@code spring.threads.virtual.enabled=true}) without running OpenCV,
+ * ONNX Runtime or image encoding on them. A virtual thread inside a JNI call
+ * pins its carrier, so thousands of slow connections would otherwise end up
+ * competing for a handful of carriers. Work passed to {@link #call} from a
+ * virtual thread runs on a fixed pool of platform threads sized to the
+ * cores ({@code compute.threads}, 0 for one per core) while the virtual
+ * thread parks; a full queue ({@code compute.queue-capacity}) rejects the
+ * work with a {@link PipelineBusyException}. Called from a platform thread,
+ * such as a Tomcat worker or a pipeline stage, the work runs inline.
+ *
+ * <p>Each task runs in its own {@link NativeArena}, so it must not return
+ * tracked native values. The caller's {@link Deadline} is attached to the
+ * compute thread, and a task whose request was abandoned while it queued
+ * is not started.
+ */
+@Component
+public class ComputeExecutor {
+
+    /** Stage name under which work dropped here is counted */
+    private static final String STAGE = "compute";
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates the pool and registers its queue-depth and active-thread gauges.
+     *
+     * @param threads       number of platform threads, or 0 for one per core
+     * @param queueCapacity maximum number of tasks waiting for a thread
+     * @param registry      the registry the gauges are published to
+     */
+    public ComputeExecutor(@Value("${compute.threads}") int threads,
+            @Value("${compute.queue-capacity}") int queueCapacity,
+            MeterRegistry registry) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(BufferPool.withThreadCache(runnable),
+                            "compute-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Gauge.builder("compute.queue.depth", executor, e -> e.getQueue().size())
+                .description("Request tasks waiting for a compute thread")
+                .register(registry);
+        Gauge.builder("compute.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Request tasks running on compute threads")
+                .register(registry);
+    }
+
+    /**
+     * Runs the task on a compute thread if the caller is a virtual thread,
+     * otherwise on the calling thread, and returns its result.
+     *
+     * @param task the work to perform
+     * @param <T>  the result type
+     * @param <E>  the checked exception the task may throw
+     * @return the task result
+     * @throws E the failure of the task
+     * @throws PipelineBusyException if the queue is full or the caller is interrupted
+     * @throws com.passportphoto.exceptions.RequestAbandonedException if the request was abandoned
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E extends Exception> T call(Task<T, E> task) throws E {
+        Deadline.check(STAGE);
+        if (!Thread.currentThread().isVirtual()) {
+            return task.call();
+        }
+
+        Deadline deadline = Deadline.current();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                try (Deadline.Scope scope = Deadline.attach(deadline); NativeArena arena = NativeArena.open()) {
+                    Deadline.check(STAGE);
+                    return task.call();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new PipelineBusyException("Compute executor is saturated");
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw (E) cause;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PipelineBusyException("Interrupted while waiting for a compute thread");
+        }
+    }
+
+    /**
+     * Stops the compute threads when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A unit of work that may throw a checked exception of type {@code E}.
+     *
+     * @param <T> the result type
+     * @param <E> the checked exception type
+     */
+    @FunctionalInterface
+    public interface Task<T, E extends Exception> {
+
+        /**
+         * Performs the work.
+         *
+         * @return the result
+         * @throws E if the work fails
+         */
+        T call() throws E;
+    }
+}
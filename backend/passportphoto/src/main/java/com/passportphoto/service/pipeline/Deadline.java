@@ -0,0 +1,290 @@
+/*
+ * Deadline.java
+ *
+ * Per-request deadline and cancellation signal, carried along to the
+ * threads that work on the request.
+ *
+ */
+
+package com.passportphoto.service.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+import com.passportphoto.exceptions.RequestAbandonedException;
+
+/**
+ * The {@code Deadline} class marks the point after which nobody is waiting
+ * for a request any more, either because its time ran out or because the
+ * container reported the request as failed. Once abandoned it stays abandoned, and callbacks
+ * registered with {@link #onCancel}, such as terminating an ONNX session
+ * run, are invoked.
+ *
+ * <p>The deadline of the request being worked on is attached to the thread
+ * with {@link #attach}. The {@link StagedPipelineExecutor} and the
+ * {@link ComputeExecutor} capture it when work is submitted and attach it
+ * while the work runs, and check it before starting a stage, so dropped
+ * requests stop at the next stage boundary.
+ *
+ * <p>Work shared by several requests, such as a coalesced computation or an
+ * inference batch, runs under a group deadline: it is abandoned only once
+ * every request retained on it is abandoned, and never if one of them has
+ * no deadline.
+ */
+public final class Deadline {
+
+    /** Why the work for a request was abandoned */
+    public enum Reason {
+        /** The request ran past its time limit or the async request timed out */
+        EXPIRED("expired"),
+        /** The container reported an error on the async request, such as a failed write */
+        FAILED("failed");
+
+        private final String key;
+
+        Reason(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> listeners = new ArrayList<>();
+    private volatile RequestDeadlines owner;
+    private volatile Reason reason;
+    private ScheduledFuture<?> expiry;
+    private int holders;
+    private boolean permanent;
+
+    Deadline(RequestDeadlines owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Returns the deadline attached to the calling thread.
+     *
+     * @return the current deadline, or {@code null} if the work has none
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attaches a deadline to the calling thread until the returned scope is
+     * closed, which restores the previous one.
+     *
+     * @param deadline the deadline to attach, or {@code null} to detach
+     * @return the scope, to be closed by the same thread
+     */
+    public static Scope attach(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Throws if the deadline attached to the calling thread is abandoned.
+     *
+     * @param stage the stage about to run, used as meter tag
+     * @throws RequestAbandonedException if the work is no longer wanted
+     */
+    public static void check(String stage) {
+        Deadline deadline = CURRENT.get();
+        if (deadline != null && deadline.isAbandoned()) {
+            throw deadline.abandoned(stage);
+        }
+    }
+
+    /**
+     * Creates a group deadline for work shared by several requests. It has
+     * no participants until they are added with {@link #retain}.
+     *
+     * @return the group deadline
+     */
+    public static Deadline group() {
+        return new Deadline(null);
+    }
+
+    /**
+     * Creates a group deadline for work shared by a known set of requests.
+     * All of them are counted before any is watched, so a request abandoned
+     * before the group formed cannot cancel it while the others are added.
+     *
+     * @param participants the deadlines of the requests, {@code null} for a request without one
+     * @return the group deadline, abandoned once every participant is
+     */
+    public static Deadline group(Collection<Deadline> participants) {
+        Deadline group = group();
+        List<Deadline> held = new ArrayList<>(participants.size());
+        for (Deadline participant : participants) {
+            if (group.hold(participant)) {
+                held.add(participant);
+            }
+        }
+        for (Deadline participant : held) {
+            participant.onCancel(() -> group.release(participant.getReason()));
+        }
+        return group;
+    }
+
+    /**
+     * Adds a request to a group deadline. The group is abandoned when every
+     * participant is; a participant without a deadline keeps it alive.
+     *
+     * @param participant the deadline of the joining request, or {@code null}
+     */
+    public void retain(Deadline participant) {
+        if (hold(participant)) {
+            participant.onCancel(() -> release(participant.getReason()));
+        }
+    }
+
+    /**
+     * Counts a participant, returning whether it has a deadline to watch.
+     */
+    private synchronized boolean hold(Deadline participant) {
+        if (participant == null) {
+            permanent = true;
+            return false;
+        }
+        holders++;
+        if (owner == null) {
+            owner = participant.owner;
+        }
+        return true;
+    }
+
+    private void release(Reason participantReason) {
+        synchronized (this) {
+            if (--holders > 0 || permanent) {
+                return;
+            }
+        }
+        cancel(participantReason);
+    }
+
+    /**
+     * Returns whether the work for this deadline is no longer wanted.
+     *
+     * @return {@code true} once expired or cancelled
+     */
+    public boolean isAbandoned() {
+        return reason != null;
+    }
+
+    /**
+     * Returns why the work was abandoned.
+     *
+     * @return the reason, or {@code null} while the deadline is live
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * Counts the work dropped at a stage and returns the exception reporting it.
+     *
+     * @param stage the stage that dropped the work
+     * @return the exception to fail the work with
+     */
+    public RequestAbandonedException abandoned(String stage) {
+        Reason current = reason == null ? Reason.EXPIRED : reason;
+        RequestDeadlines deadlines = owner;
+        if (deadlines != null) {
+            deadlines.countAbandoned(stage, current);
+        }
+        return new RequestAbandonedException("Request " + current.getKey() + " before stage " + stage + " ran");
+    }
+
+    /**
+     * Abandons the work and invokes the registered callbacks. Only the first
+     * call has an effect.
+     *
+     * @param cancelReason why the work is no longer wanted
+     */
+    public synchronized void cancel(Reason cancelReason) {
+        if (reason != null) {
+            return;
+        }
+        reason = cancelReason;
+        if (expiry != null) {
+            expiry.cancel(false);
+        }
+        // Run under the lock, so a callback never races with its registration being closed
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        listeners.clear();
+    }
+
+    /**
+     * Registers a callback invoked when the work is abandoned, immediately
+     * if it already is. Closing the registration waits for a running
+     * callback, so the resources it touches can be freed afterwards.
+     *
+     * @param listener the callback
+     * @return the registration, closed to remove the callback
+     */
+    public synchronized Registration onCancel(Runnable listener) {
+        if (reason != null) {
+            listener.run();
+            return () -> { };
+        }
+        listeners.add(listener);
+        return () -> {
+            synchronized (this) {
+                listeners.remove(listener);
+            }
+        };
+    }
+
+    /**
+     * Marks the request as answered and stops its expiry timer, so work it
+     * shares with other requests is not abandoned on its behalf.
+     */
+    public synchronized void finish() {
+        if (expiry != null) {
+            expiry.cancel(false);
+        }
+    }
+
+    synchronized void setExpiry(ScheduledFuture<?> expiry) {
+        this.expiry = expiry;
+    }
+
+    /**
+     * The attachment of a deadline to a thread.
+     */
+    public interface Scope extends AutoCloseable {
+
+        /**
+         * Restores the previously attached deadline.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * A registered cancellation callback.
+     */
+    public interface Registration extends AutoCloseable {
+
+        /**
+         * Removes the callback.
+         */
+        @Override
+        void close();
+    }
+}
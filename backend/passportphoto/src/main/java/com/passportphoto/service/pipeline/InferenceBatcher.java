@@ -0,0 +1,219 @@
+/*
+ * InferenceBatcher.java
+ *
+ * This component groups same-shaped inference requests from background
+ * batch work into a single ONNX session run.
+ *
+ */
+
+package com.passportphoto.service.pipeline;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.passportphoto.service.BackgroundRemovalService;
+
+import ai.onnxruntime.OrtException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The {@code InferenceBatcher} collects model inputs by tensor shape. A group
+ * is run on the inference stage as one {@code N x 3 x H x W} tensor once it
+ * reaches {@code inference.batch.max-size}, or after
+ * {@code inference.batch.max-wait-ms} if it does not fill up. Images of a
+ * batch job are resized to the same country or template size, so they
+ * usually share a shape. The maximum size should not exceed the number of
+ * batch images that can reach inference at once, or groups never fill and
+ * every one of them waits out the full delay.
+ *
+ * <p>If the model rejects a batched input as an invalid argument, for
+ * example because its batch dimension is fixed to 1, the group is run image
+ * by image and batching is turned off for the rest of the process lifetime.
+ * Any other failure, such as a run terminated on cancellation, only makes
+ * that group run image by image.
+ *
+ * <p>A group runs under a group {@link Deadline} of its inputs' requests,
+ * so the session run is only terminated once all of them are abandoned.
+ * Inputs whose request was abandoned while waiting are left out.
+ */
+@Component
+public class InferenceBatcher {
+
+    private final BackgroundRemovalService backgroundRemovalService;
+    private final StagedPipelineExecutor pipeline;
+    private final int maxBatchSize;
+    private final long maxWaitMillis;
+    private final DistributionSummary batchSizes;
+    private final ScheduledExecutorService timer;
+
+    private final Map<Shape, List<Pending>> groups = new HashMap<>();
+    private volatile boolean batchingSupported = true;
+
+    /**
+     * Constructs the batcher from configuration.
+     *
+     * @param backgroundRemovalService service running the model
+     * @param pipeline                 executor whose inference stage runs the batches
+     * @param maxBatchSize             maximum number of inputs per session run
+     * @param maxWaitMillis            how long a partial group waits for more inputs
+     * @param registry                 the registry the batch size summary is published to
+     */
+    public InferenceBatcher(BackgroundRemovalService backgroundRemovalService, StagedPipelineExecutor pipeline,
+            @Value("${inference.batch.max-size}") int maxBatchSize,
+            @Value("${inference.batch.max-wait-ms}") long maxWaitMillis,
+            MeterRegistry registry) {
+        this.backgroundRemovalService = backgroundRemovalService;
+        this.pipeline = pipeline;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitMillis = maxWaitMillis;
+        this.batchSizes = DistributionSummary.builder("inference.batch.size")
+                .description("Number of images per ONNX session run")
+                .register(registry);
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                runnable -> StagedPipelineExecutor.pipelineThread(runnable, "inference-batcher"));
+    }
+
+    /**
+     * Queues a model input for the next batch of its shape.
+     *
+     * @param input       the CHW tensor data of one image
+     * @param imageHeight height of the image
+     * @param imageWidth  width of the image
+     * @return a future completed with the model output for this input
+     */
+    public CompletableFuture<float[]> submit(FloatBuffer input, int imageHeight, int imageWidth) {
+        Shape shape = new Shape(imageWidth, imageHeight);
+        Pending pending = new Pending(input, Deadline.current(), new CompletableFuture<>());
+
+        if (maxBatchSize == 1 || !batchingSupported) {
+            dispatch(shape, List.of(pending));
+            return pending.result();
+        }
+
+        List<Pending> full = null;
+        synchronized (groups) {
+            List<Pending> group = groups.computeIfAbsent(shape, s -> new ArrayList<>());
+            group.add(pending);
+            if (group.size() >= maxBatchSize) {
+                full = groups.remove(shape);
+            } else if (group.size() == 1) {
+                timer.schedule(() -> flush(shape, group), maxWaitMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(shape, full);
+        }
+        return pending.result();
+    }
+
+    /**
+     * Dispatches a partial group once its wait expires, unless it has
+     * already been dispatched as full.
+     */
+    private void flush(Shape shape, List<Pending> group) {
+        synchronized (groups) {
+            if (groups.get(shape) != group) {
+                return;
+            }
+            groups.remove(shape);
+        }
+        dispatch(shape, group);
+    }
+
+    private void dispatch(Shape shape, List<Pending> group) {
+        Deadline deadline = Deadline.group(group.stream().map(Pending::deadline).toList());
+        try (Deadline.Scope scope = Deadline.attach(deadline)) {
+            pipeline.submit(PipelineStage.INFERENCE, WorkloadClass.BATCH, () -> {
+                run(shape, live(group));
+                return null;
+            }).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    group.forEach(pending -> pending.result().completeExceptionally(error));
+                }
+            });
+        }
+    }
+
+    /**
+     * Fails the inputs whose request was abandoned while they waited and
+     * returns the others.
+     */
+    private static List<Pending> live(List<Pending> group) {
+        List<Pending> live = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            if (pending.deadline() != null && pending.deadline().isAbandoned()) {
+                pending.result().completeExceptionally(pending.deadline().abandoned(PipelineStage.INFERENCE.getKey()));
+            } else {
+                live.add(pending);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Runs one group, as a batch when possible, and completes each input's future.
+     */
+    private void run(Shape shape, List<Pending> group) throws Exception {
+        if (group.isEmpty()) {
+            return;
+        }
+        batchSizes.record(group.size());
+        if (group.size() > 1 && batchingSupported) {
+            List<FloatBuffer> inputs = new ArrayList<>(group.size());
+            group.forEach(pending -> inputs.add(pending.input()));
+            try {
+                List<float[]> outputs = backgroundRemovalService.runModelBatch(inputs, shape.height(), shape.width());
+                for (int i = 0; i < group.size(); i++) {
+                    group.get(i).result().complete(outputs.get(i));
+                }
+                return;
+            } catch (OrtException e) {
+                if (e.getCode() == OrtException.OrtErrorCode.ORT_INVALID_ARGUMENT) {
+                    batchingSupported = false;
+                }
+            }
+        }
+
+        for (Pending pending : live(group)) {
+            try {
+                pending.result().complete(
+                        backgroundRemovalService.runModel(pending.input(), shape.height(), shape.width()));
+            } catch (OrtException e) {
+                pending.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Stops the flush timer when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Simple structure to hold the tensor size a group is keyed by.
+     */
+    private record Shape(int width, int height) {
+    }
+
+    /**
+     * Simple structure to hold a queued input, the deadline of its request
+     * and the future for its output.
+     */
+    private record Pending(FloatBuffer input, Deadline deadline, CompletableFuture<float[]> result) {
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * PipelineMetrics.java
+ *
+ * This component records timings and counters for the individual image
+ * operations of the pipeline, published through Micrometer.
+ *
+ */
+
+package com.passportphoto.service.pipeline;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+import com.passportphoto.util.NativeArena;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The {@code PipelineMetrics} class wraps the {@link MeterRegistry} with the
+ * meters the image services share: a {@code pipeline.operation.duration}
+ * timer tagged by operation, a gauge of ONNX sessions currently running, and
+ * a counter of face detection failures tagged by failure type, and the
+ * {@code native.*} meters of {@link NativeArena}. Percentiles
+ * and histograms are enabled through the
+ * {@code management.metrics.distribution.*} properties.
+ */
+@Component
+public class PipelineMetrics {
+
+    private final MeterRegistry registry;
+    private final AtomicInteger sessionsInUse = new AtomicInteger();
+
+    /**
+     * Constructs the metrics helper and registers the session gauge.
+     *
+     * @param registry the registry meters are published to
+     */
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("model.session.active", sessionsInUse, AtomicInteger::get)
+                .description("ONNX inferences currently running")
+                .register(registry);
+
+        Gauge.builder("native.memory.live.bytes", NativeArena::liveBytes)
+                .description("Native bytes of Mats and ONNX values held by open arenas")
+                .register(registry);
+        Gauge.builder("native.arena.open", NativeArena::openArenas)
+                .description("Native memory arenas currently open")
+                .register(registry);
+        FunctionCounter.builder("native.memory.released.bytes", this, m -> NativeArena.releasedBytes())
+                .description("Native bytes released by arenas")
+                .register(registry);
+        FunctionCounter.builder("native.arena.reclaimed", this, m -> NativeArena.reclaimedMats())
+                .tag("type", "mat")
+                .description("Native values released by an arena because the code did not release them")
+                .register(registry);
+        FunctionCounter.builder("native.arena.reclaimed", this, m -> NativeArena.reclaimedResources())
+                .tag("type", "ort")
+                .description("Native values released by an arena because the code did not release them")
+                .register(registry);
+        FunctionCounter.builder("native.arena.leaked", this, m -> NativeArena.leakedArenas())
+                .description("Arenas left open and closed by an enclosing arena")
+                .register(registry);
+        FunctionCounter.builder("native.arena.unscoped", this, m -> NativeArena.unscoped())
+                .description("Native values allocated while no arena was open")
+                .register(registry);
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return the running sample
+     */
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * Stops timing an operation and records it under the given name.
+     *
+     * @param sample    the sample returned by {@link #start()}
+     * @param operation the operation tag, e.g. {@code resize} or {@code inference}
+     */
+    public void stop(Timer.Sample sample, String operation) {
+        sample.stop(Timer.builder("pipeline.operation.duration")
+                .tag("operation", operation)
+                .description("Time spent in a single image operation")
+                .register(registry));
+    }
+
+    /**
+     * Marks an ONNX session run as started.
+     */
+    public void sessionAcquired() {
+        sessionsInUse.incrementAndGet();
+    }
+
+    /**
+     * Marks an ONNX session run as finished.
+     */
+    public void sessionReleased() {
+        sessionsInUse.decrementAndGet();
+    }
+
+    /**
+     * Counts a face or eye detection failure by its exception type.
+     *
+     * @param e the detection failure
+     */
+    public void countDetectionFailure(RuntimeException e) {
+        Counter.builder("face.detection.failures")
+                .tag("type", e.getClass().getSimpleName())
+                .description("Images rejected by face or eye detection")
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Returns the underlying registry for components registering their own meters.
+     *
+     * @return the meter registry
+     */
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * PipelineStage.java
+ *
+ * This enum lists the stages of the automated passport photo pipeline,
+ * each of which runs on its own executor.
+ *
+ */
+
+package com.passportphoto.service.pipeline;
+
+/**
+ * The {@code PipelineStage} enum identifies a step of the automated pipeline.
+ * The key is used for configuration properties and metric tags.
+ */
+public enum PipelineStage {
+
+    /** Reading the upload into pixels */
+    DECODE("decode", 2),
+
+    /** Resizing and extending the background to the target size */
+    RESIZE("resize", 2),
+
+    /** Face and eye detection followed by centering */
+    DETECTION("detection", 2),
+
+    /** ONNX background removal and blending */
+    INFERENCE("inference", 1),
+
+    /** Encoding the final image */
+    ENCODE("encode", 2);
+
+    private final String key;
+    private final int defaultThreads;
+
+    PipelineStage(String key, int defaultThreads) {
+        this.key = key;
+        this.defaultThreads = defaultThreads;
+    }
+
+    /**
+     * Returns the lowercase key used in properties and metric tags.
+     *
+     * @return the stage key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the number of threads used when none is configured.
+     *
+     * @return the default thread count
+     */
+    public int getDefaultThreads() {
+        return defaultThreads;
+    }
+}
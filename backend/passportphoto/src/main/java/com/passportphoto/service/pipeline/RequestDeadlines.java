@@ -0,0 +1,85 @@
+/*
+ * RequestDeadlines.java
+ *
+ * This component starts the deadline of each request and counts the work
+ * dropped once a request is abandoned.
+ *
+ */
+
+package com.passportphoto.service.pipeline;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The {@code RequestDeadlines} component creates a {@link Deadline} for
+ * every request that expires after {@code request.deadline-ms} (0 for no
+ * time limit; the request can still be cancelled when the container reports
+ * it as failed). Dropped work is counted in {@code request.abandoned},
+ * tagged by the stage that dropped it and the reason, so the meter shows how
+ * much work no longer runs for requests nobody waits for. The expiry of a request that finishes in
+ * time is removed from the timer queue at once.
+ */
+@Component
+public class RequestDeadlines {
+
+    private final long timeoutMillis;
+    private final MeterRegistry registry;
+    private final ScheduledThreadPoolExecutor timer;
+
+    /**
+     * Constructs the component from configuration.
+     *
+     * @param timeoutMillis how long a request may take, or 0 for no limit
+     * @param registry      the registry the abandoned-work counter is published to
+     */
+    public RequestDeadlines(@Value("${request.deadline-ms}") long timeoutMillis, MeterRegistry registry) {
+        this.timeoutMillis = timeoutMillis;
+        this.registry = registry;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "request-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most requests finish long before they expire; their timers must not pile up in the queue
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Starts the deadline of a new request.
+     *
+     * @return the deadline, to be finished when the request is answered
+     */
+    public Deadline start() {
+        Deadline deadline = new Deadline(this);
+        if (timeoutMillis > 0) {
+            deadline.setExpiry(timer.schedule(() -> deadline.cancel(Deadline.Reason.EXPIRED),
+                    timeoutMillis, TimeUnit.MILLISECONDS));
+        }
+        return deadline;
+    }
+
+    void countAbandoned(String stage, Deadline.Reason reason) {
+        Counter.builder("request.abandoned")
+                .tag("stage", stage)
+                .tag("reason", reason.getKey())
+                .description("Work dropped because its request expired or failed")
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Stops the expiry timer when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * StagedPipelineExecutor.java
+ *
+ * This component runs each stage of the automated pipeline on its own sized
+ * thread pool with a bounded queue in front of it.
+ *
+ */
+
+package com.passportphoto.service.pipeline;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.passportphoto.exceptions.PipelineBusyException;
+import com.passportphoto.util.BufferPool;
+import com.passportphoto.util.NativeArena;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The {@code StagedPipelineExecutor} gives every {@link PipelineStage} a
+ * fixed-size executor and a {@link WorkloadQueue} holding one bounded queue
+ * per {@link WorkloadClass}, served by weight
+ * ({@code pipeline.workload.<key>.weight}), so a large batch cannot starve
+ * interactive requests of a stage. When a class queue is full the
+ * configured policy either runs the task on the thread entering the
+ * pipeline, which slows that client down, or rejects it outright. A
+ * pipeline thread handing work on to a full stage, such as a stage chaining
+ * the next one, waits up to {@code pipeline.handoff-timeout-ms} for room
+ * instead, so work already in flight is not thrown away and no stage runs
+ * on another stage's threads outside its pool size and workload weights;
+ * only a handoff that still finds no room fails. Each task runs in
+ * its own {@link NativeArena}; a tracked Mat it returns is detached and owned
+ * by the next stage. The {@link Deadline} of the submitting thread is
+ * attached while the task runs; a task whose request has been abandoned by
+ * the time it leaves the queue is dropped instead of run.
+ */
+@Component
+public class StagedPipelineExecutor {
+
+    /** What to do when a stage queue is full */
+    public enum QueueFullPolicy { CALLER_RUNS, REJECT }
+
+    /** Marks threads owned by the pipeline, which never run a rejected task themselves */
+    private static final ThreadLocal<Boolean> PIPELINE_THREAD = ThreadLocal.withInitial(() -> false);
+
+    private final Map<PipelineStage, ThreadPoolExecutor> executors = new EnumMap<>(PipelineStage.class);
+    private final Map<PipelineStage, Timer> runTimers = new EnumMap<>(PipelineStage.class);
+    private final Map<PipelineStage, Map<WorkloadClass, Timer>> waitTimers = new EnumMap<>(PipelineStage.class);
+    private final QueueFullPolicy queueFullPolicy;
+    private final long handoffTimeoutMillis;
+
+    /**
+     * Creates one executor per stage, sized from
+     * {@code pipeline.stage.<key>.threads} and
+     * {@code pipeline.stage.<key>.queue-capacity} (per workload class), and
+     * registers queue-depth and active-thread gauges plus run and queue-wait
+     * timers for each.
+     *
+     * @param env             the environment holding per-stage settings
+     * @param registry        the registry the gauges are published to
+     * @param queueFullPolicy the policy applied when a stage queue is full on
+     *                        entry to the pipeline
+     * @param handoffTimeoutMillis how long a pipeline thread waits for room
+     *                        in a full stage queue before failing the task
+     */
+    public StagedPipelineExecutor(Environment env, MeterRegistry registry,
+            @Value("${pipeline.queue-full-policy}") QueueFullPolicy queueFullPolicy,
+            @Value("${pipeline.handoff-timeout-ms}") long handoffTimeoutMillis) {
+        this.queueFullPolicy = queueFullPolicy;
+        this.handoffTimeoutMillis = handoffTimeoutMillis;
+
+        Map<WorkloadClass, Integer> weights = new EnumMap<>(WorkloadClass.class);
+        for (WorkloadClass workload : WorkloadClass.values()) {
+            int weight = env.getProperty("pipeline.workload." + workload.getKey() + ".weight", Integer.class,
+                    workload.getDefaultWeight());
+            weights.put(workload, Math.max(1, weight));
+        }
+
+        for (PipelineStage stage : PipelineStage.values()) {
+            String prefix = "pipeline.stage." + stage.getKey();
+            int threads = env.getProperty(prefix + ".threads", Integer.class, stage.getDefaultThreads());
+            int capacity = env.getProperty(prefix + ".queue-capacity", Integer.class, 64);
+
+            WorkloadQueue queue = new WorkloadQueue(capacity, weights);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    queue, threadFactory(stage));
+            executors.put(stage, executor);
+
+            Gauge.builder("pipeline.stage.queue.depth", executor, e -> e.getQueue().size())
+                    .tag("stage", stage.getKey())
+                    .description("Tasks waiting in the stage queue")
+                    .register(registry);
+            Gauge.builder("pipeline.stage.active", executor, ThreadPoolExecutor::getActiveCount)
+                    .tag("stage", stage.getKey())
+                    .description("Tasks currently running in the stage")
+                    .register(registry);
+            runTimers.put(stage, Timer.builder("pipeline.stage.duration")
+                    .tag("stage", stage.getKey())
+                    .description("Time a task spends running in the stage")
+                    .register(registry));
+            Map<WorkloadClass, Timer> stageWaitTimers = new EnumMap<>(WorkloadClass.class);
+            for (WorkloadClass workload : WorkloadClass.values()) {
+                Gauge.builder("pipeline.workload.queue.depth", queue, q -> q.size(workload))
+                        .tag("stage", stage.getKey())
+                        .tag("workload", workload.getKey())
+                        .description("Tasks of a workload class waiting in the stage queue")
+                        .register(registry);
+                stageWaitTimers.put(workload, Timer.builder("pipeline.stage.queue.wait")
+                        .tag("stage", stage.getKey())
+                        .tag("workload", workload.getKey())
+                        .description("Time a task spends queued before the stage runs it")
+                        .register(registry));
+            }
+            waitTimers.put(stage, stageWaitTimers);
+        }
+    }
+
+    /**
+     * Submits a task to the executor of the given stage.
+     *
+     * @param stage    the stage to run the task on
+     * @param workload the class of the work, deciding its queue
+     * @param task     the work to perform
+     * @param <T>      the result type
+     * @return a future completed with the task result or its failure
+     */
+    public <T> CompletableFuture<T> submit(PipelineStage stage, WorkloadClass workload, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Deadline deadline = Deadline.current();
+        long enqueuedAt = System.nanoTime();
+        ThreadPoolExecutor executor = executors.get(stage);
+        WorkloadQueue.Task queued = new WorkloadQueue.Task(workload, () -> {
+            long startedAt = System.nanoTime();
+            waitTimers.get(stage).get(workload).record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+            if (deadline != null && deadline.isAbandoned()) {
+                future.completeExceptionally(deadline.abandoned(stage.getKey()));
+                return;
+            }
+            // Kept attached while completing, so stages chained inline inherit it
+            try (Deadline.Scope scope = Deadline.attach(deadline)) {
+                run(stage, task, future, startedAt);
+            }
+        });
+        try {
+            executor.execute(queued);
+        } catch (RejectedExecutionException e) {
+            boolean accepted;
+            if (executor.isShutdown()) {
+                accepted = false;
+            } else if (PIPELINE_THREAD.get()) {
+                accepted = handOff(executor, queued);
+            } else if (queueFullPolicy == QueueFullPolicy.CALLER_RUNS) {
+                queued.run();
+                accepted = true;
+            } else {
+                accepted = false;
+            }
+            if (!accepted) {
+                future.completeExceptionally(new PipelineBusyException("Pipeline stage is saturated: " + stage.getKey()));
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Waits for room in the queue of a full stage. The stage's threads are
+     * all running by then, since a pool below its size starts a thread
+     * rather than reject, so queueing directly is enough to have it run.
+     */
+    private boolean handOff(ThreadPoolExecutor executor, WorkloadQueue.Task queued) {
+        try {
+            return executor.getQueue().offer(queued, handoffTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private <T> void run(PipelineStage stage, Callable<T> task, CompletableFuture<T> future, long startedAt) {
+        T result;
+        // Native memory the task does not hand on is released when it ends
+        try (NativeArena arena = NativeArena.open()) {
+            result = NativeArena.detach(task.call());
+        } catch (Throwable t) {
+            runTimers.get(stage).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            future.completeExceptionally(t);
+            return;
+        }
+        // Recorded before completing, since completion may run the next stage inline
+        runTimers.get(stage).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        future.complete(result);
+    }
+
+    /**
+     * Returns the number of tasks waiting in the queue of a stage.
+     *
+     * @param stage the stage
+     * @return the queue depth
+     */
+    public int getQueueDepth(PipelineStage stage) {
+        return executors.get(stage).getQueue().size();
+    }
+
+    /**
+     * Stops all stage executors when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    /**
+     * Creates a daemon thread owned by the pipeline. Tasks it submits to a
+     * full stage wait for room rather than run on it, and it keeps its own
+     * {@link BufferPool} cache.
+     *
+     * @param runnable the thread body
+     * @param name     the thread name
+     * @return the unstarted thread
+     */
+    static Thread pipelineThread(Runnable runnable, String name) {
+        Thread thread = new Thread(BufferPool.withThreadCache(() -> {
+            PIPELINE_THREAD.set(true);
+            runnable.run();
+        }), name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static ThreadFactory threadFactory(PipelineStage stage) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> pipelineThread(runnable, "pipeline-" + stage.getKey() + "-" + counter.incrementAndGet());
+    }
+}
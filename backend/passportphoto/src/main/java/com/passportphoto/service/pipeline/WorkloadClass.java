@@ -0,0 +1,50 @@
+/*
+ * WorkloadClass.java
+ *
+ * Enumerates the classes of work that share the pipeline and the
+ * scheduling weight of each.
+ *
+ */
+
+package com.passportphoto.service.pipeline;
+
+/**
+ * The {@code WorkloadClass} enum identifies who is waiting for a piece of
+ * pipeline work. The key is used for configuration properties and metric
+ * tags; the weight sets the share of a stage a class gets while both have
+ * work queued.
+ */
+public enum WorkloadClass {
+
+    /** Single images a user is waiting for in the editor */
+    INTERACTIVE("interactive", 4),
+
+    /** Batch uploads, ZIP archives and background jobs */
+    BATCH("batch", 1);
+
+    private final String key;
+    private final int defaultWeight;
+
+    WorkloadClass(String key, int defaultWeight) {
+        this.key = key;
+        this.defaultWeight = defaultWeight;
+    }
+
+    /**
+     * Returns the lowercase key used in properties and metric tags.
+     *
+     * @return the workload key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the scheduling weight used when none is configured.
+     *
+     * @return the default weight
+     */
+    public int getDefaultWeight() {
+        return defaultWeight;
+    }
+}
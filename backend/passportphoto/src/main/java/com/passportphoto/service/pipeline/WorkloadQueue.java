@@ -0,0 +1,299 @@
+/*
+ * WorkloadQueue.java
+ *
+ * Blocking task queue with one bounded queue per workload class, drained
+ * by weighted round robin.
+ *
+ */
+
+package com.passportphoto.service.pipeline;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code WorkloadQueue} is the work queue of a stage executor. Each
+ * {@link WorkloadClass} has its own queue of the stage's capacity, so a
+ * full batch queue never rejects interactive work. Threads take tasks by
+ * smooth weighted round robin over the classes with work queued: while
+ * both are backlogged, interactive work gets its weight's share of the
+ * stage and batch work still makes progress. Tasks that are not
+ * {@link Task}s count as interactive.
+ */
+final class WorkloadQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private final int capacity;
+    private final Map<WorkloadClass, ArrayDeque<Runnable>> queues = new EnumMap<>(WorkloadClass.class);
+    private final Map<WorkloadClass, Integer> weights;
+    private final Map<WorkloadClass, Integer> credits = new EnumMap<>(WorkloadClass.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int count;
+
+    /**
+     * Creates the queue.
+     *
+     * @param capacity maximum number of queued tasks per class
+     * @param weights  scheduling weight per class
+     */
+    WorkloadQueue(int capacity, Map<WorkloadClass, Integer> weights) {
+        this.capacity = capacity;
+        this.weights = new EnumMap<>(weights);
+        for (WorkloadClass workload : WorkloadClass.values()) {
+            queues.put(workload, new ArrayDeque<>());
+            credits.put(workload, 0);
+        }
+    }
+
+    /**
+     * Returns the number of queued tasks of a class.
+     *
+     * @param workload the workload class
+     * @return the queue depth of the class
+     */
+    int size(WorkloadClass workload) {
+        lock.lock();
+        try {
+            return queues.get(workload).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        ArrayDeque<Runnable> queue = queues.get(classOf(task));
+        lock.lock();
+        try {
+            if (queue.size() >= capacity) {
+                return false;
+            }
+            queue.addLast(task);
+            count++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+        ArrayDeque<Runnable> queue = queues.get(classOf(task));
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.size() >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            queue.addLast(task);
+            count++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable task) throws InterruptedException {
+        ArrayDeque<Runnable> queue = queues.get(classOf(task));
+        lock.lockInterruptibly();
+        try {
+            while (queue.size() >= capacity) {
+                notFull.await();
+            }
+            queue.addLast(task);
+            count++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            for (ArrayDeque<Runnable> queue : queues.values()) {
+                if (!queue.isEmpty()) {
+                    return queue.peekFirst();
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object task) {
+        lock.lock();
+        try {
+            for (ArrayDeque<Runnable> queue : queues.values()) {
+                if (queue.remove(task)) {
+                    count--;
+                    notFull.signalAll();
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity * queues.size() - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> target, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (count > 0 && drained < maxElements) {
+                target.add(next());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queued tasks.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            List<Runnable> snapshot = new ArrayList<>(count);
+            queues.values().forEach(snapshot::addAll);
+            return snapshot.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the next task by smooth weighted round robin: every class with
+     * work queued earns its weight, the richest class is served and pays the
+     * total earned. Must be called with the lock held and a task queued.
+     */
+    private Runnable next() {
+        WorkloadClass chosen = null;
+        int total = 0;
+        for (WorkloadClass workload : WorkloadClass.values()) {
+            if (queues.get(workload).isEmpty()) {
+                continue;
+            }
+            int weight = weights.get(workload);
+            total += weight;
+            credits.merge(workload, weight, Integer::sum);
+            if (chosen == null || credits.get(workload) > credits.get(chosen)) {
+                chosen = workload;
+            }
+        }
+        credits.merge(chosen, -total, Integer::sum);
+        if (total == weights.get(chosen)) {
+            // Alone in the queue: no debt is carried into the next contention
+            credits.put(chosen, 0);
+        }
+        count--;
+        notFull.signalAll();
+        return queues.get(chosen).pollFirst();
+    }
+
+    private static WorkloadClass classOf(Runnable task) {
+        return task instanceof Task classified ? classified.workload() : WorkloadClass.INTERACTIVE;
+    }
+
+    /**
+     * Simple structure to hold a stage task together with its workload class.
+     */
+    record Task(WorkloadClass workload, Runnable body) implements Runnable {
+
+        @Override
+        public void run() {
+            body.run();
+        }
+    }
+}
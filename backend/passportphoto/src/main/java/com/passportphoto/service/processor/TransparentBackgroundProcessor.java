@@ -9,7 +9,9 @@
 package com.passportphoto.service.processor;
 
 import org.opencv.core.*;
+import com.passportphoto.util.BufferPool;
 import com.passportphoto.util.CanvasUtil;
+import com.passportphoto.util.NativeArena;
 
 /**
  * The {@code TransparentBackgroundProcessor} class centers an RGBA image on a transparent
@@ -30,7 +32,7 @@ public class TransparentBackgroundProcessor implements BackgroundProcessor {
     public Mat process(Mat rgbaImage, int targetWidth, int targetHeight) {
         // 1) If already the same size, return image
         if (rgbaImage.width() == targetWidth && rgbaImage.height() == targetHeight) {
-            return rgbaImage.clone();
+            return NativeArena.track(rgbaImage.clone());
         }
 
         // 2) Compute offsets to center the image
@@ -39,12 +41,14 @@ public class TransparentBackgroundProcessor implements BackgroundProcessor {
         int yOffset = (int) offset.y;
 
         // 3) Create new transparent canvas
-        Mat extended = new Mat(targetHeight, targetWidth, CvType.CV_8UC4, new Scalar(0,0,0,0));
+        Mat extended = BufferPool.borrowMat(targetHeight, targetWidth, CvType.CV_8UC4);
+        extended.setTo(new Scalar(0,0,0,0));
 
         // 4) Define region of interest and copy the resized image to center
         Rect roi = new Rect(xOffset, yOffset, rgbaImage.width(), rgbaImage.height());
         Mat center = extended.submat(roi);
         rgbaImage.copyTo(center);
+        center.release();
 
         return extended;
     }
@@ -10,9 +10,15 @@
 
 package com.passportphoto.service.processor;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
+import com.passportphoto.util.BorderStats;
+import com.passportphoto.util.BufferPool;
 import com.passportphoto.util.CanvasUtil;
+import com.passportphoto.util.NativeArena;
 
 /**
  * The {@code UniformBackgroundProcessor} class extends a BGR image to fit a target size.
@@ -23,6 +29,8 @@ public class UniformBackgroundProcessor implements BackgroundProcessor {
     
     private static final int BORDER_SIZE = 10;
     private static final double STD_DEV_THRESHOLD = 15.0;
+    private static final Size BLUR_KERNEL = new Size(9, 9);
+    private static final int FEATHER_SIZE = 4;
 
     /**
      * Processes the given image by either extending it with a detected uniform background color
@@ -36,13 +44,13 @@ public class UniformBackgroundProcessor implements BackgroundProcessor {
     @Override
     public Mat process(Mat bgrImage, int targetWidth, int targetHeight) {
         if (bgrImage.width() == targetWidth && bgrImage.height() == targetHeight) {
-            return bgrImage.clone();
+            return NativeArena.track(bgrImage.clone());
         }
 
-        BorderStats stats = computeBorderStats(bgrImage, BORDER_SIZE, STD_DEV_THRESHOLD);
+        BackgroundColor background = computeBorderStats(bgrImage, BORDER_SIZE, STD_DEV_THRESHOLD);
 
-        if (stats.isUniform) {
-            return extendBackgroundUniform(bgrImage, targetWidth, targetHeight, stats.meanColor);
+        if (background.isUniform()) {
+            return extendBackgroundUniform(bgrImage, targetWidth, targetHeight, background.meanColor());
         } else {
             return extendBackgroundReplicate(bgrImage, targetWidth, targetHeight);
         }
@@ -53,19 +61,20 @@ public class UniformBackgroundProcessor implements BackgroundProcessor {
      */
     private Mat extendBackgroundUniform(Mat image, int targetWidth, int targetHeight, Scalar bgColor) {
         if (image.width() == targetWidth && image.height() == targetHeight) {
-            return image.clone();
+            return NativeArena.track(image.clone());
         }
 
         Point offset = CanvasUtil.calculateCenterOffset(targetWidth, targetHeight, image.width(), image.height());
         int xOffset = (int) offset.x;
         int yOffset = (int) offset.y;
 
-        Mat extendedMat = new Mat(targetHeight, targetWidth, image.type());
+        Mat extendedMat = BufferPool.borrowMat(targetHeight, targetWidth, image.type());
         extendedMat.setTo(bgColor);
 
         Rect roi = new Rect(xOffset, yOffset, image.width(), image.height());
         Mat centerRoi = extendedMat.submat(roi);
         image.copyTo(centerRoi);
+        centerRoi.release();
 
         return extendedMat;
     }
@@ -77,140 +86,89 @@ public class UniformBackgroundProcessor implements BackgroundProcessor {
         Point offset = CanvasUtil.calculateCenterOffset(targetWidth, targetHeight, image.width(), image.height());
         int xOffset = (int) offset.x;
         int yOffset = (int) offset.y;
-    
-        Mat extendedMat = new Mat(targetHeight, targetWidth, image.type());
-        extendedMat.setTo(new Scalar(0,0,0));
-    
-        Rect roi = new Rect(xOffset, yOffset, image.width(), image.height());
-        Mat centerRoi = extendedMat.submat(roi);
-        image.copyTo(centerRoi);
-    
-        Mat justCenter = new Mat();
-        extendedMat.submat(roi).copyTo(justCenter);
-    
+
         int top = yOffset;
         int bottom = targetHeight - image.height() - yOffset;
         int left = xOffset;
         int right = targetWidth - image.width() - xOffset;
-    
-        Mat borderReplicated = new Mat();
-        Core.copyMakeBorder(justCenter, borderReplicated, top, bottom, left, right, Core.BORDER_REPLICATE);
-    
-        Rect innerROI = new Rect(xOffset, yOffset, image.width(), image.height());
-        Mat blurred = applySoftBlurToBorder(borderReplicated, innerROI);
 
-        justCenter.release();
-        return blurred;
+        Mat borderReplicated = BufferPool.borrowMat(targetHeight, targetWidth, image.type());
+        Core.copyMakeBorder(image, borderReplicated, top, bottom, left, right, Core.BORDER_REPLICATE);
+
+        Rect innerROI = new Rect(xOffset, yOffset, image.width(), image.height());
+        return applySoftBlurToBorder(borderReplicated, innerROI);
     }
-    
+
     /**
-     * Applies a soft blur to the border region of the extended image.
+     * Applies a soft blur to the border region of the extended image, and to
+     * a feather band of the image along each padded edge to hide the seam.
+     * Only these strips are blurred, each from the unblurred frame and
+     * reading the pixels around it, so the padding comes out as if the
+     * whole frame had been blurred; the results are then written in place.
      */
     private Mat applySoftBlurToBorder(Mat extendedMat, Rect roi) {
-        Mat blurred = new Mat();
-        Imgproc.GaussianBlur(extendedMat, blurred, new Size(9, 9), 0); 
-    
-        Mat mask = Mat.zeros(extendedMat.size(), CvType.CV_8UC1);
-        mask.setTo(new Scalar(255));
-        Imgproc.rectangle(mask, roi, new Scalar(0), -1);
-    
-        blurred.copyTo(extendedMat, mask);
-    
-        blurred.release();
-        mask.release();
+        List<Rect> strips = paddingStrips(extendedMat.cols(), extendedMat.rows(), roi);
+        List<Mat> blurredStrips = new ArrayList<>(strips.size());
+        for (Rect strip : strips) {
+            Mat region = extendedMat.submat(strip);
+            Mat blurred = BufferPool.borrowMat(strip.height, strip.width, extendedMat.type());
+            Imgproc.GaussianBlur(region, blurred, BLUR_KERNEL, 0);
+            region.release();
+            blurredStrips.add(blurred);
+        }
+
+        for (int i = 0; i < strips.size(); i++) {
+            Mat region = extendedMat.submat(strips.get(i));
+            blurredStrips.get(i).copyTo(region);
+            region.release();
+            BufferPool.recycle(blurredStrips.get(i));
+        }
         return extendedMat;
     }
-    
+
     /**
-     * Detects whether the image has a uniform background based on pixel statistics
-     * from the image's perimeter band.
+     * Returns the padding strips on each side of the image that has padding,
+     * each widened into the image by the feather band. The top and bottom
+     * strips span the full width, the left and right strips the image height.
      */
-    private BorderStats computeBorderStats(Mat bgrImage, int borderSize, double stdDevThreshold) {
-        BorderStats result = new BorderStats();
-        Mat borderRegion = extractBorderRegion(bgrImage, borderSize);
-
-        if (borderRegion.empty()) {
-            result.isUniform = true;
-            result.meanColor = new Scalar(128,128,128); // fallback gray
-            return result;
+    private static List<Rect> paddingStrips(int width, int height, Rect roi) {
+        int feather = Math.min(FEATHER_SIZE, Math.min(roi.width, roi.height) / 2);
+        List<Rect> strips = new ArrayList<>(4);
+        if (roi.y > 0) {
+            strips.add(new Rect(0, 0, width, roi.y + feather));
         }
-
-        MatOfDouble mean = new MatOfDouble();
-        MatOfDouble stddev = new MatOfDouble();
-        Core.meanStdDev(borderRegion, mean, stddev);
-    
-        double stdB = stddev.get(0,0)[0];
-        double stdG = stddev.get(1,0)[0];
-        double stdR = stddev.get(2,0)[0];
-    
-        result.isUniform = (stdB < stdDevThreshold && stdG < stdDevThreshold && stdR < stdDevThreshold);
-    
-        double meanB = mean.get(0,0)[0];
-        double meanG = mean.get(1,0)[0];
-        double meanR = mean.get(2,0)[0];
-        result.meanColor = new Scalar(meanB, meanG, meanR);
-    
-        return result;
+        int bottom = roi.y + roi.height;
+        if (bottom < height) {
+            strips.add(new Rect(0, bottom - feather, width, height - bottom + feather));
+        }
+        if (roi.x > 0) {
+            strips.add(new Rect(0, roi.y, roi.x + feather, roi.height));
+        }
+        int right = roi.x + roi.width;
+        if (right < width) {
+            strips.add(new Rect(right - feather, roi.y, width - right + feather, roi.height));
+        }
+        return strips;
     }
     
     /**
-     * Extracts a single-column Mat representing the border pixels from all four edges.
+     * Detects whether the image has a uniform background based on pixel statistics
+     * from the image's perimeter band.
      */
-    private Mat extractBorderRegion(Mat bgrImage, int borderSize) {
-        int w = bgrImage.cols();
-        int h = bgrImage.rows();
-        if (w < borderSize*2 || h < borderSize*2) {
-            return new Mat(); // if image is too small
+    private BackgroundColor computeBorderStats(Mat bgrImage, int borderSize, double stdDevThreshold) {
+        BorderStats stats = BorderStats.of(bgrImage, borderSize);
+        if (stats == null) {
+            return new BackgroundColor(true, new Scalar(128,128,128)); // fallback gray
         }
 
-        Mat top    = bgrImage.submat(0, borderSize, 0, w); 
-        Mat bottom = bgrImage.submat(h-borderSize, h, 0, w);
-        Mat left   = bgrImage.submat(borderSize, h-borderSize, 0, borderSize);
-        Mat right  = bgrImage.submat(borderSize, h-borderSize, w-borderSize, w);
-
-        int topPixels = top.rows() * top.cols();
-        int bottomPixels = bottom.rows() * bottom.cols();
-        int leftPixels = left.rows() * left.cols();
-        int rightPixels = right.rows() * right.cols();
-        int totalPixels = topPixels + bottomPixels + leftPixels + rightPixels;
-
-        Mat borderRegion = new Mat(totalPixels, 1, bgrImage.type());
-
-        int currentIndex = 0;
-        copySubmatToColumn(top, borderRegion, currentIndex);
-        currentIndex += topPixels;
-        copySubmatToColumn(bottom, borderRegion, currentIndex);
-        currentIndex += bottomPixels;
-        copySubmatToColumn(left, borderRegion, currentIndex);
-        currentIndex += leftPixels;
-        copySubmatToColumn(right, borderRegion, currentIndex);
-
-        return borderRegion;
-    }
-
-    /**
-     * Copies pixels from a submatrix into a column Mat at the given start index.
-     */
-    private void copySubmatToColumn(Mat region, Mat dest, int startIndex) {
-        int rows = region.rows();
-        int cols = region.cols();
-        byte[] pixel = new byte[(int) region.elemSize()]; 
-    
-        int index = startIndex; 
-        for (int y = 0; y < rows; y++) {
-            for (int x = 0; x < cols; x++) {
-                region.get(y, x, pixel);
-                dest.put(index, 0, pixel);
-                index++;
-            }
-        }
+        Scalar mean = stats.getMean();
+        return new BackgroundColor(stats.isUniform(stdDevThreshold, 3),
+                new Scalar(mean.val[0], mean.val[1], mean.val[2]));
     }
 
     /**
      * Simple structure to hold background statistics.
      */
-    static class BorderStats {
-        boolean isUniform;
-        Scalar meanColor;
+    private record BackgroundColor(boolean isUniform, Scalar meanColor) {
     }
 }
@@ -0,0 +1,244 @@
+/*
+ * PassportSpecRegistry.java
+ *
+ * This component loads the country and template photo specifications once
+ * and serves lookups and the serialized metadata lists from memory.
+ *
+ */
+
+package com.passportphoto.service.spec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.passportphoto.util.HashUtil;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The {@code PassportSpecRegistry} holds an immutable index of the photo
+ * sizes defined in {@code countries.json} and {@code templates.json}, along
+ * with the country and template lists already serialized to JSON and tagged
+ * with a strong entity tag, so metadata requests do no parsing or
+ * serialization.
+ *
+ * <p>The specs are read from {@code spec.dir} when it is set and contains the
+ * file, and from the bundled {@code dimensions/} resources otherwise. External
+ * files are polled every {@code spec.reload-interval-ms}; a changed file is
+ * parsed and swapped in as a whole, and a file that fails to parse leaves the
+ * previous specs in place.
+ */
+@Component
+public class PassportSpecRegistry {
+
+    private static final String COUNTRIES_FILE = "countries.json";
+    private static final String TEMPLATES_FILE = "templates.json";
+
+    /** Default fallback dimensions if an unknown country or template is given */
+    private static final int[] DEFAULT_SIZE = {413, 531};
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Path specDir;
+    private final ScheduledExecutorService reloader;
+
+    private volatile SpecFile countries;
+    private volatile SpecFile templates;
+
+    /**
+     * Loads the specs and starts polling external spec files.
+     *
+     * @param specDir          directory of external spec files, or empty to use the bundled ones
+     * @param reloadIntervalMs how often external files are checked for changes
+     * @throws IOException if the specs cannot be loaded
+     */
+    public PassportSpecRegistry(@Value("${spec.dir:}") String specDir,
+            @Value("${spec.reload-interval-ms}") long reloadIntervalMs) throws IOException {
+        this.specDir = specDir.isBlank() ? null : Path.of(specDir);
+        this.countries = load(COUNTRIES_FILE, this::countryList);
+        this.templates = load(TEMPLATES_FILE, this::templateList);
+
+        if (this.specDir == null || reloadIntervalMs <= 0) {
+            this.reloader = null;
+            return;
+        }
+        this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spec-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloader.scheduleWithFixedDelay(this::reloadIfChanged, reloadIntervalMs, reloadIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns target dimensions based on the provided country code, template name,
+     * or custom width/height fallback.
+     *
+     * @param country      the country code (optional)
+     * @param template     the template label (optional)
+     * @param customWidth  custom width (used if no country/template is given)
+     * @param customHeight custom height (used if no country/template is given)
+     * @return an array of two integers: [width, height]
+     */
+    public int[] getTargetDimensions(String country, String template, Integer customWidth, Integer customHeight) {
+        if (country != null && !country.isEmpty()) {
+            return countries.dimensions().getOrDefault(country.toLowerCase(), DEFAULT_SIZE).clone();
+        }
+        if (template != null && !template.isEmpty()) {
+            return templates.dimensions().getOrDefault(template, DEFAULT_SIZE).clone();
+        }
+        return new int[]{customWidth, customHeight};
+    }
+
+    /**
+     * Returns the serialized country list with its entity tag.
+     *
+     * @return the country list
+     */
+    public Metadata getCountryList() {
+        return countries.list();
+    }
+
+    /**
+     * Returns the serialized template list with its entity tag.
+     *
+     * @return the template list
+     */
+    public Metadata getTemplateList() {
+        return templates.list();
+    }
+
+    /**
+     * Reloads each external spec file whose modification time or size changed.
+     */
+    private void reloadIfChanged() {
+        try {
+            if (countries.changed(specDir.resolve(COUNTRIES_FILE))) {
+                countries = load(COUNTRIES_FILE, this::countryList);
+            }
+            if (templates.changed(specDir.resolve(TEMPLATES_FILE))) {
+                templates = load(TEMPLATES_FILE, this::templateList);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Keep serving the previous specs until the file is valid again
+        }
+    }
+
+    /**
+     * Parses one spec file and precomputes its metadata list.
+     */
+    private SpecFile load(String fileName, Function<Map<String, int[]>, List<Map<String, String>>> listBuilder) throws IOException {
+        Path external = specDir == null ? null : specDir.resolve(fileName);
+        boolean useExternal = external != null && Files.isRegularFile(external);
+
+        Map<String, int[]> dimensions;
+        long lastModified = -1;
+        long size = -1;
+        try (InputStream in = useExternal
+                ? Files.newInputStream(external)
+                : new ClassPathResource("dimensions/" + fileName).getInputStream()) {
+            dimensions = mapper.readValue(in, new TypeReference<LinkedHashMap<String, int[]>>() {});
+        }
+        if (useExternal) {
+            lastModified = Files.getLastModifiedTime(external).toMillis();
+            size = Files.size(external);
+        }
+
+        for (Map.Entry<String, int[]> entry : dimensions.entrySet()) {
+            if (entry.getValue() == null || entry.getValue().length != 2) {
+                throw new IOException("Invalid dimensions for " + entry.getKey() + " in " + fileName);
+            }
+        }
+
+        byte[] json = mapper.writeValueAsBytes(listBuilder.apply(dimensions));
+        Metadata list = new Metadata(json, "\"" + HashUtil.sha256Hex(json) + "\"");
+        return new SpecFile(Collections.unmodifiableMap(dimensions), list, lastModified, size);
+    }
+
+    private List<Map<String, String>> countryList(Map<String, int[]> dimensions) {
+        List<Map<String, String>> countryList = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : dimensions.entrySet()) {
+            Map<String, String> item = new LinkedHashMap<>();
+            item.put("code", entry.getKey());
+            item.put("name", getCountryNameFromCode(entry.getKey()));
+            item.put("dimensions", entry.getValue()[0] + "x" + entry.getValue()[1]);
+            countryList.add(item);
+        }
+        return countryList;
+    }
+
+    private List<Map<String, String>> templateList(Map<String, int[]> dimensions) {
+        List<Map<String, String>> templateList = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : dimensions.entrySet()) {
+            Map<String, String> item = new LinkedHashMap<>();
+            item.put("label", entry.getKey());
+            item.put("size", entry.getValue()[0] + "x" + entry.getValue()[1]);
+            templateList.add(item);
+        }
+        return templateList;
+    }
+
+    /**
+     * Maps a country code to a human-readable name.
+     *
+     * @param code the 3-letter country code
+     * @return the full country name
+     */
+    private static String getCountryNameFromCode(String code) {
+        return switch (code.toLowerCase()) {
+            case "jpn" -> "Japan";
+            case "sgp" -> "Singapore";
+            case "chn" -> "China";
+            case "mas" -> "Malaysia";
+            default -> code.toUpperCase();
+        };
+    }
+
+    /**
+     * Stops polling when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    /**
+     * Simple structure to hold a serialized metadata list and its entity tag.
+     */
+    public record Metadata(byte[] json, String etag) {
+    }
+
+    /**
+     * Simple structure to hold one loaded spec file: its dimensions index,
+     * its metadata list, and the modification time and size of the external
+     * file it came from (-1 if bundled).
+     */
+    private record SpecFile(Map<String, int[]> dimensions, Metadata list, long lastModified, long size) {
+
+        boolean changed(Path file) throws IOException {
+            if (!Files.isRegularFile(file)) {
+                return lastModified != -1;
+            }
+            return Files.getLastModifiedTime(file).toMillis() != lastModified || Files.size(file) != size;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * BufferMultipartFile.java
+ *
+ * This class exposes an upload held in an image buffer as a MultipartFile.
+ *
+ */
+
+package com.passportphoto.service.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * The {@code BufferMultipartFile} class keeps an upload alive beyond its
+ * request in an {@link ImageBuffer}, which may be memory-mapped. Reading it
+ * through {@link #getInputStream()} does not copy it onto the heap.
+ */
+public class BufferMultipartFile implements MultipartFile {
+
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final ImageBuffer buffer;
+
+    /**
+     * Constructs a buffered upload.
+     *
+     * @param name             the form field name
+     * @param originalFilename the file name sent with the upload
+     * @param contentType      the content type sent with the upload
+     * @param buffer           the buffer holding the upload bytes
+     */
+    public BufferMultipartFile(String name, String originalFilename, String contentType, ImageBuffer buffer) {
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.buffer = buffer;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return buffer.size() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return buffer.size();
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return buffer.openStream();
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        try (OutputStream out = Files.newOutputStream(dest.toPath())) {
+            buffer.openStream().transferTo(out);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * ImageBuffer.java
+ *
+ * This class holds a raster or encoded image either on the heap or in a
+ * memory-mapped temp file.
+ *
+ */
+
+package com.passportphoto.service.store;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * The {@code ImageBuffer} class is a fixed-size block of bytes handed out by
+ * {@link ImageBufferStore}. Every accessor returns an independent view of
+ * the same memory, so stages can read a buffer concurrently and without
+ * copying it. Mapped buffers are released when they become unreachable.
+ */
+public final class ImageBuffer {
+
+    private final ByteBuffer buffer;
+    private final boolean mapped;
+
+    ImageBuffer(ByteBuffer buffer, boolean mapped) {
+        this.buffer = buffer;
+        this.mapped = mapped;
+    }
+
+    /**
+     * Returns the size of the buffer in bytes.
+     *
+     * @return the size
+     */
+    public int size() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Returns whether the buffer lives in a memory-mapped file.
+     *
+     * @return true if off-heap
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Returns a read-only view positioned at the start of the buffer.
+     *
+     * @return the read-only view
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return buffer.asReadOnlyBuffer().clear();
+    }
+
+    /**
+     * Returns a writable view positioned at the start of the buffer.
+     *
+     * @return the writable view
+     */
+    public ByteBuffer asWritableBuffer() {
+        return buffer.duplicate().clear();
+    }
+
+    /**
+     * Returns a float view in native byte order, as expected by ONNX Runtime
+     * for direct tensors.
+     *
+     * @return the float view
+     */
+    public FloatBuffer asFloatBuffer() {
+        return asWritableBuffer().order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * Opens a stream over the buffer contents.
+     *
+     * @return a new input stream
+     */
+    public InputStream openStream() {
+        ByteBuffer view = asReadOnlyBuffer();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return view.hasRemaining() ? view.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!view.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(len, view.remaining());
+                view.get(b, off, count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return view.remaining();
+            }
+        };
+    }
+
+    /**
+     * Copies the buffer contents onto the heap.
+     *
+     * @return the contents as a byte array
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[size()];
+        asReadOnlyBuffer().get(bytes);
+        return bytes;
+    }
+}
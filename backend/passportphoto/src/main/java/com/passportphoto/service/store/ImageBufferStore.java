@@ -0,0 +1,161 @@
+/*
+ * ImageBufferStore.java
+ *
+ * This component allocates image buffers on the heap when they are small and
+ * in memory-mapped temp files when they are large.
+ *
+ */
+
+package com.passportphoto.service.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The {@code ImageBufferStore} keeps large intermediate data such as model
+ * tensors, buffered uploads and encoded results out of the Java heap. A
+ * buffer of at least {@code buffer.store.offheap-threshold-bytes} is mapped
+ * from a temp file in {@code buffer.store.dir} that is deleted as soon as it
+ * is mapped, so the kernel can page it out under memory pressure and nothing
+ * is left behind on disk. Smaller buffers stay on the heap.
+ *
+ * <p>Model tensors use their own, much higher threshold,
+ * {@code buffer.store.tensor-offheap-threshold-bytes}. A tensor lives only
+ * for one inference, so mapping and unmapping a file for it costs more than
+ * it saves, and the input of every interactive request (3 x w x h floats,
+ * 17 MB for a 1200 x 1200 photo) would otherwise cross the byte threshold.
+ */
+@Component
+public class ImageBufferStore {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final long offHeapThreshold;
+    private final long tensorOffHeapThreshold;
+    private final Path dir;
+    private final AtomicLong mappedBytes = new AtomicLong();
+
+    /**
+     * Constructs the store from configuration.
+     *
+     * @param offHeapThreshold       size from which buffers are memory-mapped
+     * @param tensorOffHeapThreshold size from which float buffers are memory-mapped
+     * @param dir                    directory for mapped files, or empty for the system temp directory
+     * @param registry               the registry the mapped-bytes gauge is published to
+     * @throws IOException if the directory cannot be created
+     */
+    public ImageBufferStore(@Value("${buffer.store.offheap-threshold-bytes}") long offHeapThreshold,
+            @Value("${buffer.store.tensor-offheap-threshold-bytes}") long tensorOffHeapThreshold,
+            @Value("${buffer.store.dir:}") String dir,
+            MeterRegistry registry) throws IOException {
+        this.offHeapThreshold = offHeapThreshold;
+        this.tensorOffHeapThreshold = tensorOffHeapThreshold;
+        this.dir = dir.isBlank() ? null : Files.createDirectories(Path.of(dir));
+
+        Gauge.builder("buffer.store.mapped.bytes", mappedBytes, AtomicLong::get)
+                .description("Bytes of image buffers held in memory-mapped files")
+                .register(registry);
+    }
+
+    /**
+     * Allocates a zero-filled buffer.
+     *
+     * @param size the size in bytes
+     * @return the buffer, memory-mapped if it reaches the threshold
+     * @throws IOException if the mapped file cannot be created
+     */
+    public ImageBuffer allocate(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Image buffer too large: " + size + " bytes");
+        }
+        if (size == 0 || size < offHeapThreshold) {
+            return new ImageBuffer(ByteBuffer.allocate((int) size), false);
+        }
+        return map(size);
+    }
+
+    private ImageBuffer map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Image buffer too large: " + size + " bytes");
+        }
+        Path file = dir == null ? Files.createTempFile("imagebuffer", ".bin")
+                : Files.createTempFile(dir, "imagebuffer", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+            // The mapping stays valid after the channel is closed and the file unlinked
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mappedBytes.addAndGet(size);
+            // Every view and duplicate of a direct buffer references it, so it outlives all of them
+            CLEANER.register(mapping, () -> mappedBytes.addAndGet(-size));
+            return new ImageBuffer(mapping, true);
+        }
+    }
+
+    /**
+     * Allocates a float buffer, e.g. for a model tensor. Mapped float buffers
+     * are direct and in native order, so ONNX Runtime uses them without a copy.
+     *
+     * @param count the number of floats
+     * @return the float buffer, positioned at zero, memory-mapped if it
+     *         reaches the tensor threshold
+     * @throws IOException if the mapped file cannot be created
+     */
+    public FloatBuffer allocateFloats(int count) throws IOException {
+        long size = (long) count * Float.BYTES;
+        if (size < tensorOffHeapThreshold) {
+            return FloatBuffer.wrap(new float[count]);
+        }
+        return map(size).asFloatBuffer();
+    }
+
+    /**
+     * Copies bytes into a new buffer.
+     *
+     * @param data the bytes to copy
+     * @return the filled buffer
+     * @throws IOException if the mapped file cannot be created
+     */
+    public ImageBuffer copyOf(byte[] data) throws IOException {
+        ImageBuffer buffer = allocate(data.length);
+        buffer.asWritableBuffer().put(data);
+        return buffer;
+    }
+
+    /**
+     * Streams a known number of bytes into a new buffer, without staging
+     * them on the heap.
+     *
+     * @param in   the stream to read
+     * @param size the number of bytes to read
+     * @return the filled buffer
+     * @throws IOException if reading fails or the stream ends early
+     */
+    public ImageBuffer copyOf(InputStream in, long size) throws IOException {
+        ImageBuffer buffer = allocate(size);
+        ByteBuffer target = buffer.asWritableBuffer();
+        ReadableByteChannel channel = Channels.newChannel(in);
+        while (target.hasRemaining()) {
+            if (channel.read(target) < 0) {
+                throw new IOException("Stream ended after " + target.position() + " of " + size + " bytes");
+            }
+        }
+        return buffer;
+    }
+}
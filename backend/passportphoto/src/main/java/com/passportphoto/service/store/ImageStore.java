@@ -0,0 +1,145 @@
+/*
+ * ImageStore.java
+ *
+ * This component keeps uploaded images server-side under a content hash so
+ * that follow-up operations can reference them by ID.
+ *
+ */
+
+package com.passportphoto.service.store;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.passportphoto.exceptions.ImageNotFoundException;
+import com.passportphoto.service.pipeline.ComputeExecutor;
+import com.passportphoto.util.BoundedTtlStore;
+import com.passportphoto.util.HashUtil;
+import com.passportphoto.util.StoredMultipartFile;
+import com.passportphoto.util.ValidationUtil;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The {@code ImageStore} holds each upload once, keyed by the SHA-256 of its
+ * bytes, together with its decoded pixels. Entries are bounded by total
+ * weight and evicted least recently used first or after
+ * {@code image.store.ttl-minutes} without access. Uploading the same image
+ * again returns the same ID without decoding it.
+ */
+@Component
+public class ImageStore {
+
+    private final BoundedTtlStore<String, StoredMultipartFile> images;
+    private final ComputeExecutor compute;
+
+    /**
+     * Constructs the store from configuration.
+     *
+     * @param maxBytes   maximum weight of stored images, encoded plus decoded
+     * @param ttlMinutes how long an image stays available after its last use
+     * @param compute    runs decoding off virtual request threads
+     * @param registry   the registry the store gauges are published to
+     */
+    public ImageStore(@Value("${image.store.max-bytes}") long maxBytes,
+            @Value("${image.store.ttl-minutes}") long ttlMinutes,
+            ComputeExecutor compute, MeterRegistry registry) {
+        this.compute = compute;
+        this.images = new BoundedTtlStore<>(maxBytes, Duration.ofMinutes(ttlMinutes), StoredMultipartFile::getWeight);
+
+        Gauge.builder("image.store.bytes", images, BoundedTtlStore::weight)
+                .description("Approximate size of stored uploads")
+                .register(registry);
+        Gauge.builder("image.store.entries", images, BoundedTtlStore::size)
+                .description("Number of stored uploads")
+                .register(registry);
+    }
+
+    /**
+     * Stores an upload, decoding it once.
+     *
+     * @param file the uploaded image
+     * @return the stored upload, whose ID is the hash of its bytes
+     * @throws Exception if the file is empty or not a decodable image
+     */
+    public StoredMultipartFile put(MultipartFile file) throws Exception {
+        ValidationUtil.validateMultipartFile(file);
+        byte[] bytes = file.getBytes();
+        String id = HashUtil.sha256Hex(bytes);
+
+        StoredMultipartFile existing = images.get(id);
+        if (existing != null) {
+            return existing;
+        }
+
+        BufferedImage decoded = compute.call(() -> ImageIO.read(file.getInputStream()));
+        ValidationUtil.validateBufferedImage(decoded, 0, 0);
+        return put(file.getOriginalFilename(), file.getContentType(), bytes, decoded);
+    }
+
+    /**
+     * Stores an image derived on the server, such as a preview level, whose
+     * decoded pixels are already at hand.
+     *
+     * @param originalFilename the file name to report
+     * @param contentType      the content type of the encoded bytes
+     * @param bytes            the encoded image
+     * @param decoded          the decoded pixels
+     * @return the stored image, whose ID is the hash of its bytes
+     */
+    public StoredMultipartFile put(String originalFilename, String contentType, byte[] bytes, BufferedImage decoded) {
+        String id = HashUtil.sha256Hex(bytes);
+        StoredMultipartFile stored = new StoredMultipartFile(id, originalFilename, contentType, bytes, decoded);
+        images.put(id, stored);
+        return stored;
+    }
+
+    /**
+     * Checks whether an image is still stored.
+     *
+     * @param id the image ID
+     * @return true if the image can be fetched
+     */
+    public boolean contains(String id) {
+        return images.get(id) != null;
+    }
+
+    /**
+     * Returns a stored upload.
+     *
+     * @param id the image ID returned on upload
+     * @return the stored upload
+     * @throws ImageNotFoundException if the ID is unknown or has been evicted
+     */
+    public StoredMultipartFile get(String id) {
+        StoredMultipartFile stored = images.get(id);
+        if (stored == null) {
+            throw new ImageNotFoundException("Image not found or expired: " + id);
+        }
+        return stored;
+    }
+
+    /**
+     * Picks the image an operation should work on: the uploaded file when
+     * one was sent, otherwise the stored image with the given ID.
+     *
+     * @param file    the uploaded file (optional)
+     * @param imageId the ID of a stored image (optional)
+     * @return the file to process, or the (possibly null) upload if neither was given
+     * @throws ImageNotFoundException if only an unknown ID was given
+     */
+    public MultipartFile resolve(MultipartFile file, String imageId) {
+        if ((file != null && !file.isEmpty()) || imageId == null || imageId.isBlank()) {
+            return file;
+        }
+        return get(imageId);
+    }
+}
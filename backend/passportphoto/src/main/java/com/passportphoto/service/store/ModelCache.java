@@ -0,0 +1,150 @@
+/*
+ * ModelCache.java
+ *
+ * This component extracts model files from the classpath once into a
+ * content-addressed cache directory that survives restarts.
+ *
+ */
+
+package com.passportphoto.service.store;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import com.passportphoto.util.HashUtil;
+
+/**
+ * The {@code ModelCache} gives native libraries a file path for a model
+ * packaged in the jar. A model is copied to {@code <sha256>.<ext>} in
+ * {@code model.cache.dir} the first time it is seen; a small reference file
+ * keyed by the jar entry's name, size and timestamp maps later boots to the
+ * extracted copy without reading the jar entry again. Models on an exploded
+ * classpath are used in place.
+ *
+ * <p>Derived files, such as an optimized ONNX graph, are stored next to the
+ * models under a key of the source file and a variant. All files are written
+ * to a temp file and moved into place, so concurrent boots sharing the
+ * directory never see a partial file.
+ */
+@Component
+public class ModelCache {
+
+    private final Path dir;
+
+    /**
+     * Constructs the cache from configuration.
+     *
+     * @param dir the cache directory, or empty for {@code passportphoto-models}
+     *            in the system temp directory
+     * @throws IOException if the directory cannot be created
+     */
+    public ModelCache(@Value("${model.cache.dir:}") String dir) throws IOException {
+        Path path = dir.isBlank() ? Path.of(System.getProperty("java.io.tmpdir"), "passportphoto-models") : Path.of(dir);
+        this.dir = Files.createDirectories(path);
+    }
+
+    /**
+     * Returns a file path for a classpath model, extracting it on first use.
+     *
+     * @param resource the classpath location of the model
+     * @return the path of the model file
+     * @throws IOException if the model is missing or cannot be extracted
+     */
+    public Path extract(String resource) throws IOException {
+        ClassPathResource model = new ClassPathResource(resource);
+        if (!model.exists()) {
+            throw new FileNotFoundException("Model not found in resources: " + resource);
+        }
+        if (model.isFile()) {
+            return model.getFile().toPath();
+        }
+
+        long size = model.contentLength();
+        Path reference = dir.resolve(HashUtil.sha256Hex(resource, String.valueOf(size),
+                String.valueOf(model.lastModified())) + ".ref");
+        if (Files.exists(reference)) {
+            Path cached = dir.resolve(Files.readString(reference).trim());
+            if (Files.exists(cached) && Files.size(cached) == size) {
+                return cached;
+            }
+        }
+
+        MessageDigest digest = newDigest();
+        Path temp = Files.createTempFile(dir, "extract", ".tmp");
+        try (InputStream in = new DigestInputStream(model.getInputStream(), digest)) {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        String name = HexFormat.of().formatHex(digest.digest()) + extension(resource);
+        Path extracted = commit(temp, dir.resolve(name));
+
+        Path referenceTemp = Files.createTempFile(dir, "ref", ".tmp");
+        Files.writeString(referenceTemp, name);
+        commit(referenceTemp, reference);
+        return extracted;
+    }
+
+    /**
+     * Returns where a file derived from a model is kept. The file may not
+     * exist yet.
+     *
+     * @param source  the model the file is derived from
+     * @param variant what distinguishes the derived file, e.g. runtime version and settings
+     * @param suffix  the file suffix, e.g. {@code .onnx}
+     * @return the path of the derived file
+     * @throws IOException if the source cannot be read
+     */
+    public Path derived(Path source, String variant, String suffix) throws IOException {
+        return dir.resolve(HashUtil.sha256Hex(source.toAbsolutePath().toString(), String.valueOf(Files.size(source)),
+                String.valueOf(Files.getLastModifiedTime(source).toMillis()), variant) + suffix);
+    }
+
+    /**
+     * Creates a temp file in the cache directory, to be moved into place
+     * with {@link #commit}.
+     *
+     * @return the temp file
+     * @throws IOException if it cannot be created
+     */
+    public Path newTempFile() throws IOException {
+        return Files.createTempFile(dir, "derived", ".tmp");
+    }
+
+    /**
+     * Atomically moves a fully written temp file into place, replacing a
+     * file another boot may have written for the same key.
+     *
+     * @param temp   the written temp file
+     * @param target the final path
+     * @return the target path
+     * @throws IOException if the file cannot be moved
+     */
+    public Path commit(Path temp, Path target) throws IOException {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    private static String extension(String resource) {
+        int dot = resource.lastIndexOf('.');
+        return dot < 0 || dot < resource.lastIndexOf('/') ? "" : resource.substring(dot);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
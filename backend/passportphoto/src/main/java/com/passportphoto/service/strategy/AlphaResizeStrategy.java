@@ -13,6 +13,8 @@ import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import com.passportphoto.util.BufferPool;
+
 import static com.passportphoto.util.ResizeUtil.calculateFitSize;
 
 /**
@@ -22,10 +24,31 @@ import static com.passportphoto.util.ResizeUtil.calculateFitSize;
  */
 public class AlphaResizeStrategy implements ResizeStrategy {
 
+    /** Reduction ratio from which the image is halved before the final resize */
+    private final double pyramidRatio;
+
+    /**
+     * Creates the strategy with the default halving ratio.
+     */
+    public AlphaResizeStrategy() {
+        this(ProgressiveDownscaler.DEFAULT_MIN_RATIO);
+    }
+
+    /**
+     * Creates the strategy.
+     *
+     * @param pyramidRatio reduction ratio from which large images are halved
+     *                     before the final resize, or 0 to resize in one step
+     */
+    public AlphaResizeStrategy(double pyramidRatio) {
+        this.pyramidRatio = pyramidRatio;
+    }
+
     /**
      * Resizes the given RGBA image to the specified target width and height.
      * Returns the original image if it's already the correct size.
-     * Uses INTER_AREA for downscaling and INTER_CUBIC for upscaling.
+     * Uses INTER_AREA for downscaling, after halving steps for large
+     * reductions, and INTER_CUBIC for upscaling.
      *
      * @param rgbaImage    the RGBA input image as an OpenCV {@link Mat}
      * @param targetWidth  the desired width
@@ -42,12 +65,14 @@ public class AlphaResizeStrategy implements ResizeStrategy {
         }
 
         Size newSize = calculateFitSize(rgbaImage.size(), targetWidth, targetHeight);
-        Mat resized = new Mat();
 
         // Choose interpolation based on scaling direction
-        int interpolation = (newSize.width < w || newSize.height < h) ? Imgproc.INTER_AREA : Imgproc.INTER_CUBIC;
+        if (newSize.width < w || newSize.height < h) {
+            return ProgressiveDownscaler.downscale(rgbaImage, newSize, pyramidRatio);
+        }
 
-        Imgproc.resize(rgbaImage, resized, newSize, 0, 0, interpolation);
+        Mat resized = BufferPool.borrowMat((int) newSize.height, (int) newSize.width, rgbaImage.type());
+        Imgproc.resize(rgbaImage, resized, newSize, 0, 0, Imgproc.INTER_CUBIC);
         return resized;
     }
 }
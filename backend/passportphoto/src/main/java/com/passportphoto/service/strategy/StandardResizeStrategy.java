@@ -12,6 +12,8 @@ package com.passportphoto.service.strategy;
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
+
+import com.passportphoto.util.BufferPool;
 import static com.passportphoto.util.ResizeUtil.calculateFitSize;
 
 /**
@@ -21,10 +23,31 @@ import static com.passportphoto.util.ResizeUtil.calculateFitSize;
  */
 public class StandardResizeStrategy implements ResizeStrategy {
 
+    /** Reduction ratio from which the image is halved before the final resize */
+    private final double pyramidRatio;
+
+    /**
+     * Creates the strategy with the default halving ratio.
+     */
+    public StandardResizeStrategy() {
+        this(ProgressiveDownscaler.DEFAULT_MIN_RATIO);
+    }
+
+    /**
+     * Creates the strategy.
+     *
+     * @param pyramidRatio reduction ratio from which large images are halved
+     *                     before the final resize, or 0 to resize in one step
+     */
+    public StandardResizeStrategy(double pyramidRatio) {
+        this.pyramidRatio = pyramidRatio;
+    }
+
     /**
      * Resizes the given image to the target dimensions using OpenCV.
      * If the image is already the correct size, it returns the original.
-     * Uses INTER_AREA for downscaling and INTER_CUBIC for upscaling.
+     * Uses INTER_AREA for downscaling, after halving steps for large
+     * reductions, and INTER_CUBIC for upscaling.
      *
      * @param image        the input BGR image as an OpenCV {@link Mat}
      * @param targetWidth  the desired width of the image
@@ -41,12 +64,14 @@ public class StandardResizeStrategy implements ResizeStrategy {
         }
 
         Size newSize = calculateFitSize(image.size(), targetWidth, targetHeight);
-        Mat resized = new Mat();
 
         // Choose interpolation based on scaling direction
-        int interpolation = (newSize.width < w || newSize.height < h) ? Imgproc.INTER_AREA : Imgproc.INTER_CUBIC;
+        if (newSize.width < w || newSize.height < h) {
+            return ProgressiveDownscaler.downscale(image, newSize, pyramidRatio);
+        }
 
-        Imgproc.resize(image, resized, newSize, 0, 0, interpolation);
+        Mat resized = BufferPool.borrowMat((int) newSize.height, (int) newSize.width, image.type());
+        Imgproc.resize(image, resized, newSize, 0, 0, Imgproc.INTER_CUBIC);
         return resized;
     }
 }
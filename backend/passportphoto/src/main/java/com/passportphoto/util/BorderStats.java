@@ -0,0 +1,172 @@
+/*
+ * BorderStats.java
+ *
+ * Mean and standard deviation of the four border bands of an image, per
+ * side and combined.
+ *
+ */
+
+package com.passportphoto.util;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.Scalar;
+
+/**
+ * The {@code BorderStats} class describes the colour of an image's
+ * perimeter: a top and bottom band spanning the full width, and a left and
+ * right band between them, each {@code borderSize} pixels deep. Every band
+ * is measured in place with one {@link Core#meanStdDev} call on its submat,
+ * and the combined statistics are pooled from the per-band sums, so no
+ * pixel is copied or read from Java. A band with no pixels, such as the
+ * side bands of an image exactly two bands high, has zero statistics and
+ * does not count towards the pooled values.
+ */
+public final class BorderStats {
+
+    /** An edge of the image */
+    public enum Side { TOP, BOTTOM, LEFT, RIGHT }
+
+    private final Map<Side, Band> bands;
+    private final Scalar mean;
+    private final Scalar stdDev;
+
+    private BorderStats(Map<Side, Band> bands, Scalar mean, Scalar stdDev) {
+        this.bands = bands;
+        this.mean = mean;
+        this.stdDev = stdDev;
+    }
+
+    /**
+     * Measures the border bands of an image.
+     *
+     * @param image      the image, of up to four channels
+     * @param borderSize depth of each band in pixels
+     * @return the statistics, or {@code null} if the image is smaller than two bands
+     */
+    public static BorderStats of(Mat image, int borderSize) {
+        int w = image.cols();
+        int h = image.rows();
+        if (w < borderSize * 2 || h < borderSize * 2) {
+            return null;
+        }
+
+        Map<Side, Band> bands = new EnumMap<>(Side.class);
+        bands.put(Side.TOP, measure(image, 0, borderSize, 0, w));
+        bands.put(Side.BOTTOM, measure(image, h - borderSize, h, 0, w));
+        bands.put(Side.LEFT, measure(image, borderSize, h - borderSize, 0, borderSize));
+        bands.put(Side.RIGHT, measure(image, borderSize, h - borderSize, w - borderSize, w));
+
+        // Pooled over all bands: the mean of the means and the mean of the second moments, weighted by size
+        int channels = image.channels();
+        double[] mean = new double[4];
+        double[] stdDev = new double[4];
+        long pixels = 0;
+        for (Band band : bands.values()) {
+            pixels += band.pixels();
+        }
+        for (int c = 0; c < channels; c++) {
+            double sum = 0;
+            double sumSquares = 0;
+            for (Band band : bands.values()) {
+                double m = band.mean().val[c];
+                double s = band.stdDev().val[c];
+                sum += band.pixels() * m;
+                sumSquares += band.pixels() * (s * s + m * m);
+            }
+            mean[c] = pixels == 0 ? 0 : sum / pixels;
+            stdDev[c] = pixels == 0 ? 0 : Math.sqrt(Math.max(0, sumSquares / pixels - mean[c] * mean[c]));
+        }
+        return new BorderStats(bands, new Scalar(mean), new Scalar(stdDev));
+    }
+
+    /**
+     * Returns the statistics of one band.
+     *
+     * @param side the edge
+     * @return the band statistics
+     */
+    public Band get(Side side) {
+        return bands.get(side);
+    }
+
+    /**
+     * Returns the per-channel mean over all four bands.
+     *
+     * @return the mean colour
+     */
+    public Scalar getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the per-channel standard deviation over all four bands.
+     *
+     * @return the standard deviation
+     */
+    public Scalar getStdDev() {
+        return stdDev;
+    }
+
+    /**
+     * Returns whether the whole perimeter is one colour: the standard
+     * deviation over all bands is below the threshold in every channel.
+     *
+     * @param threshold the largest standard deviation still considered uniform
+     * @param channels  the number of channels to test
+     * @return {@code true} if the perimeter is uniform
+     */
+    public boolean isUniform(double threshold, int channels) {
+        return below(stdDev, threshold, channels);
+    }
+
+    /**
+     * Returns whether one edge is one colour.
+     *
+     * @param side      the edge
+     * @param threshold the largest standard deviation still considered uniform
+     * @param channels  the number of channels to test
+     * @return {@code true} if the band is uniform
+     */
+    public boolean isUniform(Side side, double threshold, int channels) {
+        return below(bands.get(side).stdDev(), threshold, channels);
+    }
+
+    private static boolean below(Scalar values, double threshold, int channels) {
+        for (int c = 0; c < channels; c++) {
+            if (values.val[c] >= threshold) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Band measure(Mat image, int rowStart, int rowEnd, int colStart, int colEnd) {
+        if (rowEnd <= rowStart || colEnd <= colStart) {
+            // The side bands are empty when the image is exactly two bands high
+            return new Band(0, new Scalar(0, 0, 0, 0), new Scalar(0, 0, 0, 0));
+        }
+        Mat region = image.submat(rowStart, rowEnd, colStart, colEnd);
+        MatOfDouble mean = new MatOfDouble();
+        MatOfDouble stdDev = new MatOfDouble();
+        try {
+            Core.meanStdDev(region, mean, stdDev);
+            return new Band((long) region.rows() * region.cols(), new Scalar(mean.toArray()),
+                    new Scalar(stdDev.toArray()));
+        } finally {
+            region.release();
+            mean.release();
+            stdDev.release();
+        }
+    }
+
+    /**
+     * Simple structure to hold the statistics of one border band.
+     */
+    public record Band(long pixels, Scalar mean, Scalar stdDev) {
+    }
+}
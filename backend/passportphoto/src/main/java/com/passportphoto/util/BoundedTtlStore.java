@@ -0,0 +1,137 @@
+/*
+ * BoundedTtlStore.java
+ *
+ * In-memory key/value store bounded by a total weight and evicting entries
+ * after a fixed time-to-live. Used to hold short-lived processing artifacts.
+ *
+ */
+
+package com.passportphoto.util;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * The {@code BoundedTtlStore} class keeps values in least-recently-used order.
+ * Entries are evicted once their time-to-live expires, or oldest-first when
+ * the summed weight of all values exceeds the configured maximum.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class BoundedTtlStore<K, V> {
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxWeight;
+    private final long ttlMillis;
+    private final ToLongFunction<V> weigher;
+
+    private long currentWeight;
+
+    /**
+     * Constructs a store bounded by weight and time-to-live.
+     *
+     * @param maxWeight the maximum summed weight of all values
+     * @param ttl       how long an entry is kept after it was written
+     * @param weigher   computes the weight of a single value
+     */
+    public BoundedTtlStore(long maxWeight, Duration ttl, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.ttlMillis = ttl.toMillis();
+        this.weigher = weigher;
+    }
+
+    /**
+     * Stores a value, evicting expired and least-recently-used entries as needed.
+     * A value heavier than the whole store is not kept.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public synchronized void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        remove(key);
+        if (weight > maxWeight) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, weight, System.currentTimeMillis() + ttlMillis));
+        currentWeight += weight;
+        evict();
+    }
+
+    /**
+     * Returns the value for the key, or {@code null} if absent or expired.
+     *
+     * @param key the key
+     * @return the stored value or {@code null}
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Removes the value for the key.
+     *
+     * @param key the key
+     * @return the removed value or {@code null}
+     */
+    public synchronized V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        currentWeight -= entry.weight;
+        return entry.value;
+    }
+
+    /**
+     * Returns the number of entries currently held.
+     *
+     * @return the entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the summed weight of the entries currently held.
+     *
+     * @return the current weight
+     */
+    public synchronized long weight() {
+        return currentWeight;
+    }
+
+    /**
+     * Drops expired entries, then the least-recently-used ones until the
+     * store is back within its weight bound.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<V> entry = it.next().getValue();
+            if (entry.expiresAt <= now || currentWeight > maxWeight) {
+                it.remove();
+                currentWeight -= entry.weight;
+            }
+        }
+    }
+
+    /**
+     * Simple structure holding a value with its weight and expiry time.
+     */
+    private record Entry<V>(V value, long weight, long expiresAt) {
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * BufferPool.java
+ *
+ * Reuses full-size OpenCV Mats and BufferedImage rasters between requests,
+ * keyed by shape and type.
+ *
+ */
+
+package com.passportphoto.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * The {@code BufferPool} class hands out Mats by (rows, cols, type) and
+ * {@code TYPE_INT_RGB}/{@code TYPE_INT_ARGB} images by (width, height,
+ * type). Long-lived worker threads whose body is wrapped by
+ * {@link #withThreadCache(Runnable)} return buffers to a small cache of
+ * their own first, so a pipeline stage thread usually gets back its own
+ * buffers, and overflow to a shared pool; every other thread, such as a
+ * request or virtual thread that may end at any time, returns straight to
+ * the shared pool. A cache is handed to the shared pool when its thread
+ * ends, so no pooled buffer is stranded on a dead thread. Everything pooled
+ * counts against one global byte cap; buffers that do not fit are freed.
+ *
+ * <p>Borrowed Mats are tracked by the current {@link NativeArena}, which
+ * returns them here when it closes; {@link #recycle(Mat)} returns one
+ * earlier. Their contents are undefined, so callers must write every
+ * pixel. Borrowed images are cleared like a new {@link BufferedImage} and
+ * must be recycled explicitly, only once nothing references them. Only
+ * buffers created by the pool are accepted back.
+ */
+public final class BufferPool {
+
+    /** Buffers created by the pool, mapped to whether they are currently pooled */
+    private static final Map<Object, Boolean> ISSUED = Collections.synchronizedMap(new WeakHashMap<>());
+    /** Cache of the current thread, set only on threads wrapped by {@link #withThreadCache(Runnable)} */
+    private static final ThreadLocal<Map<Key, ArrayDeque<Object>>> LOCAL = new ThreadLocal<>();
+    private static final ConcurrentHashMap<Key, ConcurrentLinkedDeque<Object>> SHARED = new ConcurrentHashMap<>();
+
+    private static final AtomicLong POOLED_BYTES = new AtomicLong();
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong DROPS = new AtomicLong();
+
+    private static volatile long maxBytes = 128L * 1024 * 1024;
+    private static volatile int perThread = 2;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BufferPool() {
+        // Utility class - do not instantiate
+    }
+
+    /**
+     * Sets the pool bounds.
+     *
+     * @param maxPooledBytes total bytes the pool may hold
+     * @param perThreadCount buffers of one shape each worker thread keeps for itself
+     */
+    public static void configure(long maxPooledBytes, int perThreadCount) {
+        maxBytes = maxPooledBytes;
+        perThread = Math.max(0, perThreadCount);
+    }
+
+    /**
+     * Wraps the body of a long-lived worker thread so that it keeps its own
+     * buffer cache, handed to the shared pool when the body ends.
+     *
+     * @param body the thread body
+     * @return the wrapped body
+     */
+    public static Runnable withThreadCache(Runnable body) {
+        return () -> {
+            Map<Key, ArrayDeque<Object>> cache = new HashMap<>();
+            LOCAL.set(cache);
+            try {
+                body.run();
+            } finally {
+                LOCAL.remove();
+                // Still counted in the pooled bytes, so they stay available
+                cache.forEach((key, buffers) -> SHARED.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>())
+                        .addAll(buffers));
+            }
+        };
+    }
+
+    /**
+     * Borrows a Mat of the given shape and type, tracked by the current arena.
+     *
+     * @param rows number of rows
+     * @param cols number of columns
+     * @param type the OpenCV type, e.g. {@code CvType.CV_8UC3}
+     * @return a Mat with undefined contents
+     */
+    public static Mat borrowMat(int rows, int cols, int type) {
+        Key key = new Key(false, rows, cols, type);
+        Mat mat = (Mat) take(key);
+        if (mat == null) {
+            mat = new Mat(rows, cols, type);
+            ISSUED.put(mat, false);
+        }
+        return NativeArena.track(mat);
+    }
+
+    /**
+     * Borrows a cleared image of the given size and type.
+     *
+     * @param width  image width
+     * @param height image height
+     * @param type   {@code BufferedImage.TYPE_INT_RGB} or {@code TYPE_INT_ARGB}
+     * @return an image with every pixel zero
+     */
+    public static BufferedImage borrowImage(int width, int height, int type) {
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) {
+            return new BufferedImage(width, height, type);
+        }
+        Key key = new Key(true, height, width, type);
+        BufferedImage image = (BufferedImage) take(key);
+        if (image == null) {
+            image = new BufferedImage(width, height, type);
+            ISSUED.put(image, false);
+            return image;
+        }
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, 0);
+        return image;
+    }
+
+    /**
+     * Returns a Mat to the pool, or releases it if the pool did not create it
+     * or is full.
+     *
+     * @param mat the Mat, which must no longer be used; may be {@code null}
+     */
+    public static void recycle(Mat mat) {
+        if (mat == null) {
+            return;
+        }
+        NativeArena.detach(mat);
+        if (!offer(mat)) {
+            mat.release();
+        }
+    }
+
+    /**
+     * Returns an image to the pool. Images the pool did not create are ignored.
+     *
+     * @param image the image, which must no longer be referenced; may be {@code null}
+     */
+    public static void recycle(BufferedImage image) {
+        if (image != null) {
+            offer(image);
+        }
+    }
+
+    /**
+     * Offers a Mat that is being released by an arena.
+     *
+     * @param mat the Mat
+     * @return true if the pool took it, or already holds it
+     */
+    static boolean offer(Mat mat) {
+        if (!ISSUED.containsKey(mat) || mat.dataAddr() == 0 || mat.isSubmatrix()) {
+            return false;
+        }
+        return put(new Key(false, mat.rows(), mat.cols(), mat.type()), mat,
+                mat.total() * mat.elemSize());
+    }
+
+    private static boolean offer(BufferedImage image) {
+        if (!ISSUED.containsKey(image)) {
+            return false;
+        }
+        return put(new Key(true, image.getHeight(), image.getWidth(), image.getType()), image,
+                4L * image.getWidth() * image.getHeight());
+    }
+
+    private static Object take(Key key) {
+        Map<Key, ArrayDeque<Object>> cache = LOCAL.get();
+        ArrayDeque<Object> local = cache == null ? null : cache.get(key);
+        Object buffer = local == null ? null : local.pollFirst();
+        if (buffer == null) {
+            ConcurrentLinkedDeque<Object> shared = SHARED.get(key);
+            buffer = shared == null ? null : shared.pollFirst();
+        }
+        if (buffer == null) {
+            MISSES.incrementAndGet();
+            return null;
+        }
+        HITS.incrementAndGet();
+        POOLED_BYTES.addAndGet(-key.bytes());
+        ISSUED.put(buffer, false);
+        return buffer;
+    }
+
+    private static boolean put(Key key, Object buffer, long bytes) {
+        // A buffer returned twice must not be handed out twice
+        if (ISSUED.replace(buffer, true) == Boolean.TRUE) {
+            return true;
+        }
+        long pooled = POOLED_BYTES.addAndGet(bytes);
+        if (pooled > maxBytes) {
+            POOLED_BYTES.addAndGet(-bytes);
+            ISSUED.remove(buffer);
+            DROPS.incrementAndGet();
+            return false;
+        }
+        Map<Key, ArrayDeque<Object>> cache = LOCAL.get();
+        ArrayDeque<Object> local = cache == null ? null : cache.computeIfAbsent(key, k -> new ArrayDeque<>());
+        if (local != null && local.size() < perThread) {
+            local.addFirst(buffer);
+        } else {
+            SHARED.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>()).addFirst(buffer);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the bytes currently held by the pool.
+     *
+     * @return the pooled bytes
+     */
+    public static long pooledBytes() {
+        return POOLED_BYTES.get();
+    }
+
+    /**
+     * Returns the number of borrows served from the pool.
+     *
+     * @return the hit count
+     */
+    public static long hits() {
+        return HITS.get();
+    }
+
+    /**
+     * Returns the number of borrows that had to allocate.
+     *
+     * @return the miss count
+     */
+    public static long misses() {
+        return MISSES.get();
+    }
+
+    /**
+     * Returns the number of returned buffers freed because the pool was full.
+     *
+     * @return the drop count
+     */
+    public static long drops() {
+        return DROPS.get();
+    }
+
+    /**
+     * Simple structure to hold the shape a buffer is pooled under.
+     */
+    private record Key(boolean image, int rows, int cols, int type) {
+
+        long bytes() {
+            return image ? 4L * rows * cols : (long) rows * cols * CvType.ELEM_SIZE(type);
+        }
+    }
+}
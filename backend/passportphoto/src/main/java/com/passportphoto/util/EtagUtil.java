@@ -0,0 +1,66 @@
+/*
+ * EtagUtil.java
+ *
+ * Utility class for matching HTTP entity tags against conditional
+ * request headers.
+ *
+ */
+
+package com.passportphoto.util;
+
+/**
+ * The {@code EtagUtil} class evaluates {@code If-None-Match} headers for
+ * endpoints that serve content under a strong entity tag.
+ * <p>
+ * This class is non-instantiable.
+ */
+public final class EtagUtil {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private EtagUtil() {
+        // Utility class - do not instantiate
+    }
+
+    /**
+     * Returns whether an {@code If-None-Match} header lists the entity tag,
+     * so the client's copy is current. Handles weak tags and comma-separated
+     * lists. {@code *} never matches: it only says the client holds some
+     * version, which is not enough to skip computing a result from the
+     * request body.
+     *
+     * @param ifNoneMatch the header value, or {@code null} if absent
+     * @param etag        the quoted entity tag of the current content
+     * @return true if a 304 response can be sent
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        return matches(ifNoneMatch, etag, false);
+    }
+
+    /**
+     * Returns whether an {@code If-None-Match} header matches the entity tag
+     * of a resource fetched with GET, where {@code *} also matches because
+     * the resource exists.
+     *
+     * @param ifNoneMatch the header value, or {@code null} if absent
+     * @param etag        the quoted entity tag of the current content
+     * @return true if a 304 response can be sent
+     */
+    public static boolean matchesExisting(String ifNoneMatch, String etag) {
+        return matches(ifNoneMatch, etag, true);
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag, boolean wildcard) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ((wildcard && tag.equals("*")) || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
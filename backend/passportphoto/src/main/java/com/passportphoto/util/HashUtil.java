@@ -0,0 +1,84 @@
+/*
+ * HashUtil.java
+ *
+ * Utility class for computing content hashes used as cache keys and
+ * content-addressed identifiers.
+ *
+ */
+
+package com.passportphoto.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * The {@code HashUtil} class provides static helpers producing lowercase
+ * hexadecimal SHA-256 digests.
+ * <p>
+ * This class is non-instantiable.
+ */
+public final class HashUtil {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private HashUtil() {
+        // Utility class - do not instantiate
+    }
+
+    /**
+     * Hashes a stream without buffering it whole.
+     *
+     * @param in the stream to hash, read to its end
+     * @return the hex digest
+     * @throws IOException if reading the stream fails
+     */
+    public static String sha256Hex(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hashes a byte array.
+     *
+     * @param bytes the bytes to hash
+     * @return the hex digest
+     */
+    public static String sha256Hex(byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
+
+    /**
+     * Hashes a sequence of strings. Each part is length-prefixed and nulls
+     * are encoded distinctly, so different sequences never collide by
+     * concatenation.
+     *
+     * @param parts the parts to hash
+     * @return the hex digest
+     */
+    public static String sha256Hex(String... parts) {
+        MessageDigest digest = newDigest();
+        for (String part : parts) {
+            String encoded = part == null ? "-;" : part.length() + ":" + part + ";";
+            digest.update(encoded.getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -12,8 +12,12 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Base64;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import org.opencv.core.*;
 import org.opencv.core.CvType;
@@ -36,8 +40,12 @@ public class ImageConverterUtil {
      * @return the Mat object of the File
      */
     public static Mat convertFileToMat(MultipartFile file) throws Exception {
-        Mat image = Imgcodecs.imdecode(new MatOfByte(file.getBytes()), Imgcodecs.IMREAD_UNCHANGED);
-        return image;
+        MatOfByte encoded = new MatOfByte(file.getBytes());
+        try {
+            return NativeArena.track(Imgcodecs.imdecode(encoded, Imgcodecs.IMREAD_UNCHANGED));
+        } finally {
+            encoded.release();
+        }
     }
 
     /**
@@ -71,7 +79,7 @@ public class ImageConverterUtil {
         int width = image.getWidth();
         int height = image.getHeight();
         int type = hasAlpha ? CvType.CV_8UC4 : CvType.CV_8UC3;
-        Mat mat = new Mat(height, width, type);
+        Mat mat = NativeArena.track(new Mat(height, width, type));
 
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
@@ -142,16 +150,47 @@ public class ImageConverterUtil {
     }
 
     /**
-     * Converts a multipart image file into a {@link BufferedImage}.
+     * Converts a multipart image file into a {@link BufferedImage}. Stored
+     * uploads return their cached decode, which must not be modified.
      *
      * @param imageFile the uploaded multipart file
      * @return the image as a BufferedImage
      * @throws IOException if reading the input stream fails
      */
     public static BufferedImage convertMultiPartToBufferedImage(MultipartFile imageFile) throws IOException {
+        if (imageFile instanceof StoredMultipartFile stored) {
+            return stored.getDecodedImage();
+        }
         return ImageIO.read(imageFile.getInputStream());
     }
 
+    /**
+     * Reads the pixel count of an encoded image from its header, without
+     * decoding the pixels.
+     *
+     * @param in the encoded image stream
+     * @return width times height, or 0 if the format is not recognised
+     * @throws IOException if reading the header fails
+     */
+    public static long readPixelCount(InputStream in) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            if (iis == null) {
+                return 0;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return 0;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
     /**
      * Converts a buffered image file into a base64 String.
      *
@@ -235,6 +274,7 @@ public class ImageConverterUtil {
         MatOfByte output = new MatOfByte();
         Imgcodecs.imencode(".jpg", matImage, output);
         byte[] postimageBytes = output.toArray();
+        output.release();
 
         // Create MultipartFile
         MultipartFile multipartFile = new MockMultipartFile(
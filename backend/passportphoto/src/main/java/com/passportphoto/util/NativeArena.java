@@ -0,0 +1,298 @@
+/*
+ * NativeArena.java
+ *
+ * Scoped ownership of native memory: OpenCV Mats and ONNX Runtime values
+ * allocated inside a scope are released when the scope ends.
+ *
+ */
+
+package com.passportphoto.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opencv.core.Mat;
+
+/**
+ * The {@code NativeArena} class is a thread-confined scope that owns native
+ * resources. Code allocating a {@link Mat}, an ONNX tensor or a session
+ * result registers it with {@link #track}; when the innermost open arena
+ * of the thread is closed, every tracked Mat is released and every tracked
+ * resource closed. Releasing earlier by hand stays correct and keeps peak
+ * memory lower. A value that must outlive the scope, such as a Mat handed
+ * to the next pipeline stage, is taken out with {@link #detach} and is then
+ * owned by whoever receives it. Mats borrowed from the {@link BufferPool}
+ * go back to the pool instead of being released.
+ *
+ * <p>Arenas are opened for every HTTP request and every pipeline stage
+ * task. Tracking with no arena open is allowed but counted as unscoped.
+ * Process-wide totals back the {@code native.*} meters: live bytes of Mats
+ * and resources held by open arenas, bytes released, resources the arena
+ * had to reclaim because the code never released them, arenas left open
+ * inside a closing outer arena, and unscoped allocations.
+ */
+public final class NativeArena implements AutoCloseable {
+
+    private static final ThreadLocal<NativeArena> CURRENT = new ThreadLocal<>();
+    private static final Set<NativeArena> OPEN = ConcurrentHashMap.newKeySet();
+
+    private static final AtomicLong RELEASED_BYTES = new AtomicLong();
+    private static final AtomicLong RECLAIMED_MATS = new AtomicLong();
+    private static final AtomicLong RECLAIMED_RESOURCES = new AtomicLong();
+    private static final AtomicLong LEAKED_ARENAS = new AtomicLong();
+    private static final AtomicLong UNSCOPED = new AtomicLong();
+
+    private final NativeArena parent;
+    private final List<Mat> mats = new ArrayList<>();
+    private final Map<AutoCloseable, Long> resources = new IdentityHashMap<>();
+    private boolean closed;
+
+    private NativeArena(NativeArena parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Opens an arena nested in the thread's current one and makes it current.
+     *
+     * @return the arena, to be closed by the same thread
+     */
+    public static NativeArena open() {
+        NativeArena arena = new NativeArena(CURRENT.get());
+        CURRENT.set(arena);
+        OPEN.add(arena);
+        return arena;
+    }
+
+    /**
+     * Registers a Mat, including submats and {@code MatOf*} types, with the
+     * thread's current arena.
+     *
+     * @param mat the Mat to release when the arena closes
+     * @param <T> the Mat type
+     * @return the same Mat
+     */
+    public static <T extends Mat> T track(T mat) {
+        NativeArena arena = CURRENT.get();
+        if (arena == null) {
+            UNSCOPED.incrementAndGet();
+            return mat;
+        }
+        synchronized (arena) {
+            arena.mats.add(mat);
+        }
+        return mat;
+    }
+
+    /**
+     * Registers a closeable native resource, such as an ONNX tensor or
+     * session result, with the thread's current arena.
+     *
+     * @param resource the resource to close when the arena closes
+     * @param bytes    native bytes the resource holds, for the live gauge
+     * @param <T>      the resource type
+     * @return the same resource
+     */
+    public static <T extends AutoCloseable> T track(T resource, long bytes) {
+        NativeArena arena = CURRENT.get();
+        if (arena == null) {
+            UNSCOPED.incrementAndGet();
+            return resource;
+        }
+        synchronized (arena) {
+            arena.resources.put(resource, bytes);
+        }
+        return resource;
+    }
+
+    /**
+     * Closes a tracked resource now and forgets it. Untracked resources are
+     * simply closed.
+     *
+     * @param resource the resource to close, may be {@code null}
+     */
+    public static void release(AutoCloseable resource) {
+        if (resource == null) {
+            return;
+        }
+        Long bytes = null;
+        for (NativeArena arena = CURRENT.get(); arena != null && bytes == null; arena = arena.parent) {
+            synchronized (arena) {
+                bytes = arena.resources.remove(resource);
+            }
+        }
+        closeQuietly(resource);
+        if (bytes != null) {
+            RELEASED_BYTES.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * Takes a value out of the thread's arenas so it survives their closing.
+     * Values that are not tracked are returned unchanged.
+     *
+     * @param value the Mat or resource to keep
+     * @param <T>   the value type
+     * @return the same value
+     */
+    public static <T> T detach(T value) {
+        for (NativeArena arena = CURRENT.get(); arena != null; arena = arena.parent) {
+            synchronized (arena) {
+                if (value instanceof Mat mat && arena.mats.removeIf(tracked -> tracked == mat)) {
+                    return value;
+                }
+                if (value instanceof AutoCloseable resource && arena.resources.remove(resource) != null) {
+                    return value;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Releases everything tracked by this arena and restores the enclosing
+     * arena as current. Arenas opened inside this one and not yet closed are
+     * closed first and counted as leaked.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        for (NativeArena inner = CURRENT.get(); inner != null && inner != this; inner = CURRENT.get()) {
+            LEAKED_ARENAS.incrementAndGet();
+            inner.close();
+        }
+        closed = true;
+        OPEN.remove(this);
+        if (CURRENT.get() == this) {
+            if (parent == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(parent);
+            }
+        }
+
+        List<Mat> heldMats;
+        Map<AutoCloseable, Long> heldResources;
+        synchronized (this) {
+            heldMats = new ArrayList<>(mats);
+            heldResources = new IdentityHashMap<>(resources);
+            mats.clear();
+            resources.clear();
+        }
+
+        // Released newest first, so submats go before the Mats they view; pooled Mats go back to their pool
+        for (int i = heldMats.size() - 1; i >= 0; i--) {
+            Mat mat = heldMats.get(i);
+            if (mat.dataAddr() != 0 && !BufferPool.offer(mat)) {
+                RECLAIMED_MATS.incrementAndGet();
+                RELEASED_BYTES.addAndGet(bytes(mat));
+                mat.release();
+            }
+        }
+        heldResources.forEach((resource, bytes) -> {
+            RECLAIMED_RESOURCES.incrementAndGet();
+            RELEASED_BYTES.addAndGet(bytes);
+            closeQuietly(resource);
+        });
+    }
+
+    /**
+     * Returns the number of arenas currently open across all threads.
+     *
+     * @return the open arena count
+     */
+    public static int openArenas() {
+        return OPEN.size();
+    }
+
+    /**
+     * Returns the native bytes held by Mats and resources of open arenas.
+     * Submats share their parent's data and are not counted.
+     *
+     * @return the live native bytes
+     */
+    public static long liveBytes() {
+        long total = 0;
+        for (NativeArena arena : OPEN) {
+            synchronized (arena) {
+                for (Mat mat : arena.mats) {
+                    total += bytes(mat);
+                }
+                for (long bytes : arena.resources.values()) {
+                    total += bytes;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the native bytes released by arenas so far.
+     *
+     * @return the released byte count
+     */
+    public static long releasedBytes() {
+        return RELEASED_BYTES.get();
+    }
+
+    /**
+     * Returns the number of Mats an arena had to release because the code
+     * did not.
+     *
+     * @return the reclaimed Mat count
+     */
+    public static long reclaimedMats() {
+        return RECLAIMED_MATS.get();
+    }
+
+    /**
+     * Returns the number of ONNX tensors and results an arena had to close
+     * because the code did not.
+     *
+     * @return the reclaimed resource count
+     */
+    public static long reclaimedResources() {
+        return RECLAIMED_RESOURCES.get();
+    }
+
+    /**
+     * Returns the number of arenas closed by an enclosing arena instead of
+     * by their owner.
+     *
+     * @return the leaked arena count
+     */
+    public static long leakedArenas() {
+        return LEAKED_ARENAS.get();
+    }
+
+    /**
+     * Returns the number of values tracked while no arena was open; these
+     * are not released automatically.
+     *
+     * @return the unscoped allocation count
+     */
+    public static long unscoped() {
+        return UNSCOPED.get();
+    }
+
+    private static long bytes(Mat mat) {
+        if (mat.dataAddr() == 0 || mat.isSubmatrix()) {
+            return 0;
+        }
+        return mat.total() * mat.elemSize();
+    }
+
+    private static void closeQuietly(AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            // Nothing more can be done with a resource that fails to close
+        }
+    }
+}
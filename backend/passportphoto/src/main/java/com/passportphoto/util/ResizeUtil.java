@@ -91,7 +91,7 @@ public final class ResizeUtil {
      * @return Buffered Image that is resized height and width
      */
     public static BufferedImage resizeImage(BufferedImage img, int targetWidth, int targetHeight, int x, int y) {
-        BufferedImage resized = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        BufferedImage resized = BufferPool.borrowImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
         Graphics2D g2d = resized.createGraphics();
 
         // Set rendering hints for better image quality
@@ -0,0 +1,116 @@
+/*
+ * StoredMultipartFile.java
+ *
+ * This class exposes an upload held in the server-side image store as a
+ * MultipartFile, together with its already decoded pixels.
+ *
+ */
+
+package com.passportphoto.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * The {@code StoredMultipartFile} class lets operation endpoints treat a
+ * stored upload exactly like a fresh multipart upload. Callers decoding
+ * through {@link ImageConverterUtil#convertMultiPartToBufferedImage} get the
+ * cached decode instead of decoding the bytes again; it is shared and must
+ * not be modified.
+ */
+public class StoredMultipartFile implements MultipartFile {
+
+    private final String id;
+    private final String originalFilename;
+    private final String contentType;
+    private final byte[] bytes;
+    private final BufferedImage decodedImage;
+
+    /**
+     * Constructs a stored upload.
+     *
+     * @param id               the content-addressed image ID
+     * @param originalFilename the file name sent with the upload
+     * @param contentType      the content type sent with the upload
+     * @param bytes            the encoded image
+     * @param decodedImage     the decoded pixels
+     */
+    public StoredMultipartFile(String id, String originalFilename, String contentType, byte[] bytes,
+            BufferedImage decodedImage) {
+        this.id = id;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.bytes = bytes;
+        this.decodedImage = decodedImage;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the decoded pixels of the upload. The image is shared between
+     * requests and must be treated as read-only.
+     *
+     * @return the decoded image
+     */
+    public BufferedImage getDecodedImage() {
+        return decodedImage;
+    }
+
+    /**
+     * Returns the approximate memory held by this upload: the encoded bytes
+     * plus four bytes per decoded pixel.
+     *
+     * @return the weight in bytes
+     */
+    public long getWeight() {
+        return bytes.length + 4L * decodedImage.getWidth() * decodedImage.getHeight();
+    }
+
+    @Override
+    public String getName() {
+        return "image";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bytes.length == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return bytes.length;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.write(dest.toPath(), bytes);
+    }
+}
@@ -29,9 +29,15 @@ public class ValidationUtil {
     // Crop Dimension Validation
     public static void validateCropDimension(BufferedImage inputImage, int cropX, int cropY, int cropWidth,
             int cropHeight) throws Exception {
+        validateCropDimension(inputImage.getWidth(), inputImage.getHeight(), cropX, cropY, cropWidth, cropHeight);
+    }
+
+    // Crop Dimension Validation against image dimensions read from the header
+    public static void validateCropDimension(int imageWidth, int imageHeight, int cropX, int cropY, int cropWidth,
+            int cropHeight) throws Exception {
         if (cropX < 0 || cropY < 0 || cropWidth <= 0 || cropHeight <= 0 ||
-                cropX + cropWidth > inputImage.getWidth() ||
-                cropY + cropHeight > inputImage.getHeight()) {
+                cropX + cropWidth > imageWidth ||
+                cropY + cropHeight > imageHeight) {
             throw new IndexOutOfBoundsException("Invalid crop dimensions!");
         }
 
@@ -0,0 +1,58 @@
+package com.passportphoto.config;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.passportphoto.service.pipeline.Deadline;
+import com.passportphoto.service.pipeline.RequestDeadlines;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+
+class RequestDeadlineFilterTest {
+
+	private final RequestDeadlines deadlines = new RequestDeadlines(60_000, new SimpleMeterRegistry());
+	private final RequestDeadlineFilter filter = new RequestDeadlineFilter(deadlines,
+			List.of("/automate/batch/passportphoto"));
+
+	@AfterEach
+	void tearDown() {
+		deadlines.shutdown();
+	}
+
+	@Test
+	void attachesADeadlineWhileTheRequestIsHandled() throws Exception {
+		assertNotNull(deadlineSeenBy(new MockHttpServletRequest("POST", "/automate/passportphoto")));
+		assertNull(Deadline.current());
+	}
+
+	@Test
+	void exemptPathsRunWithoutADeadline() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/automate/batch/passportphoto");
+		request.setContextPath("/api");
+
+		assertNull(deadlineSeenBy(request));
+	}
+
+	private Deadline deadlineSeenBy(MockHttpServletRequest request) throws Exception {
+		AtomicReference<Deadline> seen = new AtomicReference<>();
+		HttpServlet servlet = new HttpServlet() {
+			@Override
+			protected void service(jakarta.servlet.http.HttpServletRequest req,
+					jakarta.servlet.http.HttpServletResponse resp) {
+				seen.set(Deadline.current());
+			}
+		};
+		filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain(servlet));
+		return seen.get();
+	}
+}
@@ -0,0 +1,92 @@
+package com.passportphoto.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.passportphoto.dto.AutomatedImageResponse;
+import com.passportphoto.exceptions.ImageException;
+import com.passportphoto.exceptions.ModelNotReadyException;
+import com.passportphoto.exceptions.PipelineBusyException;
+import com.passportphoto.service.AutomatePassportPhotoService;
+import com.passportphoto.service.job.ZipBatchService;
+import com.passportphoto.service.store.ImageStore;
+
+class AutomatePassportPhotoControllerTest {
+
+	private final MockMultipartFile image = new MockMultipartFile("image", "a.jpg", "image/jpeg", new byte[] { 1 });
+	private final AutomatePassportPhotoService service = mock(AutomatePassportPhotoService.class);
+	private final ImageStore imageStore = mock(ImageStore.class);
+	private AutomatePassportPhotoController controller;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		when(imageStore.resolve(image, null)).thenReturn(image);
+		when(service.resultKey(image, "us", null)).thenReturn("key");
+		controller = new AutomatePassportPhotoController(service, mock(ZipBatchService.class), imageStore);
+	}
+
+	@Test
+	void modelNotReadyReachesTheExceptionHandler() throws Exception {
+		assertFailsWith(new ModelNotReadyException("Model is loading", 5));
+	}
+
+	@Test
+	void busyPipelineReachesTheExceptionHandler() throws Exception {
+		assertFailsWith(new PipelineBusyException("Pipeline stage is saturated: decode"));
+	}
+
+	@Test
+	void imageFailureBecomesAFailedResult() throws Exception {
+		when(service.automatePassportPhotoAsync(eq(image), eq("key"), any(), any()))
+				.thenReturn(CompletableFuture.failedFuture(new IllegalStateException("no face")));
+
+		ResponseEntity<AutomatedImageResponse> response = controller
+				.automatePassportPhoto(image, null, "us", null, null).get(5, TimeUnit.SECONDS);
+		assertEquals(200, response.getStatusCode().value());
+		assertEquals("failed", response.getBody().getStatus());
+	}
+
+	@Test
+	void wildcardIfNoneMatchStillComputesTheResult() throws Exception {
+		when(service.automatePassportPhotoAsync(eq(image), eq("key"), any(), any()))
+				.thenReturn(CompletableFuture.completedFuture("data:image/jpeg;base64,AA=="));
+
+		ResponseEntity<AutomatedImageResponse> response = controller
+				.automatePassportPhoto(image, null, "us", null, "*").get(5, TimeUnit.SECONDS);
+		assertEquals(200, response.getStatusCode().value());
+		assertEquals("data:image/jpeg;base64,AA==", response.getBody().getImage());
+	}
+
+	@Test
+	void synchronousModelNotReadyReachesTheExceptionHandler() throws Exception {
+		ModelNotReadyException failure = new ModelNotReadyException("Model is loading", 5);
+		when(service.automatePassportPhotoAsync(eq(image), eq("key"), any(), any())).thenThrow(failure);
+
+		assertSame(failure, assertThrows(ModelNotReadyException.class,
+				() -> controller.automatePassportPhoto(image, null, "us", null, null)));
+	}
+
+	private void assertFailsWith(ImageException failure) throws Exception {
+		when(service.automatePassportPhotoAsync(eq(image), eq("key"), any(), any()))
+				.thenReturn(CompletableFuture.failedFuture(failure));
+
+		CompletableFuture<ResponseEntity<AutomatedImageResponse>> response = controller
+				.automatePassportPhoto(image, null, "us", null, null);
+		ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+		assertSame(failure, e.getCause());
+	}
+}
@@ -0,0 +1,78 @@
+package com.passportphoto.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.passportphoto.dto.ImageCropRequest;
+import com.passportphoto.service.pipeline.ComputeExecutor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ImageCroppingServiceTest {
+
+	private final ComputeExecutor compute = new ComputeExecutor(1, 4, new SimpleMeterRegistry());
+	private final ImageCroppingService service = new ImageCroppingService(compute);
+
+	@AfterEach
+	void tearDown() {
+		compute.shutdown();
+	}
+
+	@Test
+	void cropReportsTheRequestedRegion() throws Exception {
+		ImageCroppingService.Crop crop = service.cropFileToImage(jpeg(64, 48), request(5, 3, 10, 10, false));
+
+		assertRegion(crop, 5, 3, 10, 10);
+	}
+
+	@Test
+	void blockAlignedCropReportsTheWidenedRegion() throws Exception {
+		ImageCroppingService.Crop crop = service.cropFileToImage(jpeg(64, 48), request(5, 3, 10, 10, true));
+
+		// The JDK encoder subsamples chroma 2x2, so MCUs are 16 pixels square
+		assertRegion(crop, 0, 0, 16, 16);
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(
+				Base64.getDecoder().decode(crop.dataUrl().substring(crop.dataUrl().indexOf(',') + 1))));
+		assertEquals(16, image.getWidth());
+		assertEquals(16, image.getHeight());
+	}
+
+	private static void assertRegion(ImageCroppingService.Crop crop, int x, int y, int width, int height) {
+		assertEquals(x, crop.x());
+		assertEquals(y, crop.y());
+		assertEquals(width, crop.width());
+		assertEquals(height, crop.height());
+	}
+
+	private static ImageCropRequest request(int x, int y, int width, int height, boolean alignToBlocks) {
+		ImageCropRequest request = new ImageCropRequest();
+		request.setCropX(x);
+		request.setCropY(y);
+		request.setCropWidth(width);
+		request.setCropHeight(height);
+		request.setAlignToBlocks(alignToBlocks);
+		return request;
+	}
+
+	private static MockMultipartFile jpeg(int width, int height) throws Exception {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, (x * 4) << 16 | (y * 5) << 8 | (x + y));
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpeg", out);
+		return new MockMultipartFile("image", "photo.jpg", "image/jpeg", out.toByteArray());
+	}
+}
@@ -0,0 +1,70 @@
+package com.passportphoto.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.passportphoto.exceptions.ModelNotReadyException;
+
+class ModelReadinessTest {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final ModelReadiness readiness = new ModelReadiness(2, true, 7);
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		readiness.shutdown();
+	}
+
+	@Test
+	void requireThrowsWhileTheModelLoads() {
+		CompletableFuture<String> model = readiness.load("face", () -> {
+			release.await(5, TimeUnit.SECONDS);
+			return "model";
+		});
+
+		ModelNotReadyException e = assertThrows(ModelNotReadyException.class, () -> readiness.require("face", model));
+		assertEquals(7, e.getRetryAfterSeconds());
+		assertFalse(readiness.isReady());
+		assertEquals("LOADING", readiness.states().get("face"));
+
+		release.countDown();
+		model.join();
+		assertEquals("model", readiness.require("face", model));
+		assertTrue(readiness.isReady());
+	}
+
+	@Test
+	void requireThrowsAfterTheModelFailed() {
+		CompletableFuture<String> model = readiness.load("face", () -> {
+			throw new IllegalStateException("corrupt model");
+		});
+
+		assertThrows(Exception.class, model::join);
+		ModelNotReadyException e = assertThrows(ModelNotReadyException.class, () -> readiness.require("face", model));
+		assertTrue(e.getMessage().contains("failed"));
+		assertEquals("FAILED: corrupt model", readiness.states().get("face"));
+		assertFalse(readiness.isReady());
+	}
+
+	@Test
+	void failedDependencyFailsTheDependentModel() {
+		readiness.load(ModelReadiness.OPENCV, () -> {
+			throw new UnsatisfiedLinkError("no opencv");
+		});
+		CompletableFuture<String> cascade = readiness.load("cascade", () -> "cascade", ModelReadiness.OPENCV);
+
+		assertThrows(Exception.class, cascade::join);
+		assertThrows(ModelNotReadyException.class, () -> readiness.require("cascade", cascade));
+		assertEquals("FAILED: no opencv", readiness.states().get("cascade"));
+	}
+}
@@ -0,0 +1,103 @@
+package com.passportphoto.service.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.passportphoto.service.pipeline.Deadline;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SingleFlightTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final SingleFlight<String, String> flights = new SingleFlight<>("test", registry);
+
+	@Test
+	void concurrentCallersShareOneComputation() throws Exception {
+		CompletableFuture<String> computation = new CompletableFuture<>();
+		AtomicInteger started = new AtomicInteger();
+
+		CompletableFuture<String> leader = flights.execute("k", () -> {
+			started.incrementAndGet();
+			return computation;
+		});
+		CompletableFuture<String> follower = flights.execute("k", () -> {
+			started.incrementAndGet();
+			return CompletableFuture.completedFuture("other");
+		});
+		computation.complete("result");
+
+		assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+		assertEquals("result", follower.get(5, TimeUnit.SECONDS));
+		assertEquals(1, started.get());
+		assertEquals(0, flights.size());
+		assertEquals(1.0, registry.get("singleflight.requests").tag("role", "follower").counter().count());
+	}
+
+	@Test
+	void finishedFlightIsNotReused() throws Exception {
+		assertEquals("a", flights.executeBlocking("k", () -> "a"));
+		assertEquals("b", flights.executeBlocking("k", () -> "b"));
+	}
+
+	@Test
+	void cancellingOneCallerDoesNotAffectTheOthers() throws Exception {
+		CompletableFuture<String> computation = new CompletableFuture<>();
+		CompletableFuture<String> leader = flights.execute("k", () -> computation);
+		CompletableFuture<String> follower = flights.execute("k", () -> computation);
+
+		leader.cancel(true);
+		computation.complete("result");
+		assertEquals("result", follower.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void failureIsSharedUnwrapped() throws Exception {
+		CompletableFuture<String> computation = new CompletableFuture<>();
+		CompletableFuture<String> leader = flights.execute("k", () -> computation);
+		IllegalStateException failure = new IllegalStateException("boom");
+		computation.completeExceptionally(failure);
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+		assertSame(failure, e.getCause());
+		assertSame(failure, assertThrows(IllegalStateException.class,
+				() -> flights.executeBlocking("k", () -> { throw failure; })));
+		assertEquals(0, flights.size());
+	}
+
+	@Test
+	void flightIsAbandonedOnlyWhenEveryCallerIs() throws Exception {
+		Deadline first = Deadline.group();
+		Deadline second = Deadline.group();
+		Deadline[] running = new Deadline[1];
+		CompletableFuture<String> computation = new CompletableFuture<>();
+
+		try (Deadline.Scope scope = Deadline.attach(first)) {
+			flights.execute("k", () -> {
+				running[0] = Deadline.current();
+				return computation;
+			});
+		}
+		try (Deadline.Scope scope = Deadline.attach(second)) {
+			flights.execute("k", () -> computation);
+		}
+
+		first.cancel(Deadline.Reason.FAILED);
+		assertFalse(running[0].isAbandoned());
+		assertEquals(1, flights.size());
+
+		second.cancel(Deadline.Reason.FAILED);
+		assertTrue(running[0].isAbandoned());
+		assertEquals(0, flights.size());
+	}
+}
@@ -0,0 +1,139 @@
+package com.passportphoto.service.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.passportphoto.exceptions.ImageNotReadyException;
+import com.passportphoto.exceptions.JobNotFoundException;
+import com.passportphoto.exceptions.ServiceOverloadedException;
+import com.passportphoto.service.AutomatePassportPhotoService;
+import com.passportphoto.service.store.ImageBufferStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BatchJobServiceTest {
+
+	private static final String RESULT = "data:image/jpg;base64,AQID";
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private AutomatePassportPhotoService automate;
+	private BatchJobService service;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		automate = mock(AutomatePassportPhotoService.class);
+		when(automate.automatePassportPhoto(any(), any(), any())).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return RESULT;
+		});
+		service = create(10);
+	}
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		service.shutdown();
+	}
+
+	@Test
+	void pendingImageIsNotReportedAsMissing() throws Exception {
+		String jobId = service.submit(List.of(upload()), "us", null);
+
+		ImageNotReadyException e = assertThrows(ImageNotReadyException.class, () -> service.getImage(jobId, 0));
+		assertEquals("PENDING", e.getStatus());
+		assertThrows(JobNotFoundException.class, () -> service.getImage("unknown", 0));
+	}
+
+	@Test
+	void finishedImageIsReturned() throws Exception {
+		String jobId = service.submit(List.of(upload()), "us", null);
+		release.countDown();
+		awaitCompletion(jobId);
+
+		assertEquals(RESULT, service.getImage(jobId, 0));
+	}
+
+	@Test
+	void submissionsBeyondTheRunningJobsAreRejected() throws Exception {
+		service.shutdown();
+		service = create(1);
+		String running = service.submit(List.of(upload()), "us", null);
+
+		ServiceOverloadedException e = assertThrows(ServiceOverloadedException.class,
+				() -> service.submit(List.of(upload()), "us", null));
+		assertEquals(7, e.getRetryAfterSeconds());
+		assertEquals("RUNNING", service.getProgress(running).getStatus());
+
+		release.countDown();
+		awaitCompletion(running);
+		String next = service.submit(List.of(upload()), "us", null);
+		awaitCompletion(next);
+		assertEquals(RESULT, service.getImage(next, 0));
+	}
+
+	@Test
+	void subscribingToACompletedJobReplaysAndCompletes() throws Exception {
+		String jobId = service.submit(List.of(upload(), upload()), "us", null);
+		release.countDown();
+		awaitCompletion(jobId);
+
+		SseEmitter emitter = service.subscribe(jobId);
+		assertTrue(emitter.getTimeout() > 0);
+		// Completed emitters reject further events; completion happens after the replay is sent
+		for (int i = 0; i < 500 && accepts(emitter); i++) {
+			Thread.sleep(10);
+		}
+		assertThrows(IllegalStateException.class, () -> emitter.send("late"));
+	}
+
+	@Test
+	void subscribingWhileTheJobFinishesNeverThrows() throws Exception {
+		String jobId = service.submit(List.of(upload(), upload(), upload()), "us", null);
+		release.countDown();
+		for (int i = 0; i < 50; i++) {
+			service.subscribe(jobId);
+		}
+		awaitCompletion(jobId);
+	}
+
+	private static boolean accepts(SseEmitter emitter) {
+		try {
+			emitter.send(SseEmitter.event().comment("probe"));
+			return true;
+		} catch (IllegalStateException | IOException e) {
+			return false;
+		}
+	}
+
+	private BatchJobService create(long maxJobs) throws IOException {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		return new BatchJobService(automate, 1, 30, maxJobs, 1 << 20, 60_000, 7, registry,
+				new ImageBufferStore(1 << 20, 1 << 20, "", registry));
+	}
+
+	private void awaitCompletion(String jobId) throws InterruptedException {
+		for (int i = 0; i < 500 && !"COMPLETED".equals(service.getProgress(jobId).getStatus()); i++) {
+			Thread.sleep(10);
+		}
+		assertEquals("COMPLETED", service.getProgress(jobId).getStatus());
+	}
+
+	private static MockMultipartFile upload() {
+		return new MockMultipartFile("images", "photo.jpg", "image/jpeg", new byte[] { 1, 2, 3 });
+	}
+}
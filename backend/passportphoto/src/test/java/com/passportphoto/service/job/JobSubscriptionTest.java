@@ -0,0 +1,113 @@
+package com.passportphoto.service.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+class JobSubscriptionTest {
+
+	private final ExecutorService delivery = Executors.newCachedThreadPool();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final List<String> written = new CopyOnWriteArrayList<>();
+	private SseEmitter emitter;
+	private JobSubscription subscription;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		emitter = mock(SseEmitter.class);
+		// A client that stalls until released
+		doAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			written.add(data(invocation.getArgument(0, SseEmitter.SseEventBuilder.class)));
+			return null;
+		}).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+		doAnswer(invocation -> written.add("complete")).when(emitter).complete();
+		subscription = new JobSubscription(emitter, delivery);
+	}
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		delivery.shutdownNow();
+	}
+
+	@Test
+	void stalledClientDoesNotBlockTheSender() throws Exception {
+		long start = System.nanoTime();
+		subscription.send(event("1"));
+		subscription.send(event("2"));
+		subscription.complete();
+		subscription.send(event("late"));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		assertTrue(written.isEmpty());
+
+		release.countDown();
+		await(() -> written.size() == 3);
+		assertEquals(List.of("event:image\ndata:1\n\n", "event:image\ndata:2\n\n", "complete"), written);
+	}
+
+	@Test
+	void closedSubscriptionDropsQueuedEvents() throws Exception {
+		subscription.send(event("1"));
+		subscription.send(event("2"));
+		subscription.close();
+		subscription.complete();
+
+		release.countDown();
+		Thread.sleep(100);
+		assertTrue(written.size() <= 1);
+		assertTrue(written.stream().noneMatch(call -> call.contains("data:2") || call.equals("complete")));
+	}
+
+	@Test
+	void failedWriteEndsTheStream() throws Exception {
+		doAnswer(invocation -> {
+			written.add("failed");
+			throw new IOException("Broken pipe");
+		}).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+		subscription.send(event("1"));
+		subscription.send(event("2"));
+		subscription.complete();
+
+		await(() -> !written.isEmpty());
+		Thread.sleep(100);
+		assertEquals(List.of("failed"), written);
+	}
+
+	private static SseEmitter.SseEventBuilder event(String data) {
+		return SseEmitter.event().name("image").data(data);
+	}
+
+	/**
+	 * Joins the parts of an event as they are written to the stream.
+	 */
+	private static String data(SseEmitter.SseEventBuilder event) {
+		return event.build().stream()
+				.map(part -> String.valueOf(part.getData()))
+				.collect(Collectors.joining());
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+}
@@ -0,0 +1,123 @@
+package com.passportphoto.service.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.passportphoto.service.AutomatePassportPhotoService;
+
+class ZipBatchServiceTest {
+
+	private ZipBatchService service;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		AutomatePassportPhotoService automate = mock(AutomatePassportPhotoService.class);
+		when(automate.automatePassportPhoto(any(), any(), any())).thenAnswer(invocation -> {
+			MultipartFile file = invocation.getArgument(0);
+			if (file.getOriginalFilename().startsWith("bad")) {
+				throw new IllegalStateException("No face found");
+			}
+			return "data:image/jpg;base64,AQID";
+		});
+		service = new ZipBatchService(automate, 2, 16, 100);
+	}
+
+	@AfterEach
+	void tearDown() {
+		service.shutdown();
+	}
+
+	@Test
+	void writesResultsAndManifestForEveryEntry() throws Exception {
+		Map<String, byte[]> input = new LinkedHashMap<>();
+		input.put("a.jpg", new byte[] { 1 });
+		input.put("a.png", new byte[] { 2 });
+		input.put("notes.txt", new byte[] { 3 });
+		input.put("huge.jpg", new byte[32]);
+		input.put("bad.jpg", new byte[] { 4 });
+
+		Map<String, byte[]> output = run(zip(input));
+
+		assertTrue(output.containsKey("a.jpg"));
+		assertTrue(output.containsKey("a-1.jpg"));
+		assertEquals(3, output.size());
+
+		List<Map<String, Object>> manifest = new ObjectMapper().readValue(output.get(ZipBatchService.MANIFEST_NAME),
+				new TypeReference<>() { });
+		Map<String, String> statuses = new LinkedHashMap<>();
+		for (Map<String, Object> item : manifest) {
+			statuses.put((String) item.get("entry"), (String) item.get("status"));
+		}
+		assertEquals("success", statuses.get("a.jpg"));
+		assertEquals("success", statuses.get("a.png"));
+		assertEquals("skipped", statuses.get("notes.txt"));
+		assertEquals("failed", statuses.get("huge.jpg"));
+		assertEquals("failed", statuses.get("bad.jpg"));
+	}
+
+	@Test
+	void stopsReadingAtTheEntryLimit() throws Exception {
+		ZipBatchService limited = new ZipBatchService(mock(AutomatePassportPhotoService.class), 1, 16, 1);
+		try {
+			Map<String, byte[]> input = new LinkedHashMap<>();
+			input.put("one.jpg", new byte[] { 1 });
+			input.put("two.jpg", new byte[] { 2 });
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			limited.process(new ByteArrayInputStream(zip(input)), out, "us", null);
+			String manifest = new String(read(out.toByteArray()).get(ZipBatchService.MANIFEST_NAME));
+			assertTrue(manifest.contains("Entry limit of 1 reached"));
+		} finally {
+			limited.shutdown();
+		}
+	}
+
+	private Map<String, byte[]> run(byte[] archive) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		service.process(new ByteArrayInputStream(archive), out, "us", null);
+		return read(out.toByteArray());
+	}
+
+	private static byte[] zip(Map<String, byte[]> entries) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ZipOutputStream zout = new ZipOutputStream(out)) {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				zout.putNextEntry(new ZipEntry(entry.getKey()));
+				zout.write(entry.getValue());
+				zout.closeEntry();
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static Map<String, byte[]> read(byte[] archive) throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		try (ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(archive))) {
+			ZipEntry entry;
+			while ((entry = zin.getNextEntry()) != null) {
+				entries.put(entry.getName(), zin.readAllBytes());
+			}
+		}
+		return entries;
+	}
+}
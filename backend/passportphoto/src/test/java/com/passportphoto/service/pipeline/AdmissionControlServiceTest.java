@@ -0,0 +1,126 @@
+package com.passportphoto.service.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.passportphoto.exceptions.ServiceOverloadedException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AdmissionControlServiceTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void shedsOnceTheConcurrencyCapIsReached() {
+		AdmissionControlService admission = create(2, 0, 1, 100, 0);
+		admission.admit(1);
+		admission.admit(1);
+
+		ServiceOverloadedException e = assertThrows(ServiceOverloadedException.class, () -> admission.admit(1));
+		assertEquals(7, e.getRetryAfterSeconds());
+		assertEquals(1.0, registry.get("admission.rejected").counter().count());
+	}
+
+	@Test
+	void waitingRequestIsAdmittedWhenAPermitIsReleased() throws Exception {
+		AdmissionControlService admission = create(1, 1, 5_000, 100, 0);
+		AdmissionControlService.Permit first = admission.admit(1);
+
+		CompletableFuture<AdmissionControlService.Permit> second = CompletableFuture.supplyAsync(() -> admission.admit(1));
+		await(() -> admission.getWaiting() == 1);
+		first.close();
+
+		second.get(5, TimeUnit.SECONDS).close();
+		assertEquals(0, admission.getInFlight());
+	}
+
+	@Test
+	void megapixelBudgetLimitsAdmission() {
+		AdmissionControlService admission = create(4, 0, 1, 10, 0);
+		admission.admit(8_000_000);
+
+		assertThrows(ServiceOverloadedException.class, () -> admission.admit(4_000_000));
+		admission.admit(2_000_000);
+		assertEquals(10_000_000, admission.getPixelsInFlight());
+	}
+
+	@Test
+	void closingAPermitTwiceReleasesItOnce() {
+		AdmissionControlService admission = create(2, 0, 1, 100, 0);
+		AdmissionControlService.Permit permit = admission.admit(1_000);
+		admission.admit(1_000);
+
+		permit.close();
+		permit.close();
+		assertEquals(1, admission.getInFlight());
+		assertEquals(1_000, admission.getPixelsInFlight());
+	}
+
+	@Test
+	void batchWorkLeavesTheReservedSlotsFree() throws Exception {
+		AdmissionControlService admission = create(2, 0, 1, 100, 1);
+		admission.admitBlocking(1);
+
+		CompletableFuture<AdmissionControlService.Permit> batch = CompletableFuture.supplyAsync(() -> {
+			try {
+				return admission.admitBlocking(1);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Thread.sleep(100);
+		assertFalse(batch.isDone());
+
+		// The reserved slot still admits interactive work at once
+		admission.admit(1).close();
+		assertEquals(1, admission.getBatchInFlight());
+		batch.cancel(true);
+	}
+
+	@Test
+	void waitingInteractiveRequestGoesBeforeBatchWork() throws Exception {
+		AdmissionControlService admission = create(2, 1, 5_000, 100, 0);
+		AdmissionControlService.Permit first = admission.admit(1);
+		admission.admit(1);
+
+		CompletableFuture<AdmissionControlService.Permit> interactive = CompletableFuture
+				.supplyAsync(() -> admission.admit(1));
+		await(() -> admission.getWaiting() == 1);
+		Thread batchThread = Thread.ofPlatform().start(() -> {
+			try {
+				admission.admitBlocking(1);
+			} catch (InterruptedException e) {
+				// Interrupted at the end of the test
+			}
+		});
+		await(() -> batchThread.getState() == Thread.State.WAITING);
+
+		first.close();
+		interactive.get(5, TimeUnit.SECONDS);
+		assertEquals(0, admission.getBatchInFlight());
+		assertTrue(batchThread.isAlive());
+		batchThread.interrupt();
+	}
+
+	private AdmissionControlService create(int maxConcurrent, int maxWaiting, long waitTimeoutMillis,
+			long maxMegapixels, int interactiveReserved) {
+		return new AdmissionControlService(maxConcurrent, maxWaiting, waitTimeoutMillis, maxMegapixels, 7,
+				interactiveReserved, registry);
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+}
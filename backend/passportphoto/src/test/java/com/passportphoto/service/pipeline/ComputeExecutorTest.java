@@ -0,0 +1,84 @@
+package com.passportphoto.service.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.passportphoto.exceptions.PipelineBusyException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ComputeExecutorTest {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final ComputeExecutor compute = new ComputeExecutor(1, 1, registry);
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		compute.shutdown();
+	}
+
+	@Test
+	void platformThreadRunsTheTaskItself() {
+		String thread = compute.call(() -> Thread.currentThread().getName());
+
+		assertEquals(Thread.currentThread().getName(), thread);
+	}
+
+	@Test
+	void virtualThreadRunsTheTaskOnAComputeThread() throws Exception {
+		String thread = onVirtualThread(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+
+		assertEquals("compute-1", thread);
+	}
+
+	@Test
+	void callIsRejectedWhenTheQueueIsFull() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture<String> running = onVirtualThread(() -> {
+			started.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return "running";
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		CompletableFuture<String> queued = onVirtualThread(() -> "queued");
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (registry.get("compute.queue.depth").gauge().value() < 1 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+
+		CompletableFuture<String> rejected = onVirtualThread(() -> "rejected");
+		ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(PipelineBusyException.class, e.getCause());
+
+		release.countDown();
+		assertEquals("running", running.get(5, TimeUnit.SECONDS));
+		assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Calls the compute executor from a virtual thread, as a request thread does.
+	 */
+	private <T> CompletableFuture<T> onVirtualThread(ComputeExecutor.Task<T, Exception> task) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Thread.ofVirtual().start(() -> {
+			try {
+				result.complete(compute.call(task));
+			} catch (Throwable t) {
+				result.completeExceptionally(t);
+			}
+		});
+		return result;
+	}
+}
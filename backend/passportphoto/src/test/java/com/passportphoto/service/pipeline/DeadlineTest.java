@@ -0,0 +1,123 @@
+package com.passportphoto.service.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.passportphoto.exceptions.RequestAbandonedException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class DeadlineTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void attachRestoresThePreviousDeadline() {
+		Deadline outer = Deadline.group();
+		Deadline inner = Deadline.group();
+
+		try (Deadline.Scope a = Deadline.attach(outer)) {
+			try (Deadline.Scope b = Deadline.attach(inner)) {
+				assertSame(inner, Deadline.current());
+			}
+			assertSame(outer, Deadline.current());
+		}
+		assertNull(Deadline.current());
+	}
+
+	@Test
+	void cancelRunsListenersOnceAndChecksFail() {
+		Deadline deadline = Deadline.group();
+		AtomicInteger calls = new AtomicInteger();
+		deadline.onCancel(calls::incrementAndGet);
+		Deadline.Registration removed = deadline.onCancel(calls::incrementAndGet);
+		removed.close();
+
+		deadline.cancel(Deadline.Reason.FAILED);
+		deadline.cancel(Deadline.Reason.EXPIRED);
+		deadline.onCancel(calls::incrementAndGet);
+
+		assertEquals(2, calls.get());
+		assertEquals(Deadline.Reason.FAILED, deadline.getReason());
+		try (Deadline.Scope scope = Deadline.attach(deadline)) {
+			assertThrows(RequestAbandonedException.class, () -> Deadline.check("resize"));
+		}
+	}
+
+	@Test
+	void groupIsAbandonedOnlyWhenEveryParticipantIs() {
+		Deadline first = Deadline.group();
+		Deadline second = Deadline.group();
+		Deadline group = Deadline.group();
+		group.retain(first);
+		group.retain(second);
+
+		first.cancel(Deadline.Reason.EXPIRED);
+		assertFalse(group.isAbandoned());
+		second.cancel(Deadline.Reason.FAILED);
+		assertTrue(group.isAbandoned());
+		assertEquals(Deadline.Reason.FAILED, group.getReason());
+	}
+
+	@Test
+	void participantWithoutDeadlineKeepsTheGroupAlive() {
+		Deadline first = Deadline.group();
+		Deadline group = Deadline.group(Arrays.asList(first, null));
+
+		first.cancel(Deadline.Reason.EXPIRED);
+		assertFalse(group.isAbandoned());
+	}
+
+	@Test
+	void earlierAbandonedParticipantDoesNotCancelAFormingGroup() {
+		Deadline abandoned = Deadline.group();
+		abandoned.cancel(Deadline.Reason.FAILED);
+		Deadline live = Deadline.group();
+
+		Deadline group = Deadline.group(Arrays.asList(abandoned, live));
+		assertFalse(group.isAbandoned());
+
+		live.cancel(Deadline.Reason.EXPIRED);
+		assertTrue(group.isAbandoned());
+	}
+
+	@Test
+	void expiresAfterTheConfiguredTime() throws InterruptedException {
+		RequestDeadlines deadlines = new RequestDeadlines(20, registry);
+		try {
+			Deadline deadline = deadlines.start();
+			for (int i = 0; i < 100 && !deadline.isAbandoned(); i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(Deadline.Reason.EXPIRED, deadline.getReason());
+
+			deadline.abandoned("inference");
+			assertEquals(1.0, registry.get("request.abandoned").tag("stage", "inference")
+					.tag("reason", "expired").counter().count());
+		} finally {
+			deadlines.shutdown();
+		}
+	}
+
+	@Test
+	void finishedRequestNeverExpires() throws InterruptedException {
+		RequestDeadlines deadlines = new RequestDeadlines(50, registry);
+		try {
+			Deadline deadline = deadlines.start();
+			deadline.finish();
+			Thread.sleep(150);
+			assertFalse(deadline.isAbandoned());
+		} finally {
+			deadlines.shutdown();
+		}
+	}
+}
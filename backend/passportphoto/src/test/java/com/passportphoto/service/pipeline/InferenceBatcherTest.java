@@ -0,0 +1,134 @@
+package com.passportphoto.service.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.passportphoto.exceptions.RequestAbandonedException;
+import com.passportphoto.service.BackgroundRemovalService;
+
+import ai.onnxruntime.OrtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class InferenceBatcherTest {
+
+	private BackgroundRemovalService model;
+	private StagedPipelineExecutor pipeline;
+	private InferenceBatcher batcher;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		model = mock(BackgroundRemovalService.class);
+		// Each output echoes the first value of its input
+		when(model.runModel(any(), anyInt(), anyInt()))
+				.thenAnswer(invocation -> new float[] { ((FloatBuffer) invocation.getArgument(0)).get(0) });
+		when(model.runModelBatch(any(), anyInt(), anyInt())).thenAnswer(invocation -> {
+			List<FloatBuffer> inputs = invocation.getArgument(0);
+			List<float[]> outputs = new ArrayList<>();
+			for (FloatBuffer input : inputs) {
+				outputs.add(new float[] { input.get(0) });
+			}
+			return outputs;
+		});
+		pipeline = new StagedPipelineExecutor(new MockEnvironment(), new SimpleMeterRegistry(),
+				StagedPipelineExecutor.QueueFullPolicy.REJECT, 5_000);
+		batcher = new InferenceBatcher(model, pipeline, 2, 50, new SimpleMeterRegistry());
+	}
+
+	@AfterEach
+	void tearDown() {
+		batcher.shutdown();
+		pipeline.shutdown();
+	}
+
+	@Test
+	void fullGroupRunsAsOneBatch() throws Exception {
+		CompletableFuture<float[]> first = batcher.submit(input(1), 4, 4);
+		CompletableFuture<float[]> second = batcher.submit(input(2), 4, 4);
+
+		assertArrayEquals(new float[] { 1 }, first.get(5, TimeUnit.SECONDS));
+		assertArrayEquals(new float[] { 2 }, second.get(5, TimeUnit.SECONDS));
+		verify(model, times(1)).runModelBatch(any(), anyInt(), anyInt());
+		verify(model, never()).runModel(any(), anyInt(), anyInt());
+	}
+
+	@Test
+	void partialGroupIsFlushedAfterTheWait() throws Exception {
+		CompletableFuture<float[]> alone = batcher.submit(input(3), 4, 4);
+		CompletableFuture<float[]> otherShape = batcher.submit(input(4), 8, 8);
+
+		assertArrayEquals(new float[] { 3 }, alone.get(5, TimeUnit.SECONDS));
+		assertArrayEquals(new float[] { 4 }, otherShape.get(5, TimeUnit.SECONDS));
+		verify(model, never()).runModelBatch(any(), anyInt(), anyInt());
+	}
+
+	@Test
+	void invalidBatchInputTurnsBatchingOff() throws Exception {
+		doThrow(new OrtException(OrtException.OrtErrorCode.ORT_INVALID_ARGUMENT, "Got invalid dimensions"))
+				.when(model).runModelBatch(any(), anyInt(), anyInt());
+		runPair();
+		runPair();
+
+		verify(model, times(1)).runModelBatch(any(), anyInt(), anyInt());
+		verify(model, times(4)).runModel(any(), anyInt(), anyInt());
+	}
+
+	@Test
+	void transientFailureKeepsBatchingOn() throws Exception {
+		doThrow(new OrtException(OrtException.OrtErrorCode.ORT_FAIL, "Exiting due to terminate flag"))
+				.doReturn(List.of(new float[] { 1 }, new float[] { 2 }))
+				.when(model).runModelBatch(any(), anyInt(), anyInt());
+		runPair();
+		runPair();
+
+		verify(model, times(2)).runModelBatch(any(), anyInt(), anyInt());
+		verify(model, times(2)).runModel(any(), anyInt(), anyInt());
+	}
+
+	@Test
+	void abandonedInputIsLeftOutOfItsGroup() throws Exception {
+		Deadline abandoned = Deadline.group();
+		abandoned.retain(Deadline.group());
+		CompletableFuture<float[]> dropped;
+		try (Deadline.Scope scope = Deadline.attach(abandoned)) {
+			dropped = batcher.submit(input(5), 4, 4);
+		}
+		abandoned.cancel(Deadline.Reason.FAILED);
+		CompletableFuture<float[]> kept = batcher.submit(input(6), 4, 4);
+
+		assertArrayEquals(new float[] { 6 }, kept.get(5, TimeUnit.SECONDS));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> dropped.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(RequestAbandonedException.class, e.getCause());
+	}
+
+	private void runPair() throws Exception {
+		CompletableFuture<float[]> first = batcher.submit(input(1), 4, 4);
+		CompletableFuture<float[]> second = batcher.submit(input(2), 4, 4);
+		assertArrayEquals(new float[] { 1 }, first.get(5, TimeUnit.SECONDS));
+		assertArrayEquals(new float[] { 2 }, second.get(5, TimeUnit.SECONDS));
+	}
+
+	private static FloatBuffer input(float value) {
+		return FloatBuffer.wrap(new float[] { value });
+	}
+}
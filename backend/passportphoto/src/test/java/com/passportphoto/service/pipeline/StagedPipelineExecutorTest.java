@@ -0,0 +1,132 @@
+package com.passportphoto.service.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.passportphoto.exceptions.PipelineBusyException;
+import com.passportphoto.service.pipeline.StagedPipelineExecutor.QueueFullPolicy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class StagedPipelineExecutorTest {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private StagedPipelineExecutor executor;
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		executor.shutdown();
+	}
+
+	@Test
+	void runsTasksOnTheStageThreads() throws Exception {
+		executor = create(QueueFullPolicy.REJECT);
+		String thread = executor.submit(PipelineStage.RESIZE, WorkloadClass.INTERACTIVE,
+				() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+
+		assertEquals("pipeline-resize-1", thread);
+	}
+
+	@Test
+	void callerRunsOnlyForTheThreadEnteringThePipeline() throws Exception {
+		executor = create(QueueFullPolicy.CALLER_RUNS);
+		saturate(PipelineStage.DECODE);
+
+		String thread = executor.submit(PipelineStage.DECODE, WorkloadClass.INTERACTIVE,
+				() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+		assertEquals(Thread.currentThread().getName(), thread);
+
+		// A stage chaining into the full stage waits for room instead of running it on its own thread
+		CountDownLatch upstream = new CountDownLatch(1);
+		CompletableFuture<String> chained = executor.submit(PipelineStage.RESIZE, WorkloadClass.INTERACTIVE,
+				() -> upstream.await(5, TimeUnit.SECONDS))
+				.thenCompose(x -> executor.submit(PipelineStage.DECODE, WorkloadClass.INTERACTIVE,
+						() -> Thread.currentThread().getName()));
+		upstream.countDown();
+		Thread.sleep(100);
+		assertFalse(chained.isDone());
+		release.countDown();
+		assertEquals("pipeline-decode-1", chained.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void handoffFailsWhenTheStageStaysFull() throws Exception {
+		executor = create(QueueFullPolicy.CALLER_RUNS, 50);
+		saturate(PipelineStage.DECODE);
+
+		CountDownLatch upstream = new CountDownLatch(1);
+		CompletableFuture<String> chained = executor.submit(PipelineStage.RESIZE, WorkloadClass.INTERACTIVE,
+				() -> upstream.await(5, TimeUnit.SECONDS))
+				.thenCompose(x -> executor.submit(PipelineStage.DECODE, WorkloadClass.INTERACTIVE, () -> "y"));
+		upstream.countDown();
+		ExecutionException e = assertThrows(ExecutionException.class, () -> chained.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(PipelineBusyException.class, e.getCause());
+	}
+
+	@Test
+	void rejectPolicyFailsTheEntrySubmit() throws Exception {
+		executor = create(QueueFullPolicy.REJECT);
+		saturate(PipelineStage.DECODE);
+
+		CompletableFuture<String> rejected = executor.submit(PipelineStage.DECODE, WorkloadClass.INTERACTIVE,
+				() -> "x");
+		ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(PipelineBusyException.class, e.getCause());
+	}
+
+	@Test
+	void fullBatchQueueDoesNotRejectInteractiveWork() throws Exception {
+		executor = create(QueueFullPolicy.REJECT);
+		CountDownLatch started = new CountDownLatch(1);
+		executor.submit(PipelineStage.DECODE, WorkloadClass.BATCH, () -> {
+			started.countDown();
+			return release.await(5, TimeUnit.SECONDS);
+		});
+		started.await(5, TimeUnit.SECONDS);
+		executor.submit(PipelineStage.DECODE, WorkloadClass.BATCH, () -> "queued");
+
+		CompletableFuture<String> interactive = executor.submit(PipelineStage.DECODE, WorkloadClass.INTERACTIVE,
+				() -> "ran");
+		assertFalse(interactive.isCompletedExceptionally());
+		release.countDown();
+		assertEquals("ran", interactive.get(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Occupies the only thread of the stage and fills its interactive queue.
+	 */
+	private void saturate(PipelineStage stage) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		executor.submit(stage, WorkloadClass.INTERACTIVE, () -> {
+			started.countDown();
+			return release.await(5, TimeUnit.SECONDS);
+		});
+		started.await(5, TimeUnit.SECONDS);
+		executor.submit(stage, WorkloadClass.INTERACTIVE, () -> "queued");
+	}
+
+	private static StagedPipelineExecutor create(QueueFullPolicy policy) {
+		return create(policy, 5_000);
+	}
+
+	private static StagedPipelineExecutor create(QueueFullPolicy policy, long handoffTimeoutMillis) {
+		MockEnvironment env = new MockEnvironment();
+		for (PipelineStage stage : PipelineStage.values()) {
+			env.setProperty("pipeline.stage." + stage.getKey() + ".threads", "1");
+			env.setProperty("pipeline.stage." + stage.getKey() + ".queue-capacity", "1");
+		}
+		return new StagedPipelineExecutor(env, new SimpleMeterRegistry(), policy, handoffTimeoutMillis);
+	}
+}
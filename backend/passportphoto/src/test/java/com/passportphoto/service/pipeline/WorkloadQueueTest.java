@@ -0,0 +1,93 @@
+package com.passportphoto.service.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class WorkloadQueueTest {
+
+	private final WorkloadQueue queue = new WorkloadQueue(10,
+			Map.of(WorkloadClass.INTERACTIVE, 4, WorkloadClass.BATCH, 1));
+
+	@Test
+	void fullBatchQueueStillAcceptsInteractiveWork() {
+		WorkloadQueue small = new WorkloadQueue(2, Map.of(WorkloadClass.INTERACTIVE, 4, WorkloadClass.BATCH, 1));
+		assertTrue(small.offer(task(WorkloadClass.BATCH)));
+		assertTrue(small.offer(task(WorkloadClass.BATCH)));
+
+		assertFalse(small.offer(task(WorkloadClass.BATCH)));
+		assertTrue(small.offer(task(WorkloadClass.INTERACTIVE)));
+		assertEquals(2, small.size(WorkloadClass.BATCH));
+		assertEquals(1, small.size(WorkloadClass.INTERACTIVE));
+		assertEquals(1, small.remainingCapacity());
+	}
+
+	@Test
+	void backloggedClassesAreServedByWeight() throws InterruptedException {
+		for (int i = 0; i < 10; i++) {
+			queue.offer(task(WorkloadClass.INTERACTIVE));
+			queue.offer(task(WorkloadClass.BATCH));
+		}
+
+		for (int round = 0; round < 2; round++) {
+			int batch = 0;
+			for (int i = 0; i < 5; i++) {
+				if (((WorkloadQueue.Task) queue.take()).workload() == WorkloadClass.BATCH) {
+					batch++;
+				}
+			}
+			assertEquals(1, batch);
+		}
+	}
+
+	@Test
+	void loneClassDrainsInArrivalOrder() {
+		Runnable first = task(WorkloadClass.BATCH);
+		Runnable second = task(WorkloadClass.BATCH);
+		queue.offer(first);
+		queue.offer(second);
+
+		assertSame(first, queue.poll());
+		assertSame(second, queue.poll());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	void waitingBatchTaskIsServedAfterInteractiveBurst() throws InterruptedException {
+		Runnable batch = task(WorkloadClass.BATCH);
+		queue.offer(batch);
+		for (int i = 0; i < 8; i++) {
+			queue.offer(task(WorkloadClass.INTERACTIVE));
+		}
+
+		int position = 0;
+		while (queue.poll(1, TimeUnit.SECONDS) != batch) {
+			position++;
+		}
+		assertTrue(position <= 4, "batch task waited behind " + position + " tasks");
+	}
+
+	@Test
+	void plainRunnableCountsAsInteractive() {
+		Runnable plain = () -> {
+		};
+		queue.offer(plain);
+
+		assertEquals(1, queue.size(WorkloadClass.INTERACTIVE));
+		assertEquals(0, queue.size(WorkloadClass.BATCH));
+		assertTrue(queue.remove(plain));
+		assertEquals(0, queue.size());
+	}
+
+	private static Runnable task(WorkloadClass workload) {
+		return new WorkloadQueue.Task(workload, () -> {
+		});
+	}
+}
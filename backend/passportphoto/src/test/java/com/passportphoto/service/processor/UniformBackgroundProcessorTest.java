@@ -0,0 +1,84 @@
+package com.passportphoto.service.processor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import com.passportphoto.util.CanvasUtil;
+
+class UniformBackgroundProcessorTest {
+
+	@BeforeAll
+	static void loadOpenCv() {
+		nu.pattern.OpenCV.loadLocally();
+	}
+
+	@Test
+	void extendsAStripExactlyTwoBordersHigh() {
+		Mat strip = new Mat(20, 600, CvType.CV_8UC3, new Scalar(200, 150, 100));
+
+		Mat result = new UniformBackgroundProcessor().process(strip, 600, 800);
+
+		assertEquals(600, result.cols());
+		assertEquals(800, result.rows());
+		assertArrayEquals(new double[] { 200, 150, 100 }, result.get(0, 0), 1.0);
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+		"60, 40, 100, 80",  // padded on every side, so strips overlap at the corners
+		"60, 40, 100, 40",  // left and right only
+		"60, 40, 60, 90",   // top and bottom only
+		"61, 41, 100, 80",  // uneven padding on opposite sides
+		"60, 40, 62, 42",   // padding far narrower than the kernel
+	})
+	void stripBlurMatchesAFullFrameBlurUnderTheBorderMask(int width, int height, int targetWidth,
+			int targetHeight) {
+		Mat image = new Mat(height, width, CvType.CV_8UC3);
+		Core.setRNGSeed(7);
+		Core.randu(image, 0, 256);
+
+		Mat result = new UniformBackgroundProcessor().process(image, targetWidth, targetHeight);
+
+		Point offset = CanvasUtil.calculateCenterOffset(targetWidth, targetHeight, width, height);
+		int left = (int) offset.x;
+		int top = (int) offset.y;
+		int right = targetWidth - width - left;
+		int bottom = targetHeight - height - top;
+		Mat extended = new Mat();
+		Core.copyMakeBorder(image, extended, top, bottom, left, right, Core.BORDER_REPLICATE);
+		Mat blurred = new Mat();
+		Imgproc.GaussianBlur(extended, blurred, new Size(9, 9), 0);
+
+		// Blurred everywhere but the image shrunk by the feather band on its padded sides
+		int feather = Math.min(4, Math.min(width, height) / 2);
+		int x0 = left + (left > 0 ? feather : 0);
+		int y0 = top + (top > 0 ? feather : 0);
+		int x1 = left + width - (right > 0 ? feather : 0);
+		int y1 = top + height - (bottom > 0 ? feather : 0);
+		Mat mask = new Mat(targetHeight, targetWidth, CvType.CV_8UC1, new Scalar(255));
+		mask.submat(new Rect(x0, y0, x1 - x0, y1 - y0)).setTo(new Scalar(0));
+		Mat expected = extended.clone();
+		blurred.copyTo(expected, mask);
+
+		Mat diff = new Mat();
+		Core.absdiff(result, expected, diff);
+		double maxDiff = Core.minMaxLoc(diff.reshape(1)).maxVal;
+		assertTrue(maxDiff <= 1, "differs from the full-frame blur by " + maxDiff);
+		assertNotEquals(0, Core.norm(result, extended));
+	}
+}
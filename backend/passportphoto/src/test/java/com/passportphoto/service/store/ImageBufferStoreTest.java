@@ -0,0 +1,98 @@
+package com.passportphoto.service.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ImageBufferStoreTest {
+
+	private static final int THRESHOLD = 1024;
+	private static final int TENSOR_THRESHOLD = 4 * THRESHOLD;
+
+	@TempDir
+	Path dir;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private ImageBufferStore store;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		store = new ImageBufferStore(THRESHOLD, TENSOR_THRESHOLD, dir.toString(), registry);
+	}
+
+	@Test
+	void smallBuffersStayOnTheHeap() throws IOException {
+		ImageBuffer buffer = store.copyOf(new byte[] { 1, 2, 3 });
+
+		assertFalse(buffer.isMapped());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, buffer.toByteArray());
+		assertEquals(0, mappedBytes());
+	}
+
+	@Test
+	void largeBuffersAreMappedFromUnlinkedFiles() throws IOException {
+		byte[] data = new byte[THRESHOLD * 4];
+		data[data.length - 1] = 7;
+		ImageBuffer buffer = store.copyOf(new ByteArrayInputStream(data), data.length);
+
+		assertTrue(buffer.isMapped());
+		assertArrayEquals(data, buffer.toByteArray());
+		assertEquals(data.length, mappedBytes());
+		try (var files = Files.list(dir)) {
+			assertEquals(0, files.count());
+		}
+	}
+
+	@Test
+	void tensorsBelowTheTensorThresholdStayOnTheHeap() throws IOException {
+		// Twice the byte threshold, half the tensor threshold
+		FloatBuffer floats = store.allocateFloats(THRESHOLD / 2);
+
+		assertFalse(floats.isDirect());
+		assertEquals(0, mappedBytes());
+	}
+
+	@Test
+	void floatViewKeepsItsMappingCounted() throws Exception {
+		FloatBuffer floats = store.allocateFloats(TENSOR_THRESHOLD / Float.BYTES);
+		floats.put(0, 1.5f);
+		long size = TENSOR_THRESHOLD;
+
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertEquals(size, mappedBytes());
+		assertEquals(1.5f, floats.get(0));
+
+		floats = null;
+		for (int i = 0; i < 100 && mappedBytes() != 0; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertEquals(0, mappedBytes());
+	}
+
+	@Test
+	void streamEndingEarlyIsRejected() {
+		assertThrows(IOException.class, () -> store.copyOf(new ByteArrayInputStream(new byte[10]), 20));
+	}
+
+	private long mappedBytes() {
+		return (long) registry.get("buffer.store.mapped.bytes").gauge().value();
+	}
+}
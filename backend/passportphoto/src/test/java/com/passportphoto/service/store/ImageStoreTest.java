@@ -0,0 +1,81 @@
+package com.passportphoto.service.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.passportphoto.exceptions.ImageNotFoundException;
+import com.passportphoto.service.pipeline.ComputeExecutor;
+import com.passportphoto.util.HashUtil;
+import com.passportphoto.util.StoredMultipartFile;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ImageStoreTest {
+
+	private ComputeExecutor compute;
+	private ImageStore store;
+
+	@BeforeEach
+	void setUp() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		compute = new ComputeExecutor(1, 4, registry);
+		store = new ImageStore(1 << 20, 30, compute, registry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		compute.shutdown();
+	}
+
+	@Test
+	void storesUploadsUnderTheirContentHash() throws Exception {
+		MockMultipartFile upload = png();
+		StoredMultipartFile stored = store.put(upload);
+
+		assertEquals(HashUtil.sha256Hex(upload.getBytes()), stored.getId());
+		assertSame(stored, store.put(png()));
+		assertSame(stored, store.get(stored.getId()));
+	}
+
+	@Test
+	void resolvePrefersTheUploadedFile() throws Exception {
+		StoredMultipartFile stored = store.put(png());
+		MockMultipartFile upload = png();
+
+		assertSame(upload, store.resolve(upload, stored.getId()));
+		assertSame(stored, store.resolve(null, stored.getId()));
+		assertSame(stored, store.resolve(new MockMultipartFile("image", new byte[0]), stored.getId()));
+	}
+
+	@Test
+	void resolveWithoutFileOrIdReturnsTheUpload() {
+		MultipartFile empty = new MockMultipartFile("image", new byte[0]);
+
+		assertNull(store.resolve(null, null));
+		assertSame(empty, store.resolve(empty, " "));
+	}
+
+	@Test
+	void resolveRejectsUnknownIds() {
+		assertThrows(ImageNotFoundException.class, () -> store.resolve(null, "missing"));
+	}
+
+	private static MockMultipartFile png() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", out);
+		return new MockMultipartFile("image", "photo.png", "image/png", out.toByteArray());
+	}
+}
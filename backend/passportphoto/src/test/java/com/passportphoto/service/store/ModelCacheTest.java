@@ -0,0 +1,101 @@
+package com.passportphoto.service.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ModelCacheTest {
+
+	private static final String RESOURCE = "models/test-model.bin";
+	private static final byte[] MODEL = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+	@TempDir
+	Path dir;
+
+	private ClassLoader original;
+	private URLClassLoader jarLoader;
+	private ModelCache cache;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		Path jar = dir.resolve("models.jar");
+		try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+			out.putNextEntry(new JarEntry(RESOURCE));
+			out.write(MODEL);
+			out.closeEntry();
+		}
+		// Models are looked up through the context class loader, as in a packaged jar
+		original = Thread.currentThread().getContextClassLoader();
+		jarLoader = new URLClassLoader(new URL[] { jar.toUri().toURL() }, original);
+		Thread.currentThread().setContextClassLoader(jarLoader);
+		cache = new ModelCache(dir.resolve("cache").toString());
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		Thread.currentThread().setContextClassLoader(original);
+		jarLoader.close();
+	}
+
+	@Test
+	void jarEntryIsExtractedUnderItsContentHash() throws IOException {
+		Path extracted = cache.extract(RESOURCE);
+
+		assertArrayEquals(MODEL, Files.readAllBytes(extracted));
+		assertTrue(extracted.getFileName().toString().matches("[0-9a-f]{64}\\.bin"));
+		try (Stream<Path> files = Files.list(dir.resolve("cache"))) {
+			assertEquals(1, files.filter(f -> f.toString().endsWith(".ref")).count());
+		}
+	}
+
+	@Test
+	void laterExtractReusesTheCopyThroughTheReferenceFile() throws IOException {
+		Path extracted = cache.extract(RESOURCE);
+		// Same size, different bytes: only visible if the jar entry is not read again
+		byte[] marker = { 9, 9, 9, 9, 9, 9, 9, 9 };
+		try (OutputStream out = Files.newOutputStream(extracted)) {
+			out.write(marker);
+		}
+
+		Path reused = new ModelCache(dir.resolve("cache").toString()).extract(RESOURCE);
+
+		assertEquals(extracted, reused);
+		assertArrayEquals(marker, Files.readAllBytes(reused));
+	}
+
+	@Test
+	void referenceToAMissingCopyExtractsAgain() throws IOException {
+		Path extracted = cache.extract(RESOURCE);
+		Files.delete(extracted);
+
+		Path restored = cache.extract(RESOURCE);
+
+		assertEquals(extracted, restored);
+		assertArrayEquals(MODEL, Files.readAllBytes(restored));
+	}
+
+	@Test
+	void resourceOnAnExplodedClasspathIsUsedInPlace() throws IOException {
+		Path path = cache.extract("application.properties");
+
+		assertTrue(Files.isRegularFile(path));
+		try (Stream<Path> files = Files.list(dir.resolve("cache"))) {
+			assertEquals(0, files.count());
+		}
+	}
+}
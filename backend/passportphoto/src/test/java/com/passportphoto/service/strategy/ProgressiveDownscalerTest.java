@@ -0,0 +1,82 @@
+package com.passportphoto.service.strategy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+class ProgressiveDownscalerTest {
+
+	/** Smallest PSNR in dB accepted between the halving path and a direct resize */
+	private static final double MIN_PSNR = 40.0;
+
+	@BeforeAll
+	static void loadOpenCv() {
+		nu.pattern.OpenCV.loadLocally();
+		Core.setRNGSeed(42);
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"5472, 3648, 3, 600, 400",
+			"5471, 3647, 3, 600, 400",
+			"5472, 3648, 4, 600, 400",
+			"5471, 3647, 4, 600, 400",
+			"2001, 1501, 3, 200, 150" })
+	void halvingStaysCloseToADirectAreaResize(int width, int height, int channels, int newWidth, int newHeight) {
+		Mat image = photoLike(width, height, channels);
+		Size newSize = new Size(newWidth, newHeight);
+
+		Mat progressive = ProgressiveDownscaler.downscale(image, newSize, ProgressiveDownscaler.DEFAULT_MIN_RATIO);
+		Mat direct = directResize(image, newSize);
+
+		assertEquals(newSize, progressive.size());
+		assertEquals(image.type(), progressive.type());
+		double psnr = Core.PSNR(progressive, direct);
+		assertTrue(psnr >= MIN_PSNR, "PSNR " + psnr + " dB below " + MIN_PSNR);
+	}
+
+	@Test
+	void resizesInOneStepBelowTheRatio() {
+		Mat image = photoLike(1200, 900, 3);
+		Size newSize = new Size(400, 300);
+
+		Mat resized = ProgressiveDownscaler.downscale(image, newSize, ProgressiveDownscaler.DEFAULT_MIN_RATIO);
+
+		assertEquals(0, Core.norm(resized, directResize(image, newSize), Core.NORM_INF));
+	}
+
+	@Test
+	void zeroRatioAlwaysResizesInOneStep() {
+		Mat image = photoLike(4000, 3000, 3);
+		Size newSize = new Size(400, 300);
+
+		Mat resized = ProgressiveDownscaler.downscale(image, newSize, 0);
+
+		assertEquals(0, Core.norm(resized, directResize(image, newSize), Core.NORM_INF));
+	}
+
+	/**
+	 * Blurred noise: smooth like a photo, but with detail at every position.
+	 */
+	private static Mat photoLike(int width, int height, int channels) {
+		Mat image = new Mat(height, width, CvType.CV_8UC(channels));
+		Core.randu(image, 0, 255);
+		Imgproc.GaussianBlur(image, image, new Size(15, 15), 0);
+		return image;
+	}
+
+	private static Mat directResize(Mat image, Size newSize) {
+		Mat resized = new Mat();
+		Imgproc.resize(image, resized, newSize, 0, 0, Imgproc.INTER_AREA);
+		return resized;
+	}
+}
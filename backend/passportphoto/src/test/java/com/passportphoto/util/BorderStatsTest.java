@@ -0,0 +1,54 @@
+package com.passportphoto.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+class BorderStatsTest {
+
+	@BeforeAll
+	static void loadOpenCv() {
+		nu.pattern.OpenCV.loadLocally();
+	}
+
+	@Test
+	void imageExactlyTwoBandsHighHasEmptySideBands() {
+		Mat image = new Mat(20, 100, CvType.CV_8UC3, new Scalar(10, 20, 30));
+
+		BorderStats stats = BorderStats.of(image, 10);
+
+		assertNotNull(stats);
+		assertEquals(0, stats.get(BorderStats.Side.LEFT).pixels());
+		assertEquals(0, stats.get(BorderStats.Side.RIGHT).pixels());
+		assertEquals(20, stats.getMean().val[1], 1e-9);
+		assertTrue(stats.isUniform(1, 3));
+	}
+
+	@Test
+	void pooledStatisticsCoverAllBands() {
+		// Left half black, right half white: the perimeter is half of each
+		Mat image = new Mat(40, 40, CvType.CV_8UC1, new Scalar(0));
+		image.submat(0, 40, 20, 40).setTo(new Scalar(200));
+
+		BorderStats stats = BorderStats.of(image, 5);
+
+		assertEquals(100, stats.getMean().val[0], 1e-9);
+		assertEquals(100, stats.getStdDev().val[0], 1e-9);
+		assertFalse(stats.isUniform(15, 1));
+		assertTrue(stats.isUniform(BorderStats.Side.LEFT, 1, 1));
+		assertFalse(stats.isUniform(BorderStats.Side.TOP, 15, 1));
+	}
+
+	@Test
+	void imageSmallerThanTwoBandsHasNoStatistics() {
+		assertNull(BorderStats.of(new Mat(19, 100, CvType.CV_8UC3), 10));
+	}
+}
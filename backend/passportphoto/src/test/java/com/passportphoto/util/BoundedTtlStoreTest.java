@@ -0,0 +1,68 @@
+package com.passportphoto.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedTtlStoreTest {
+
+	@Test
+	void evictsLeastRecentlyUsedWhenOverWeight() {
+		BoundedTtlStore<String, String> store = new BoundedTtlStore<>(6, Duration.ofMinutes(1), String::length);
+		store.put("a", "aa");
+		store.put("b", "bb");
+		store.get("a");
+		store.put("c", "cc");
+		store.put("d", "dd");
+
+		assertNull(store.get("b"));
+		assertEquals("aa", store.get("a"));
+		assertEquals("dd", store.get("d"));
+		assertEquals(6, store.weight());
+	}
+
+	@Test
+	void dropsValuesHeavierThanTheStore() {
+		BoundedTtlStore<String, String> store = new BoundedTtlStore<>(3, Duration.ofMinutes(1), String::length);
+		store.put("a", "a");
+		store.put("big", "xxxx");
+
+		assertNull(store.get("big"));
+		assertEquals("a", store.get("a"));
+		assertEquals(1, store.weight());
+	}
+
+	@Test
+	void replacingAKeyKeepsTheWeightExact() {
+		BoundedTtlStore<String, String> store = new BoundedTtlStore<>(10, Duration.ofMinutes(1), String::length);
+		store.put("a", "aaa");
+		store.put("a", "a");
+
+		assertEquals(1, store.size());
+		assertEquals(1, store.weight());
+	}
+
+	@Test
+	void expiresEntriesAfterTheirTtl() throws InterruptedException {
+		BoundedTtlStore<String, String> store = new BoundedTtlStore<>(10, Duration.ofMillis(50), String::length);
+		store.put("a", "a");
+		Thread.sleep(100);
+
+		assertNull(store.get("a"));
+		assertEquals(0, store.weight());
+	}
+
+	@Test
+	void rewritingAnEntryRestartsItsTtl() throws InterruptedException {
+		BoundedTtlStore<String, String> store = new BoundedTtlStore<>(10, Duration.ofMillis(200), String::length);
+		store.put("a", "a");
+		Thread.sleep(120);
+		store.put("a", "a");
+		Thread.sleep(120);
+
+		assertEquals("a", store.get("a"));
+	}
+}
@@ -0,0 +1,97 @@
+package com.passportphoto.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+class BufferPoolTest {
+
+	@BeforeAll
+	static void loadOpenCv() {
+		nu.pattern.OpenCV.loadLocally();
+	}
+
+	@AfterEach
+	void tearDown() {
+		BufferPool.configure(128L * 1024 * 1024, 2);
+	}
+
+	@Test
+	void buffersBeyondTheByteCapAreDropped() {
+		BufferedImage first = BufferPool.borrowImage(17, 13, BufferedImage.TYPE_INT_RGB);
+		BufferedImage second = BufferPool.borrowImage(17, 13, BufferedImage.TYPE_INT_RGB);
+		BufferPool.configure(BufferPool.pooledBytes() + 4 * 17 * 13, 2);
+		long drops = BufferPool.drops();
+
+		BufferPool.recycle(first);
+		BufferPool.recycle(second);
+
+		assertEquals(drops + 1, BufferPool.drops());
+		assertSame(first, BufferPool.borrowImage(17, 13, BufferedImage.TYPE_INT_RGB));
+		assertNotSame(second, BufferPool.borrowImage(17, 13, BufferedImage.TYPE_INT_RGB));
+	}
+
+	@Test
+	void bufferReturnedTwiceIsHandedOutOnce() {
+		BufferedImage image = BufferPool.borrowImage(19, 11, BufferedImage.TYPE_INT_ARGB);
+		long pooled = BufferPool.pooledBytes();
+
+		BufferPool.recycle(image);
+		BufferPool.recycle(image);
+
+		assertEquals(pooled + 4 * 19 * 11, BufferPool.pooledBytes());
+		assertSame(image, BufferPool.borrowImage(19, 11, BufferedImage.TYPE_INT_ARGB));
+		assertNotSame(image, BufferPool.borrowImage(19, 11, BufferedImage.TYPE_INT_ARGB));
+	}
+
+	@Test
+	void onlyBuffersCreatedByThePoolAreTakenBack() {
+		BufferedImage foreign = new BufferedImage(23, 7, BufferedImage.TYPE_INT_RGB);
+		Mat foreignMat = new Mat(23, 7, CvType.CV_8UC3);
+		long pooled = BufferPool.pooledBytes();
+
+		BufferPool.recycle(foreign);
+		BufferPool.recycle(foreignMat);
+
+		assertEquals(pooled, BufferPool.pooledBytes());
+		assertEquals(0, foreignMat.dataAddr());
+		assertNotSame(foreign, BufferPool.borrowImage(23, 7, BufferedImage.TYPE_INT_RGB));
+	}
+
+	@Test
+	void bufferReturnedOnAShortLivedThreadStaysAvailable() throws Exception {
+		BufferedImage image = BufferPool.borrowImage(29, 5, BufferedImage.TYPE_INT_RGB);
+
+		Thread thread = new Thread(() -> BufferPool.recycle(image));
+		thread.start();
+		thread.join();
+
+		assertSame(image, BufferPool.borrowImage(29, 5, BufferedImage.TYPE_INT_RGB));
+	}
+
+	@Test
+	void threadCacheIsHandedToTheSharedPoolWhenItsThreadEnds() throws Exception {
+		AtomicReference<BufferedImage> cached = new AtomicReference<>();
+		Thread thread = new Thread(BufferPool.withThreadCache(() -> {
+			BufferedImage image = BufferPool.borrowImage(31, 3, BufferedImage.TYPE_INT_RGB);
+			BufferPool.recycle(image);
+			// Served from the thread's own cache
+			assertSame(image, BufferPool.borrowImage(31, 3, BufferedImage.TYPE_INT_RGB));
+			BufferPool.recycle(image);
+			cached.set(image);
+		}));
+		thread.start();
+		thread.join();
+
+		assertSame(cached.get(), BufferPool.borrowImage(31, 3, BufferedImage.TYPE_INT_RGB));
+	}
+}
@@ -0,0 +1,40 @@
+package com.passportphoto.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class EtagUtilTest {
+
+	private static final String ETAG = "\"abc\"";
+
+	@Test
+	void matchesTheExactTag() {
+		assertTrue(EtagUtil.matches("\"abc\"", ETAG));
+		assertFalse(EtagUtil.matches("\"abd\"", ETAG));
+	}
+
+	@Test
+	void matchesWeakTagsAndLists() {
+		assertTrue(EtagUtil.matches("W/\"abc\"", ETAG));
+		assertTrue(EtagUtil.matches("\"x\", \"abc\"", ETAG));
+		assertFalse(EtagUtil.matches("\"x\", \"y\"", ETAG));
+	}
+
+	@Test
+	void wildcardMatchesOnlyAnExistingResource() {
+		assertFalse(EtagUtil.matches("*", ETAG));
+		assertFalse(EtagUtil.matches("\"x\", *", ETAG));
+		assertTrue(EtagUtil.matchesExisting("*", ETAG));
+		assertTrue(EtagUtil.matchesExisting("\"abc\"", ETAG));
+		assertFalse(EtagUtil.matchesExisting("\"x\"", ETAG));
+	}
+
+	@Test
+	void missingOrUnquotedHeaderNeverMatches() {
+		assertFalse(EtagUtil.matches(null, ETAG));
+		assertFalse(EtagUtil.matches("", ETAG));
+		assertFalse(EtagUtil.matches("abc", ETAG));
+	}
+}
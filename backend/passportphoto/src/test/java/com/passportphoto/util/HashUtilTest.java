@@ -0,0 +1,40 @@
+package com.passportphoto.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class HashUtilTest {
+
+	private static final String ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+	@Test
+	void hashesBytesAndStreamsAlike() throws Exception {
+		byte[] bytes = "abc".getBytes(StandardCharsets.UTF_8);
+
+		assertEquals(ABC, HashUtil.sha256Hex(bytes));
+		assertEquals(ABC, HashUtil.sha256Hex(new ByteArrayInputStream(bytes)));
+	}
+
+	@Test
+	void hashesStreamsLongerThanOneBuffer() throws Exception {
+		byte[] bytes = new byte[200 * 1024];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+
+		assertEquals(HashUtil.sha256Hex(bytes), HashUtil.sha256Hex(new ByteArrayInputStream(bytes)));
+	}
+
+	@Test
+	void partsDoNotCollideByConcatenation() {
+		assertNotEquals(HashUtil.sha256Hex("ab", "c"), HashUtil.sha256Hex("a", "bc"));
+		assertNotEquals(HashUtil.sha256Hex("a", null), HashUtil.sha256Hex("a", ""));
+		assertNotEquals(HashUtil.sha256Hex((String) null), HashUtil.sha256Hex("null"));
+		assertEquals(HashUtil.sha256Hex("a", null, "b"), HashUtil.sha256Hex("a", null, "b"));
+	}
+}
@@ -0,0 +1,87 @@
+package com.passportphoto.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+class NativeArenaTest {
+
+	@BeforeAll
+	static void loadOpenCv() {
+		nu.pattern.OpenCV.loadLocally();
+	}
+
+	@Test
+	void nestedArenaReleasesOnlyItsOwnMats() {
+		try (NativeArena outer = NativeArena.open()) {
+			Mat kept = NativeArena.track(new Mat(4, 4, CvType.CV_8UC1));
+			Mat inner;
+			try (NativeArena nested = NativeArena.open()) {
+				inner = NativeArena.track(new Mat(4, 4, CvType.CV_8UC1));
+			}
+
+			assertEquals(0, inner.dataAddr());
+			assertNotEquals(0, kept.dataAddr());
+			outer.close();
+			assertEquals(0, kept.dataAddr());
+		}
+	}
+
+	@Test
+	void detachedMatOutlivesEveryEnclosingArena() {
+		Mat detached;
+		try (NativeArena outer = NativeArena.open()) {
+			Mat tracked = NativeArena.track(new Mat(4, 4, CvType.CV_8UC1));
+			try (NativeArena nested = NativeArena.open()) {
+				// Found in the enclosing arena, not only the current one
+				detached = NativeArena.detach(tracked);
+			}
+		}
+
+		assertNotEquals(0, detached.dataAddr());
+		detached.release();
+	}
+
+	@Test
+	void innerArenaLeftOpenIsClosedAndCounted() {
+		long leaked = NativeArena.leakedArenas();
+		NativeArena outer = NativeArena.open();
+		NativeArena.open();
+		Mat inner = NativeArena.track(new Mat(4, 4, CvType.CV_8UC1));
+
+		outer.close();
+
+		assertEquals(leaked + 1, NativeArena.leakedArenas());
+		assertEquals(0, inner.dataAddr());
+		// The thread has no arena left, so tracking is unscoped again
+		long unscoped = NativeArena.unscoped();
+		NativeArena.track(new Mat()).release();
+		assertEquals(unscoped + 1, NativeArena.unscoped());
+	}
+
+	@Test
+	void resourceNotReleasedByTheCodeIsReclaimed() {
+		AtomicBoolean released = new AtomicBoolean();
+		AtomicBoolean reclaimed = new AtomicBoolean();
+		long reclaimedBefore = NativeArena.reclaimedResources();
+
+		try (NativeArena arena = NativeArena.open()) {
+			AutoCloseable early = NativeArena.track(() -> released.set(true), 16);
+			NativeArena.track(() -> reclaimed.set(true), 16);
+			NativeArena.release(early);
+			assertTrue(released.get());
+			assertFalse(reclaimed.get());
+		}
+
+		assertTrue(reclaimed.get());
+		assertEquals(reclaimedBefore + 1, NativeArena.reclaimedResources());
+	}
+}